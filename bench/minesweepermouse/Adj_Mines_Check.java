@@ -0,0 +1,146 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Property check of Adj_Mines_Task: fills random boards with mines at several
+ * densities, counts their adjacent mines with the fork/join task, and compares
+ * every space against a plain single-threaded count.
+ *
+ *   Adj_Mines_Check [boards per case] [seed] [threads]
+ *
+ * Square boards are checked against the 8 neighbour stencil Board used before
+ * the count was split into bands, and other shapes against a loop over the
+ * topology's offsets. Cases include boards of many times THRESHOLD spaces, so
+ * they are split into several row bands, and rows and columns of one or two
+ * spaces. Each board is counted both on the caller's thread and inside a pool
+ * of several threads, so bands really are counted at the same time. Exits
+ * with status 1 if any count differs, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Adj_Mines_Check {
+
+    private static final double[] DENSITIES = {0, 0.01, 0.2, 0.5, 0.9, 1};
+    private static final String[] SHAPES = {"square", "torus", "hex", "layered:3"};
+    //Rows and columns of each case, rows being for each layer of a layered
+    //board. The large cases are split into several bands
+    private static final int[][] SIZES = {
+        {1,1}, {1,2}, {2,1}, {1,300}, {300,1}, {2,2}, {3,3}, {9,9}, {16,30},
+        {2,70000}, {70000,2}, {300,300}, {700,600}, {1000,1000}
+    };
+
+    public static void main(String[] args) throws Exception {
+        int boards = args.length>0 ? Integer.parseInt(args[0]) : 3;
+        long seed = args.length>1 ? Long.parseLong(args[1]) : 975;
+        int threads = args.length>2 ? Integer.parseInt(args[2]) : 4;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long checked = 0;
+        int failed = 0;
+        try{
+            for(String name : SHAPES){
+                for(int[] size : SIZES){
+                    Topology shape = Topology.Parse(name, size[0], size[1]);
+                    for(double density : DENSITIES){
+                        for(int b=0; b<boards; b++){
+                            byte[] mines = Random_Mines(shape, density, random.split());
+                            byte[] expected = Reference(mines, shape);
+                            failed += Check(name, size, density, "caller", Count(mines, shape, null), expected);
+                            failed += Check(name, size, density, "pool", Count(mines, shape, pool), expected);
+                            checked += 2;
+                        }
+                    }
+                }
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+
+        System.out.println(String.format("%d boards counted, %d differ from the single-threaded count", checked, failed));
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * @return packed spaces of a board with each space a mine with the given
+     * chance, and no adjacent counts
+     */
+    private static byte[] Random_Mines(Topology shape, double density, SplittableRandom random){
+        byte[] cells = new byte[shape.Rows()*shape.Cols()];
+        for(int k=0; k<cells.length; k++){
+            if(random.nextDouble()<density){ cells[k] = Board.MINE; }
+        }
+        return cells;
+    }
+
+    /**
+     * Count the adjacent mines with Adj_Mines_Task
+     * @param mines board to count, which is left unchanged
+     * @param pool pool to count in, or null to count on this thread
+     * @return the counted board
+     */
+    private static byte[] Count(byte[] mines, final Topology shape, ForkJoinPool pool) throws Exception {
+        final byte[] cells = mines.clone();
+        if(pool==null){
+            Adj_Mines_Task.Count(cells, shape);
+        }
+        else{
+            pool.submit(new Runnable(){
+                @Override
+                public void run(){ Adj_Mines_Task.Count(cells, shape); }
+            }).get();
+        }
+        return cells;
+    }
+
+    /**
+     * Count the adjacent mines one space at a time, with no bands. Square
+     * boards use the stencil with every bound checked, other shapes the
+     * offsets of each space.
+     * @return the counted board
+     */
+    private static byte[] Reference(byte[] mines, Topology shape){
+        byte[] cells = mines.clone();
+        int nrows = shape.Rows(), ncols = shape.Cols();
+        for(int i=0; i<nrows; i++){
+            for(int j=0; j<ncols; j++){
+                int k = i*ncols+j;
+                if((cells[k] & Board.MINE)!=0){ continue; }
+                int count = 0;
+                if(shape.Type()==Topology.SQUARE){
+                    for(int m=-1; m<=1; m++){
+                        for(int n=-1; n<=1; n++){
+                            int r = i+m, c = j+n;
+                            if((m!=0 || n!=0) && r>=0 && r<nrows && c>=0 && c<ncols && (mines[r*ncols+c] & Board.MINE)!=0){ count++; }
+                        }
+                    }
+                }
+                else{
+                    for(int d : shape.Offsets(i,j)){
+                        if((mines[k+d] & Board.MINE)!=0){ count++; }
+                    }
+                }
+                cells[k] |= count;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return 1 if the counted board differs from the reference, printing the
+     * first space which differs, or 0 if they match
+     */
+    private static int Check(String name, int[] size, double density, String where, byte[] got, byte[] expected){
+        for(int k=0; k<got.length; k++){
+            if(got[k]==expected[k]){ continue; }
+            System.out.println(String.format("%s %dx%d at density %.2f, counted on %s: space %d is %d, expected %d",
+                    name, size[0], size[1], density, where, k, got[k], expected[k]));
+            return 1;
+        }
+        return 0;
+    }
+}
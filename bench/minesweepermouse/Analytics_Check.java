@@ -0,0 +1,123 @@
+
+package minesweepermouse;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+/**
+ * Property check of Analytics.Scan: places mines on random boards of every
+ * shape, measures them with the union-find scan, and compares 3BV, the
+ * openings, the largest opening and the isolated numbers against a flood
+ * fill from each space with no adjacent mines.
+ *
+ *   Analytics_Check [boards per case] [seed]
+ *
+ * Each case reuses one Scan and one board for all its boards, as the threads
+ * of Analytics do, so arrays left over from the last board are checked too.
+ * Cases include boards of one row or column, boards with no mines or only
+ * one space without a mine, and the first click either in the centre or
+ * nowhere. Exits with status 1 if any metric differs, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Analytics_Check {
+
+    private static final double[] DENSITIES = {0, 0.05, 0.15, 0.3, 0.6, 1};
+    private static final String[] SHAPES = {"square", "torus", "hex", "layered:3"};
+    //Rows and columns of each case, rows being for each layer of a layered
+    //board
+    private static final int[][] SIZES = {
+        {1,1}, {1,2}, {2,1}, {1,40}, {40,1}, {2,2}, {3,3}, {9,9}, {16,16}, {16,30}, {50,70}
+    };
+
+    public static void main(String[] args){
+        int boards = args.length>0 ? Integer.parseInt(args[0]) : 20;
+        long seed = args.length>1 ? Long.parseLong(args[1]) : 975;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        long checked = 0;
+        int failed = 0;
+        for(String name : SHAPES){
+            for(int[] size : SIZES){
+                Topology shape = Topology.Parse(name, size[0], size[1]);
+                int ncells = shape.Rows()*shape.Cols();
+                Analytics.Scan scan = new Analytics.Scan(shape, null);
+                for(double density : DENSITIES){
+                    //A board needs at least one space without a mine
+                    int nmines = Math.min((int)Math.round(density*ncells), ncells-1);
+                    Board board = new Board(shape, nmines, 0);
+                    for(int b=0; b<boards; b++){
+                        long board_seed = random.nextLong();
+                        board.Reset(board_seed);
+                        boolean click = b%2==0;
+                        if(click){ board.Place_Mines(board.Rows()/2, board.Cols()/2); }
+                        else{ board.Place_Mines(-1, -1); }
+
+                        Analytics.Result got = new Analytics.Result();
+                        scan.Measure(board, got);
+                        Analytics.Result expected = Reference(board);
+                        checked++;
+                        if(!Same(got, expected)){
+                            failed++;
+                            System.out.println(String.format("%s %dx%d with %d mines, seed %d%s: got %s, expected %s",
+                                    name, size[0], size[1], nmines, board_seed, click ? "" : ", no first click",
+                                    Format(got), Format(expected)));
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println(String.format("%d boards measured, %d differ from the flood fill", checked, failed));
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * Find the metrics by flood filling each opening from its first space
+     * with no adjacent mines, counting each numbered space around its edge
+     * once
+     * @return the metrics of the board, other than seed and solvable
+     */
+    private static Analytics.Result Reference(Board board){
+        Topology topology = board.Topology();
+        int ncells = board.Rows()*board.Cols();
+        //Opening each space was last counted for, numbered from 1, or 0 for none
+        int[] opening = new int[ncells];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        Analytics.Result r = new Analytics.Result();
+        for(int k=0; k<ncells; k++){
+            if(board.Is_Mine(k) || board.Adj(k)!=0 || opening[k]!=0){ continue; }
+            int label = ++r.openings;
+            int size = 1;
+            opening[k] = label;
+            queue.add(k);
+            while(!queue.isEmpty()){
+                int p = queue.poll();
+                for(int d : topology.Offsets(p)){
+                    int q = p+d;
+                    if(opening[q]==label){ continue; }
+                    //A numbered space may already have been counted for an
+                    //earlier opening, but a space with no adjacent mines can't
+                    opening[q] = label;
+                    size++;
+                    if(board.Adj(q)==0){ queue.add(q); }
+                }
+            }
+            r.largest = Math.max(r.largest, size);
+        }
+        for(int k=0; k<ncells; k++){
+            if(!board.Is_Mine(k) && opening[k]==0){ r.isolated++; }
+        }
+        r.bbbv = r.openings+r.isolated;
+        return r;
+    }
+
+    private static boolean Same(Analytics.Result a, Analytics.Result b){
+        return a.bbbv==b.bbbv && a.openings==b.openings && a.largest==b.largest && a.isolated==b.isolated;
+    }
+
+    private static String Format(Analytics.Result r){
+        return String.format("3BV %d, %d openings, largest %d, %d isolated", r.bbbv, r.openings, r.largest, r.isolated);
+    }
+}
@@ -0,0 +1,204 @@
+
+package minesweepermouse;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs benchmarks and reports the time and memory allocated per operation.
+ *
+ * Each benchmark is warmed up, then timed over several rounds. Only the
+ * operation itself is timed: any setup it needs, such as a fresh board to
+ * clear, is done before the clock starts. Memory allocated is read from the
+ * thread's allocation counter around each operation, so it covers the
+ * benchmark thread only and not fork/join workers.
+ *
+ * Results can be saved to a file and compared against on a later run, which
+ * fails if any benchmark has become slower than allowed.
+ *
+ *   Bench [--filter text] [--density d,...] [--quick]
+ *         [--save file] [--baseline file] [--tolerance fraction]
+ *
+ * @author cjcode975
+ */
+class Bench {
+
+    /**
+     * An operation to time
+     */
+    interface Op {
+        /**
+         * Get ready for the next call to Run, without being timed
+         */
+        void Setup();
+
+        /**
+         * The operation being timed
+         * @return any result, so that the work can't be optimised away
+         */
+        long Run();
+    }
+
+    private final long warmup_ns, round_ns;
+    private final int nrounds;
+    private final com.sun.management.ThreadMXBean threads;
+    //Results by "case benchmark", in nanoseconds per operation
+    private final Map<String, Double> results = new HashMap<>();
+    private final List<String> order = new ArrayList<>();
+    private long sink = 0;
+
+    /**
+     * @param Quick true for shorter runs, less accurate but faster
+     */
+    Bench(boolean Quick){
+        warmup_ns = Quick ? 200000000L : 1000000000L;
+        round_ns = Quick ? 100000000L : 500000000L;
+        nrounds = Quick ? 3 : 5;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()){
+            threads = (com.sun.management.ThreadMXBean)bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        else{
+            threads = null;
+        }
+    }
+
+    /**
+     * Warm up and time an operation, printing a line of results
+     * @param name name of the case and benchmark
+     * @param op operation to time
+     */
+    void Measure(String name, Op op){
+        //Warm up
+        long start = System.nanoTime();
+        do{
+            op.Setup();
+            sink += op.Run();
+        } while(System.nanoTime()-start<warmup_ns);
+
+        double[] round_mean = new double[nrounds];
+        long total_ops = 0, total_time = 0, total_bytes = 0;
+        long id = Thread.currentThread().getId();
+        for(int r=0; r<nrounds; r++){
+            long ops = 0, time = 0;
+            do{
+                op.Setup();
+                long bytes = threads!=null ? threads.getThreadAllocatedBytes(id) : 0;
+                long t0 = System.nanoTime();
+                sink += op.Run();
+                long t1 = System.nanoTime();
+                if(threads!=null){ total_bytes += threads.getThreadAllocatedBytes(id)-bytes; }
+                time += t1-t0;
+                ops++;
+            } while(time<round_ns);
+            round_mean[r] = (double)time/ops;
+            total_ops += ops;
+            total_time += time;
+        }
+
+        double mean = (double)total_time/total_ops;
+        double var = 0;
+        for(double m : round_mean){ var += (m-mean)*(m-mean); }
+        double sd = nrounds>1 ? Math.sqrt(var/(nrounds-1)) : 0;
+        String alloc = threads!=null ? String.format("%14.1f", (double)total_bytes/total_ops) : String.format("%14s", "n/a");
+
+        System.out.println(String.format("%-34s %10d %16s %10s %s", name, total_ops, Format_Time(mean), "+-"+Format_Time(sd), alloc));
+        results.put(name, mean);
+        order.add(name);
+    }
+
+    /**
+     * Print the column headings for Measure
+     */
+    void Header(){
+        System.out.println(String.format("%-34s %10s %16s %10s %14s", "Benchmark", "Ops", "Time/op", "Error", "Bytes/op"));
+    }
+
+    private static String Format_Time(double ns){
+        if(ns<1e4){ return String.format("%.1f ns", ns); }
+        if(ns<1e7){ return String.format("%.2f us", ns/1e3); }
+        return String.format("%.2f ms", ns/1e6);
+    }
+
+    /**
+     * Write the results to a file, one "name,nanoseconds" line each
+     */
+    void Save(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(String name : order){ lines.add(name+","+results.get(name)); }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare the results against those saved by an earlier run
+     * @param file results of the earlier run
+     * @param tolerance fraction a benchmark may slow down by before failing
+     * @return number of benchmarks which slowed down too much
+     */
+    int Compare(Path file, double tolerance) throws IOException {
+        int regressions = 0;
+        for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)){
+            int comma = line.lastIndexOf(',');
+            if(comma<0){ continue; }
+            String name = line.substring(0, comma);
+            Double now = results.get(name);
+            if(now==null){ continue; }
+            double before = Double.parseDouble(line.substring(comma+1));
+            if(now>before*(1+tolerance)){
+                System.out.println(String.format("REGRESSION %s: %s -> %s (%+.0f%%)", name, Format_Time(before), Format_Time(now), 100*(now/before-1)));
+                regressions++;
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @param args see the class description
+     */
+    public static void main(String[] args) throws IOException {
+        String filter = "";
+        String densities = null;
+        boolean quick = false;
+        Path save = null, baseline = null;
+        double tolerance = 0.2;
+        for(int a=0; a<args.length; a++){
+            switch(args[a]){
+                case "--filter": filter = args[++a]; break;
+                case "--density": densities = args[++a]; break;
+                case "--quick": quick = true; break;
+                case "--save": save = Paths.get(args[++a]); break;
+                case "--baseline": baseline = Paths.get(args[++a]); break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++a]); break;
+                default:
+                    System.err.println("Unknown argument "+args[a]);
+                    System.exit(1);
+            }
+        }
+
+        Bench bench = new Bench(quick);
+        System.out.println("Java "+System.getProperty("java.version")+", "+Runtime.getRuntime().availableProcessors()+" cores, heap "+Runtime.getRuntime().maxMemory()/(1<<20)+" MB");
+        bench.Header();
+        for(Board_Bench.Case c : Board_Bench.Cases(densities)){
+            Board_Bench.Run(bench, c, filter);
+        }
+
+        if(save!=null){ bench.Save(save); }
+        if(baseline!=null){
+            int regressions = bench.Compare(baseline, tolerance);
+            if(regressions>0){
+                System.out.println(regressions+" benchmark(s) slower than "+baseline+" by more than "+Math.round(100*tolerance)+"%");
+                System.exit(1);
+            }
+        }
+        if(bench.sink==42){ System.out.println(); }
+    }
+}
@@ -0,0 +1,232 @@
+
+package minesweepermouse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmarks for generating and clearing boards, run by Bench for each board
+ * size and mine density:
+ *   place     - placing the mines after the first click, including counting
+ *               adjacent mines
+ *   adj       - counting adjacent mines alone
+ *   islands   - labelling every island of the board
+ *   island_of - 1024 lookups of the island holding a space with no adjacent
+ *               mines
+ *   reveal    - clearing the whole board by opening every safe space in turn
+ *   chord     - clearing the whole board by chording, starting from the first
+ *               click with every mine flagged, as ClearenceListener does
+ *
+ * @author cjcode975
+ */
+class Board_Bench {
+
+    //Mine density of the Hard preset, used for the large boards by default
+    static final double HARD_DENSITY = 99.0/(16*30);
+
+    private static final long SEED = 1;
+
+    /**
+     * Size and number of mines of a board to benchmark
+     */
+    static class Case {
+        final String name;
+        final int nrows, ncols, nmines;
+
+        Case(String Name, int N_Rows, int N_Cols, int N_Mines){
+            name = Name;
+            nrows = N_Rows;
+            ncols = N_Cols;
+            nmines = N_Mines;
+        }
+    }
+
+    private Board_Bench(){
+    }
+
+    /**
+     * @param densities comma separated mine densities for the large boards, or
+     * null for the density of the Hard preset
+     * @return the presets, then 1000x1000 and 10000x10000 boards at each
+     * density
+     */
+    static List<Case> Cases(String densities){
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("easy", 10, 10, 10));
+        cases.add(new Case("medium", 16, 16, 40));
+        cases.add(new Case("hard", 16, 30, 99));
+
+        String[] list = densities!=null ? densities.split(",") : new String[]{Double.toString(HARD_DENSITY)};
+        for(int size : new int[]{1000, 10000}){
+            for(String d : list){
+                double density = Double.parseDouble(d);
+                String name = (size/1000)+"k"+(densities!=null ? "@"+d : "");
+                cases.add(new Case(name, size, size, (int)Math.round(density*size*size)));
+            }
+        }
+        return cases;
+    }
+
+    /**
+     * Run every benchmark matching a filter on one case
+     * @param bench harness to run with
+     * @param c board to benchmark
+     * @param filter text the case and benchmark name must contain
+     */
+    static void Run(Bench bench, Case c, String filter){
+        //Only build the boards if something will use them
+        boolean any = false;
+        for(String op : new String[]{"place", "adj", "islands", "island_of", "reveal", "chord"}){
+            if((c.name+" "+op).contains(filter)){ any = true; }
+        }
+        if(!any){ return; }
+
+        try{
+            Run_Case(bench, c, filter);
+        }
+        catch(OutOfMemoryError e){
+            System.out.println(c.name+": out of memory, run with a larger heap (-Dbench.heap)");
+        }
+    }
+
+    private static void Run_Case(Bench bench, final Case c, String filter){
+        final int ncells = c.nrows*c.ncols;
+
+        //Board shared by the benchmarks which don't change it, and its mines
+        //as a bitmap for making fresh copies
+        final Board board = new Board(c.nrows, c.ncols, c.nmines, SEED);
+        board.Place_Mines(c.nrows/2, c.ncols/2);
+        final ByteBuffer bitmap = ByteBuffer.allocate((ncells+7)/8);
+        for(int k=0; k<ncells; k++){
+            if(board.Is_Mine(k)){ bitmap.put(k/8, (byte)(bitmap.get(k/8) | 1<<(k%8))); }
+        }
+
+        if((c.name+" place").contains(filter)){
+            bench.Measure(c.name+" place", new Bench.Op(){
+                private Board fresh;
+                @Override
+                public void Setup(){ fresh = new Board(c.nrows, c.ncols, c.nmines, SEED); }
+                @Override
+                public long Run(){
+                    fresh.Place_Mines(c.nrows/2, c.ncols/2);
+                    return fresh.Adj(c.nrows/2, c.ncols/2);
+                }
+            });
+        }
+
+        if((c.name+" adj").contains(filter)){
+            final byte[] mines = new byte[ncells];
+            for(int k=0; k<ncells; k++){
+                if(board.Is_Mine(k)){ mines[k] = Board.MINE; }
+            }
+            final byte[] cells = new byte[ncells];
+            bench.Measure(c.name+" adj", new Bench.Op(){
+                @Override
+                public void Setup(){ System.arraycopy(mines, 0, cells, 0, ncells); }
+                @Override
+                public long Run(){
+                    Adj_Mines_Task.Count(cells, board.Topology());
+                    return cells[ncells/2];
+                }
+            });
+        }
+
+        if((c.name+" islands").contains(filter)){
+            bench.Measure(c.name+" islands", new Bench.Op(){
+                @Override
+                public void Setup(){ }
+                @Override
+                public long Run(){
+                    board.Islands();
+                    return board.Island_Of(c.nrows/2, c.ncols/2);
+                }
+            });
+        }
+
+        if((c.name+" island_of").contains(filter)){
+            board.Islands();
+            //Only spaces with no adjacent mines are always part of an island,
+            //and a dense enough board has none
+            Int_List zeros = new Int_List();
+            for(int k=0; k<ncells; k++){
+                if(!board.Is_Mine(k) && board.Adj(board.Row(k), board.Col(k))==0){ zeros.Add(k); }
+            }
+            if(zeros.Is_Empty()){
+                System.out.println(c.name+" island_of: skipped, the board has no spaces without adjacent mines");
+            }
+            else{
+                final int[] spaces = new int[1024];
+                SplittableRandom random = new SplittableRandom(SEED);
+                for(int n=0; n<spaces.length; n++){
+                    spaces[n] = zeros.Get(random.nextInt(zeros.Size()));
+                }
+                bench.Measure(c.name+" island_of", new Bench.Op(){
+                    @Override
+                    public void Setup(){ }
+                    @Override
+                    public long Run(){
+                        long sum = 0;
+                        for(int k : spaces){ sum += board.Island_Of(board.Row(k), board.Col(k)); }
+                        return sum;
+                    }
+                });
+            }
+        }
+
+        if((c.name+" reveal").contains(filter)){
+            bench.Measure(c.name+" reveal", new Bench.Op(){
+                private Board fresh;
+                private final Int_List opened = new Int_List();
+                @Override
+                public void Setup(){ fresh = Copy(c, bitmap); }
+                @Override
+                public long Run(){
+                    for(int k=0; k<ncells; k++){
+                        int i = fresh.Row(k), j = fresh.Col(k);
+                        if(!fresh.Is_Mine(i,j) && !fresh.Is_Cleared(i,j)){
+                            opened.Clear();
+                            fresh.Reveal(i,j,opened);
+                        }
+                    }
+                    return fresh.Num_Cleared();
+                }
+            });
+        }
+
+        if((c.name+" chord").contains(filter)){
+            bench.Measure(c.name+" chord", new Bench.Op(){
+                private Board fresh;
+                private final Int_List queue = new Int_List();
+                @Override
+                public void Setup(){
+                    fresh = Copy(c, bitmap);
+                    for(int k=0; k<ncells; k++){
+                        if(fresh.Is_Mine(k)){ fresh.Toggle_Flag(fresh.Row(k), fresh.Col(k)); }
+                    }
+                    queue.Clear();
+                    fresh.Reveal(c.nrows/2, c.ncols/2, queue);
+                }
+                @Override
+                public long Run(){
+                    while(!queue.Is_Empty()){
+                        int k = queue.Remove_Last();
+                        fresh.Chord(fresh.Row(k), fresh.Col(k), queue);
+                    }
+                    return fresh.Num_Cleared();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a new board with the mines of a bitmap, and nothing cleared
+     */
+    private static Board Copy(Case c, ByteBuffer bitmap){
+        Board fresh = new Board(c.nrows, c.ncols, c.nmines, SEED);
+        bitmap.rewind();
+        fresh.Place_Mines(bitmap);
+        return fresh;
+    }
+}
@@ -0,0 +1,237 @@
+
+package minesweepermouse;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Property check of Board.Reveal, Board.Chord and Board.Toggle_Flag: plays
+ * random clicks, chords and flags on small boards of every shape, and
+ * after each compares the board against a model of the cleared and flagged
+ * spaces played by the rules ClearenceListener followed before clearing
+ * moved into Board:
+ *   reveal - an uncleared, unflagged space is cleared, along with its whole
+ *            island if it has no adjacent mines; a mine ends the game
+ *   chord  - on a cleared number with as many flagged neighbours as
+ *            adjacent mines, every uncleared, unflagged neighbour is
+ *            revealed, even after a wrongly flagged one turns out a mine
+ *
+ *   Chord_Check [games per shape] [seed]
+ *
+ * Every space must be in the same state, the game lost on the same mine,
+ * and the list given to each call must hold exactly the spaces the move
+ * changed, each once, with the count returned matching. Exits with status
+ * 1 if anything differs, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Chord_Check {
+
+    private static final String[] SHAPES = {"square", "torus", "hex", "layered:2"};
+    private static final int ROWS = 9, COLS = 9;
+    private static final int MOVES = 60;
+
+    public static void main(String[] args){
+        int games = args.length>0 ? Integer.parseInt(args[0]) : 750;
+        long seed = args.length>1 ? Long.parseLong(args[1]) : 975;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Int_List out = new Int_List();
+        long moves = 0, chords = 0, lost = 0;
+        int failed = 0;
+        for(String name : SHAPES){
+            Topology shape = Topology.Parse(name, ROWS, COLS);
+            int ncells = shape.Rows()*shape.Cols();
+            for(int g=0; g<games && failed==0; g++){
+                int nmines = (10+random.nextInt(20))*shape.Layers();
+                Board board = new Board(shape, nmines, random.nextLong());
+                Model model = null;
+                for(int m=0; m<MOVES && !board.Is_Exploded() && !board.Is_Won() && failed==0; m++){
+                    int kind = model==null ? 0 : random.nextInt(3);
+                    int k = Pick(board, kind, random);
+                    int i = board.Row(k), j = board.Col(k);
+                    out.Clear();
+                    //Some spaces are already in the list, which calls must
+                    //leave alone
+                    int before = random.nextInt(3);
+                    for(int n=0; n<before; n++){ out.Add(-1); }
+
+                    int count;
+                    if(kind==0){
+                        count = board.Reveal(i,j,out);
+                        //The first click places the mines
+                        if(model==null){ model = new Model(board); }
+                        else{ model.Reveal(k); }
+                    }
+                    else if(kind==1){
+                        if(model.Chord(k)){ chords++; }
+                        count = board.Chord(i,j,out);
+                    }
+                    else{
+                        boolean flagged = board.Toggle_Flag(i,j,out);
+                        model.Toggle_Flag(k);
+                        count = out.Size()-before;
+                        if(flagged!=model.flagged[k]){ count = -1; }
+                    }
+                    moves++;
+
+                    String problem = model.Compare(board, out, before, count);
+                    if(problem!=null){
+                        System.out.println(String.format("%s board seed %d, move %d (%s at %d,%d): %s",
+                                name, board.Seed(), m, kind==0 ? "reveal" : kind==1 ? "chord" : "flag", i, j, problem));
+                        failed++;
+                    }
+                }
+                if(board.Is_Exploded()){ lost++; }
+            }
+        }
+
+        System.out.println(String.format("%d moves checked, %d of them chords, %d games lost: %d differ from the model",
+                moves, chords, lost, failed));
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * Pick a space for a move, mostly one where the move does something, so
+     * that games last and chords happen often: a safe space to reveal, a
+     * cleared space to chord, or a mine to flag. Any space at all is picked
+     * one time in ten, and whenever the mines aren't placed yet.
+     * @param kind 0 to reveal, 1 to chord, 2 to flag
+     */
+    private static int Pick(Board board, int kind, SplittableRandom random){
+        int ncells = board.Rows()*board.Cols();
+        int k = random.nextInt(ncells);
+        if(!board.Is_Generated() || random.nextInt(10)==0){ return k; }
+        for(int tries=0; tries<100; tries++){
+            if(kind==0 && !board.Is_Mine(k) && !board.Is_Cleared(k)){ break; }
+            if(kind==1 && board.Is_Cleared(k) && board.Adj(k)!=0){ break; }
+            if(kind==2 && board.Is_Mine(k)){ break; }
+            k = random.nextInt(ncells);
+        }
+        return k;
+    }
+
+    /**
+     * Cleared and flagged spaces of a board, played by the old rules
+     */
+    private static class Model {
+        private final Board board;
+        private final Topology topology;
+        final boolean[] cleared, flagged;
+        //What the last move changed
+        private final boolean[] changed;
+        private int nchanged = 0;
+        int exploded = -1;
+
+        /**
+         * Start from a board after its first reveal
+         */
+        Model(Board Board_In){
+            board = Board_In;
+            topology = board.Topology();
+            int ncells = board.Rows()*board.Cols();
+            cleared = new boolean[ncells];
+            flagged = new boolean[ncells];
+            changed = new boolean[ncells];
+            for(int k=0; k<ncells; k++){
+                cleared[k] = board.Is_Cleared(k);
+                if(cleared[k]){
+                    changed[k] = true;
+                    nchanged++;
+                }
+            }
+        }
+
+        void Reveal(int k){
+            Start_Move();
+            Open(k);
+        }
+
+        /**
+         * @return true if the space could be chorded
+         */
+        boolean Chord(int k){
+            Start_Move();
+            if(!cleared[k] || board.Adj(k)==0){ return false; }
+            int nflagged = 0;
+            for(int d : topology.Offsets(k)){
+                if(flagged[k+d]){ nflagged++; }
+            }
+            if(nflagged!=board.Adj(k)){ return false; }
+            for(int d : topology.Offsets(k)){ Open(k+d); }
+            return true;
+        }
+
+        void Toggle_Flag(int k){
+            Start_Move();
+            if(cleared[k]){ return; }
+            flagged[k] = !flagged[k];
+            changed[k] = true;
+            nchanged++;
+        }
+
+        private void Start_Move(){
+            if(nchanged>0){ Arrays.fill(changed, false); }
+            nchanged = 0;
+        }
+
+        /**
+         * Clear a space and, breadth first, its island
+         */
+        private void Open(int k){
+            if(cleared[k] || flagged[k]){ return; }
+            if(board.Is_Mine(k)){
+                if(exploded<0){ exploded = k; }
+                return;
+            }
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            Clear(k);
+            queue.add(k);
+            while(!queue.isEmpty()){
+                int p = queue.poll();
+                if(board.Adj(p)!=0){ continue; }
+                for(int d : topology.Offsets(p)){
+                    int q = p+d;
+                    if(cleared[q] || flagged[q]){ continue; }
+                    Clear(q);
+                    queue.add(q);
+                }
+            }
+        }
+
+        private void Clear(int k){
+            cleared[k] = true;
+            changed[k] = true;
+            nchanged++;
+        }
+
+        /**
+         * @param out list given to the move
+         * @param before entries in the list before the move
+         * @param count count the move returned
+         * @return what differs between the board and the model, or null if
+         * nothing does
+         */
+        String Compare(Board board, Int_List out, int before, int count){
+            for(int k=0; k<cleared.length; k++){
+                if(board.Is_Cleared(k)!=cleared[k] || board.Is_Flagged(board.Row(k), board.Col(k))!=flagged[k]){
+                    return "space "+k+" differs";
+                }
+            }
+            if(board.Exploded()!=exploded){ return "exploded "+board.Exploded()+", expected "+exploded; }
+            for(int n=0; n<before; n++){
+                if(out.Get(n)!=-1){ return "entries already in the list were changed"; }
+            }
+            if(count!=out.Size()-before){ return "returned "+count+" with "+(out.Size()-before)+" spaces listed"; }
+            if(out.Size()-before!=nchanged){ return (out.Size()-before)+" spaces listed, "+nchanged+" changed"; }
+            boolean[] listed = new boolean[cleared.length];
+            for(int n=before; n<out.Size(); n++){
+                int k = out.Get(n);
+                if(k<0 || k>=listed.length || !changed[k] || listed[k]){ return "space "+k+" listed wrongly"; }
+                listed[k] = true;
+            }
+            return null;
+        }
+    }
+}
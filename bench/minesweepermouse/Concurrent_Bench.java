@@ -0,0 +1,111 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention benchmark of Concurrent_Board: bots on threads share one large
+ * board and clear its safe spaces in random orders until it is won, so their
+ * floods keep running into each other.
+ *
+ *   Concurrent_Bench [rows cols mines] [max threads] [rounds]
+ *
+ * For each number of threads, doubling up to the maximum, reports spaces
+ * cleared per second and the speed up over one thread, and checks that every
+ * safe space was counted exactly once and the game was won exactly once.
+ *
+ * @author cjcode975
+ */
+class Concurrent_Bench {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length>2 ? Integer.parseInt(args[0]) : 2000;
+        int cols = args.length>2 ? Integer.parseInt(args[1]) : 2000;
+        int mines = args.length>2 ? Integer.parseInt(args[2]) : 600000;
+        int max_threads = args.length>3 ? Integer.parseInt(args[3]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int rounds = args.length>4 ? Integer.parseInt(args[4]) : 5;
+
+        Board board = new Board(rows, cols, mines, 975);
+        board.Place_Mines(-1,-1);
+        int[] safe = new int[rows*cols-mines];
+        for(int k=0, n=0; k<rows*cols; k++){
+            if(!board.Is_Mine(k)){ safe[n++] = k; }
+        }
+
+        System.out.println(String.format("Java %s, %d cores", System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("Board: %dx%d with %d mines, best of %d rounds", rows, cols, mines, rounds));
+        double base = 0;
+        for(int threads=1; threads<=max_threads; threads*=2){
+            double best = 0;
+            for(int r=0; r<rounds; r++){
+                best = Math.max(best, Round(board, safe, threads, r));
+            }
+            if(threads==1){ base = best; }
+            System.out.println(String.format("%3d threads: %7.1f M spaces/s, %.2fx", threads, best/1e6, best/base));
+        }
+    }
+
+    /**
+     * Clear a fresh copy of the board with some bots
+     * @return spaces cleared per second
+     */
+    private static double Round(Board board, final int[] safe, int threads, int round) throws InterruptedException {
+        final AtomicInteger wins = new AtomicInteger();
+        final Concurrent_Board shared = new Concurrent_Board(board, new Runnable(){
+            @Override
+            public void run(){ wins.incrementAndGet(); }
+        });
+        final long[] counted = new long[threads];
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for(int t=0; t<threads; t++){
+            final int id = t;
+            final SplittableRandom random = new SplittableRandom(round*0x9E3779B97F4A7C15L + t);
+            Thread bot = new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    //Each bot visits every safe space in its own random order,
+                    //skipping those already cleared
+                    int[] order = safe.clone();
+                    for(int n=order.length-1; n>0; n--){
+                        int m = random.nextInt(n+1);
+                        int tmp = order[n]; order[n] = order[m]; order[m] = tmp;
+                    }
+                    Int_List out = new Int_List(64);
+                    int cols = shared.Cols();
+                    try{
+                        ready.countDown();
+                        start.await();
+                        for(int n=0; n<order.length && !shared.Is_Won(); n++){
+                            if((shared.Peek(order[n]) & Board.CLEARED)!=0){ continue; }
+                            out.Clear();
+                            counted[id] += shared.Reveal(order[n]/cols, order[n]%cols, out);
+                        }
+                    }
+                    catch(InterruptedException e){ Thread.currentThread().interrupt(); }
+                    finally{ done.countDown(); }
+                }
+            }, "Bot "+t);
+            bot.setDaemon(true);
+            bot.start();
+        }
+
+        ready.await();
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        long t1 = System.nanoTime();
+
+        long total = 0;
+        for(long c : counted){ total += c; }
+        if(total!=safe.length || shared.Num_Cleared()!=safe.length || wins.get()!=1){
+            throw new IllegalStateException(String.format("Counted %d spaces, board has %d cleared of %d, won %d times",
+                    total, shared.Num_Cleared(), safe.length, wins.get()));
+        }
+        return safe.length/((t1-t0)/1e9);
+    }
+}
@@ -0,0 +1,153 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * Property check of Infinite_Board, in two parts:
+ *   adjacency - every adjacent mine count over an area several chunks
+ *               across, so crossing chunk edges, is compared against the
+ *               mines around it, and the spaces around (0,0) are checked to
+ *               be safe
+ *   spilling  - random moves are played on a board whose cache holds only
+ *               SMALL_CACHE chunks, so chunks are written to disk and read
+ *               back all the time, and on one whose cache never fills. The
+ *               two must end in the same state.
+ *
+ *   Infinite_Board_Check [moves] [seed]
+ *
+ * Exits with status 1 if anything differs, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Infinite_Board_Check {
+
+    private static final double DENSITY = 0.2;
+    //Half the width of the area checked for adjacency, and played on
+    private static final int ADJ_RADIUS = 150;
+    private static final int PLAY_RADIUS = 400;
+    private static final int SMALL_CACHE = 9;
+    //Far more chunks than the area played on holds
+    private static final int BIG_CACHE = 100000;
+
+    public static void main(String[] args){
+        int moves = args.length>0 ? Integer.parseInt(args[0]) : 20000;
+        long seed = args.length>1 ? Long.parseLong(args[1]) : 975;
+
+        int failed = Check_Adjacency(seed)+Check_Spilling(seed, moves);
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * @return the number of spaces whose adjacent mine count is wrong, plus
+     * one if (0,0) or a neighbour is a mine
+     */
+    private static int Check_Adjacency(long seed){
+        Infinite_Board board = new Infinite_Board(seed, DENSITY, BIG_CACHE);
+        int failed = 0;
+        try{
+            //Build every chunk of the area and the ring around it
+            int r = ADJ_RADIUS+1;
+            for(int i=-r; i<=r+Infinite_Board.CHUNK; i+=Infinite_Board.CHUNK){
+                for(int j=-r; j<=r+Infinite_Board.CHUNK; j+=Infinite_Board.CHUNK){
+                    Build(board, Math.min(i,r), Math.min(j,r));
+                }
+            }
+
+            for(int i=-ADJ_RADIUS; i<=ADJ_RADIUS; i++){
+                for(int j=-ADJ_RADIUS; j<=ADJ_RADIUS; j++){
+                    int b = board.Peek(i,j);
+                    if((b & Board.MINE)!=0){ continue; }
+                    int count = 0;
+                    for(int m=-1; m<=1; m++){
+                        for(int n=-1; n<=1; n++){
+                            if((m!=0 || n!=0) && (board.Peek(i+m, j+n) & Board.MINE)!=0){ count++; }
+                        }
+                    }
+                    if(count==(b & Board.ADJ_MASK)){ continue; }
+                    if(failed==0){
+                        System.out.println(String.format("space (%d,%d) has %d adjacent mines, counted %d", i, j, b & Board.ADJ_MASK, count));
+                    }
+                    failed++;
+                }
+            }
+            if((board.Peek(0,0) & (Board.MINE|Board.ADJ_MASK))!=0){
+                System.out.println("(0,0) is a mine or has adjacent mines");
+                failed++;
+            }
+        }
+        finally{
+            board.Close();
+        }
+        System.out.println(String.format("%d spaces counted across chunk edges, %d wrong", (2*ADJ_RADIUS+1)*(2*ADJ_RADIUS+1), failed));
+        return failed;
+    }
+
+    /**
+     * @return 0 if the boards with the small and the unbounded cache end the
+     * same, otherwise 1
+     */
+    private static int Check_Spilling(long seed, int moves){
+        Infinite_Board small = new Infinite_Board(seed, DENSITY, SMALL_CACHE);
+        Infinite_Board big = new Infinite_Board(seed, DENSITY, BIG_CACHE);
+        int failed = 0;
+        try{
+            SplittableRandom random = new SplittableRandom(seed);
+            small.Open(0,0);
+            big.Open(0,0);
+            for(int m=0; m<moves && failed==0; m++){
+                int i = random.nextInt(-PLAY_RADIUS, PLAY_RADIUS), j = random.nextInt(-PLAY_RADIUS, PLAY_RADIUS);
+                int a, b;
+                switch(random.nextInt(4)){
+                    case 0:
+                        a = small.Toggle_Flag(i,j) ? 1 : 0;
+                        b = big.Toggle_Flag(i,j) ? 1 : 0;
+                        break;
+                    case 1:
+                        a = small.Chord(i,j);
+                        b = big.Chord(i,j);
+                        break;
+                    default:
+                        Build(big, i, j);
+                        if((big.Peek(i,j) & Board.MINE)!=0){ continue; }
+                        a = small.Open(i,j);
+                        b = big.Open(i,j);
+                }
+                if(a!=b){
+                    System.out.println(String.format("move %d at (%d,%d) gave %d with the small cache, %d without", m, i, j, a, b));
+                    failed = 1;
+                }
+            }
+
+            for(int i=-PLAY_RADIUS; i<PLAY_RADIUS && failed==0; i++){
+                for(int j=-PLAY_RADIUS; j<PLAY_RADIUS && failed==0; j++){
+                    if(small.Is_Cleared(i,j)!=big.Is_Cleared(i,j) || small.Is_Flagged(i,j)!=big.Is_Flagged(i,j)){
+                        System.out.println(String.format("space (%d,%d) differs between the small cache and no limit", i, j));
+                        failed = 1;
+                    }
+                }
+            }
+            if(small.Num_Cleared()!=big.Num_Cleared() || small.Num_Flagged()!=big.Num_Flagged() || small.Is_Exploded()!=big.Is_Exploded()){
+                System.out.println("counts differ between the small cache and no limit");
+                failed = 1;
+            }
+            System.out.println(String.format("%d moves with a %d chunk cache, %d spills and %d loads, %d cleared: %s",
+                    moves, SMALL_CACHE, small.Num_Spills(), small.Num_Loads(), small.Num_Cleared(), failed==0 ? "same as no limit" : "differs"));
+        }
+        finally{
+            small.Close();
+            big.Close();
+        }
+        return failed;
+    }
+
+    /**
+     * Build the chunk holding a space, which Peek won't, by flagging and
+     * unflagging it if it has never been played on
+     */
+    private static void Build(Infinite_Board board, int i, int j){
+        if(board.Peek(i,j)>=0){ return; }
+        board.Toggle_Flag(i,j);
+        board.Toggle_Flag(i,j);
+    }
+}
@@ -0,0 +1,205 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * Property check of Probability_Engine: plays random safe moves on small
+ * boards of every shape, and after each move compares the chance the engine
+ * gives for every space against a brute force count over every way of
+ * placing all the mines on the uncleared spaces.
+ *
+ *   Probability_Check [games per shape] [seed]
+ *
+ * Unlike the engine, the brute force has no components, no cache and no
+ * weighting of the spaces away from the frontier, so it checks all three.
+ * Moves clear a random safe space, and some are undone again, as Game does,
+ * to check the engine after spaces are covered. Random flags, some of them
+ * wrong, are placed to check that they are ignored. Exits with status 1 if
+ * any chance differs by more than TOLERANCE, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Probability_Check {
+
+    private static final double TOLERANCE = 1e-9;
+    //Shape, rows, columns and mines of each case, rows being for each layer
+    //of a layered board. Boards are small enough to count every placement
+    private static final Object[][] CASES = {
+        {"square", 5, 6, 6}, {"square", 4, 4, 5}, {"torus", 4, 5, 5},
+        {"hex", 5, 6, 6}, {"layered:2", 3, 4, 5}
+    };
+    private static final int MOVES = 8;
+
+    public static void main(String[] args){
+        int games = args.length>0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length>1 ? Long.parseLong(args[1]) : 975;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Int_List opened = new Int_List();
+        long checked = 0;
+        int failed = 0;
+        for(Object[] c : CASES){
+            Topology shape = Topology.Parse((String)c[0], (Integer)c[1], (Integer)c[2]);
+            int ncells = shape.Rows()*shape.Cols();
+            for(int g=0; g<games; g++){
+                Board board = new Board(shape, (Integer)c[3], random.nextLong());
+                Probability_Engine engine = new Probability_Engine(board);
+                opened.Clear();
+                board.Reveal(board.Rows()/2, board.Cols()/2, opened);
+                engine.Update_Opened(opened);
+
+                for(int m=0; m<MOVES && !board.Is_Won(); m++){
+                    Flag_Randomly(board, random);
+                    checked++;
+                    if(!Check(board, engine, c, m)){
+                        failed++;
+                        break;
+                    }
+
+                    int k;
+                    do{ k = random.nextInt(ncells); } while(board.Is_Mine(k) || board.Is_Cleared(k));
+                    if(board.Is_Flagged(board.Row(k), board.Col(k))){ board.Toggle_Flag(board.Row(k), board.Col(k)); }
+                    opened.Clear();
+                    board.Reveal(board.Row(k), board.Col(k), opened);
+                    engine.Update_Opened(opened);
+
+                    //Undo some moves, checking the position with them cleared
+                    //first so the engine has them cached
+                    if(random.nextInt(3)==0){
+                        checked++;
+                        if(!Check(board, engine, c, m)){
+                            failed++;
+                            break;
+                        }
+                        for(int n=0; n<opened.Size(); n++){ board.Change_State(opened.Get(n), 0); }
+                        engine.Update_Closed(opened);
+                    }
+                }
+            }
+        }
+
+        System.out.println(String.format("%d positions checked, %d differ from the brute force count", checked, failed));
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * Flag or unflag a few uncleared spaces, whether or not they are mines
+     */
+    private static void Flag_Randomly(Board board, SplittableRandom random){
+        int ncells = board.Rows()*board.Cols();
+        for(int n=random.nextInt(3); n>0; n--){
+            int k = random.nextInt(ncells);
+            if(!board.Is_Cleared(k)){ board.Toggle_Flag(board.Row(k), board.Col(k)); }
+        }
+    }
+
+    /**
+     * @return true if the engine's chance for every space matches the brute
+     * force count, printing the first which doesn't
+     */
+    private static boolean Check(Board board, Probability_Engine engine, Object[] c, int move){
+        double[] expected = Brute_Force(board);
+        for(int k=0; k<expected.length; k++){
+            double p = engine.Probability(k);
+            if(Math.abs(p-expected[k])<=TOLERANCE){ continue; }
+            System.out.println(String.format("%s %dx%d with %d mines, seed %d, move %d: space %d is %.6f, expected %.6f",
+                    c[0], c[1], c[2], c[3], board.Seed(), move, k, p, expected[k]));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Count every way of placing all the mines on the uncleared spaces which
+     * agrees with the numbers on the cleared spaces
+     * @return for each space, the fraction of those placements with a mine
+     * there
+     */
+    private static double[] Brute_Force(Board board){
+        Topology topology = board.Topology();
+        int ncells = board.Rows()*board.Cols();
+        int[] uncleared = new int[ncells];
+        int nuncleared = 0;
+        //Mines still needed around each cleared space, and its neighbours
+        //not yet decided
+        int[] need = new int[ncells], open = new int[ncells];
+        for(int k=0; k<ncells; k++){
+            if(!board.Is_Cleared(k)){
+                uncleared[nuncleared++] = k;
+                continue;
+            }
+            need[k] = board.Adj(k);
+            for(int d : topology.Offsets(k)){
+                if(!board.Is_Cleared(k+d)){ open[k]++; }
+            }
+        }
+
+        Search s = new Search(board, uncleared, nuncleared, need, open);
+        s.Place(0, board.Mines());
+        double[] p = new double[ncells];
+        for(int k=0; k<ncells; k++){ p[k] = s.total>0 ? (double)s.mines_at[k]/s.total : 0; }
+        return p;
+    }
+
+    /**
+     * Backtracking over the uncleared spaces in order, deciding whether each
+     * is a mine
+     */
+    private static class Search {
+        private final Board board;
+        private final Topology topology;
+        private final int[] uncleared, need, open;
+        private final int nuncleared;
+        private final boolean[] mine;
+        long total = 0;
+        final long[] mines_at;
+
+        Search(Board Board_In, int[] Uncleared, int N_Uncleared, int[] Need, int[] Open){
+            board = Board_In;
+            topology = board.Topology();
+            uncleared = Uncleared;
+            nuncleared = N_Uncleared;
+            need = Need;
+            open = Open;
+            mine = new boolean[need.length];
+            mines_at = new long[need.length];
+        }
+
+        /**
+         * @param n position in the uncleared spaces to decide next
+         * @param left mines still to place
+         */
+        void Place(int n, int left){
+            if(left>nuncleared-n){ return; }
+            if(n==nuncleared){
+                total++;
+                for(int k=0; k<mine.length; k++){
+                    if(mine[k]){ mines_at[k]++; }
+                }
+                return;
+            }
+            int k = uncleared[n];
+            for(int val=0; val<2; val++){
+                if(val==1 && left==0){ break; }
+                mine[k] = val==1;
+                boolean ok = true;
+                for(int d : topology.Offsets(k)){
+                    int c = k+d;
+                    if(!board.Is_Cleared(c)){ continue; }
+                    need[c] -= val;
+                    open[c]--;
+                    if(need[c]<0 || need[c]>open[c]){ ok = false; }
+                }
+                if(ok){ Place(n+1, left-val); }
+                for(int d : topology.Offsets(k)){
+                    int c = k+d;
+                    if(!board.Is_Cleared(c)){ continue; }
+                    need[c] += val;
+                    open[c]++;
+                }
+            }
+            mine[k] = false;
+        }
+    }
+}
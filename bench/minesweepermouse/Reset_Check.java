@@ -0,0 +1,129 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * Property check of restarting games in place, as Game does for "New Game
+ * (Same Difficulty)": games are played with Hint_Engine on one board and
+ * engine reused for every game, and again on a fresh board and engine for
+ * each, and must make the same moves with the same results.
+ *
+ *   Reset_Check [games per shape] [no guess boards per shape] [seed]
+ *
+ * Reused boards are restarted either with Board.Reset and a new seed, or by
+ * Board.Copy_From a board made by No_Guess_Generator, which is compared
+ * against playing the made board itself.
+ * The two kinds of restart are mixed on the same board, after games won and
+ * lost. Each game takes the engine's hint while it has one, and otherwise
+ * guesses a space picked from the game's seed, so lost games are played too.
+ * Exits with status 1 if any game differs, failing 'ant bench'.
+ *
+ * @author cjcode975
+ */
+class Reset_Check {
+
+    //Expert sized boards of each shape, rows being for each layer of a
+    //layered board and mines being for each layer
+    private static final String[] SHAPES = {"square", "torus", "hex", "layered:2"};
+    private static final int ROWS = 16, COLS = 30, MINES = 99;
+
+    public static void main(String[] args){
+        int games = args.length>0 ? Integer.parseInt(args[0]) : 300;
+        int copies = args.length>1 ? Integer.parseInt(args[1]) : 5;
+        long seed = args.length>2 ? Long.parseLong(args[2]) : 975;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        long played = 0, won = 0;
+        int failed = 0;
+        for(String name : SHAPES){
+            Topology shape = Topology.Parse(name, ROWS, COLS);
+            int mines = MINES*shape.Layers();
+            Board reused = new Board(shape, mines, 0);
+            Hint_Engine reused_hints = new Hint_Engine(reused);
+
+            for(int g=0; g<games+copies; g++){
+                //Spread the copies evenly among the games
+                int total = games+copies;
+                boolean copy = (long)g*copies/total!=(long)(g+1)*copies/total;
+                long game_seed = random.nextLong();
+                Board fresh;
+                if(copy){
+                    fresh = new No_Guess_Generator(shape, mines).Generate(game_seed);
+                    if(fresh==null){
+                        System.out.println(String.format("%s: no board without guessing found from seed %d", name, game_seed));
+                        failed++;
+                        continue;
+                    }
+                    reused.Copy_From(fresh);
+                }
+                else{
+                    fresh = new Board(shape, mines, game_seed);
+                    reused.Reset(game_seed);
+                }
+                reused_hints.Reset();
+
+                Int_List expected = Play(fresh, new Hint_Engine(fresh), game_seed);
+                Int_List got = Play(reused, reused_hints, game_seed);
+                played++;
+                if(fresh.Is_Won()){ won++; }
+                String problem = Compare(got, expected, reused, fresh);
+                if(problem!=null){
+                    System.out.println(String.format("%s game %d, seed %d%s: %s", name, g, game_seed, copy ? ", copied" : "", problem));
+                    failed++;
+                }
+            }
+        }
+
+        System.out.println(String.format("%d games played on reused boards, %d won: %d differ from fresh boards", played, won, failed));
+        if(failed>0){ System.exit(1); }
+    }
+
+    /**
+     * Play a game from the centre space, taking hints while there are any
+     * and otherwise guessing
+     * @param seed picks the guesses, so two boards of the same game guess
+     * the same spaces
+     * @return the moves made: the index of each space cleared, or -1-index
+     * for each space flagged
+     */
+    private static Int_List Play(Board board, Hint_Engine hints, long seed){
+        SplittableRandom guesses = new SplittableRandom(seed);
+        int ncells = board.Rows()*board.Cols();
+        Int_List moves = new Int_List();
+        Int_List opened = new Int_List();
+        board.Reveal(board.Rows()/2, board.Cols()/2, opened);
+        hints.Update_Opened(opened);
+        while(!board.Is_Won() && !board.Is_Exploded()){
+            int k = hints.Find_Hint();
+            if(k>=0 && hints.Hint_Is_Mine()){
+                board.Toggle_Flag(board.Row(k), board.Col(k));
+                moves.Add(-1-k);
+                continue;
+            }
+            if(k<0){
+                do{ k = guesses.nextInt(ncells); } while(board.Is_Cleared(k) || board.Is_Flagged(board.Row(k), board.Col(k)));
+            }
+            opened.Clear();
+            board.Reveal(board.Row(k), board.Col(k), opened);
+            hints.Update_Opened(opened);
+            moves.Add(k);
+        }
+        return moves;
+    }
+
+    /**
+     * @return what differs between two games, or null if nothing does
+     */
+    private static String Compare(Int_List got, Int_List expected, Board reused, Board fresh){
+        for(int n=0; n<Math.min(got.Size(), expected.Size()); n++){
+            if(got.Get(n)!=expected.Get(n)){ return "move "+n+" is "+got.Get(n)+", expected "+expected.Get(n); }
+        }
+        if(got.Size()!=expected.Size()){ return got.Size()+" moves, expected "+expected.Size(); }
+        if(reused.Num_Cleared()!=fresh.Num_Cleared() || reused.Num_Flagged()!=fresh.Num_Flagged()
+                || reused.Is_Won()!=fresh.Is_Won() || reused.Exploded()!=fresh.Exploded()){
+            return "final state differs";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+
+package minesweepermouse;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of Game_Server: starts a server in this process, connects many
+ * sessions at once and has each play games as fast as it can, clearing
+ * random spaces it has not seen cleared until the game is won or lost.
+ *
+ *   Server_Bench [sessions] [seconds] [rows cols mines]
+ *
+ * Reports the sessions held open, games and moves per second, round trip
+ * times and the heap used per session.
+ *
+ * @author cjcode975
+ */
+class Server_Bench {
+
+    public static void main(String[] args) throws Exception {
+        final int nsessions = args.length>0 ? Integer.parseInt(args[0]) : 1000;
+        final int seconds = args.length>1 ? Integer.parseInt(args[1]) : 20;
+        final int rows = args.length>4 ? Integer.parseInt(args[2]) : 16;
+        final int cols = args.length>4 ? Integer.parseInt(args[3]) : 30;
+        final int mines = args.length>4 ? Integer.parseInt(args[4]) : 99;
+
+        Game_Server server = new Game_Server(0, nsessions, 60000, 1<<20);
+        server.Start();
+        final int port = server.Port();
+
+        final Histogram round_trip = new Histogram("Round trip", "ns");
+        final LongAdder games = new LongAdder();
+        final CountDownLatch connected = new CountDownLatch(nsessions);
+        final CountDownLatch finished = new CountDownLatch(nsessions);
+        final AtomicBoolean stop = new AtomicBoolean(false);
+
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        long heap_before = rt.totalMemory()-rt.freeMemory();
+
+        for(int s=0; s<nsessions; s++){
+            final long seed = s;
+            Thread t = new Thread(null, new Runnable(){
+                @Override
+                public void run(){
+                    try{ Client(port, seed, rows, cols, mines, connected, stop, round_trip, games); }
+                    catch(IOException | InterruptedException e){ System.err.println("Client failed: "+e); }
+                    finally{ finished.countDown(); }
+                }
+            }, "Client "+s, 256*1024);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        //Measure once everyone is connected and holding a game
+        connected.await();
+        System.gc();
+        long heap_after = rt.totalMemory()-rt.freeMemory();
+        long moves0 = server.Moves(), games0 = games.sum(), t0 = System.nanoTime();
+        Thread.sleep(seconds*1000L);
+        long moves1 = server.Moves(), games1 = games.sum(), t1 = System.nanoTime();
+        stop.set(true);
+        finished.await();
+
+        double secs = (t1-t0)/1e9;
+        System.out.println(String.format("Java %s, %d cores", System.getProperty("java.version"), rt.availableProcessors()));
+        System.out.println(String.format("Sessions:   %d open at once, %d served", nsessions, server.Sessions_Served()));
+        System.out.println(String.format("Board:      %dx%d with %d mines", rows, cols, mines));
+        System.out.println(String.format("Games:      %.0f per second", (games1-games0)/secs));
+        System.out.println(String.format("Moves:      %.0f per second", (moves1-moves0)/secs));
+        System.out.println(round_trip.Summary());
+        System.out.println(String.format("Heap:       %.1f KB per session (client and server)", (heap_after-heap_before)/1024.0/nsessions));
+        server.Stop();
+    }
+
+    /**
+     * Play games until told to stop
+     */
+    private static void Client(int port, long seed, int rows, int cols, int mines, CountDownLatch connected,
+            AtomicBoolean stop, Histogram round_trip, LongAdder games) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean[] cleared = new boolean[rows*cols];
+        boolean first = true;
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)){
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+
+            while(!stop.get()){
+                Ask(out, in, "NEW "+rows+" "+cols+" "+mines+" "+random.nextLong(), round_trip);
+                //Start playing once every session is open, so that sessions
+                //playing don't hold up the others connecting
+                if(first){
+                    connected.countDown();
+                    connected.await();
+                    first = false;
+                }
+                Arrays.fill(cleared, false);
+                while(true){
+                    int k = random.nextInt(cleared.length);
+                    if(cleared[k]){ continue; }
+                    String reply = Ask(out, in, "OPEN "+(k/cols)+" "+(k%cols), round_trip);
+                    String[] words = reply.split(" ");
+                    if(words[0].equals("LOST") || words[0].equals("WON")){ break; }
+                    if(!words[0].equals("PLAYING")){ throw new IOException("Unexpected reply "+reply); }
+                    for(int w=2; w+2<words.length; w+=3){
+                        cleared[Integer.parseInt(words[w])*cols+Integer.parseInt(words[w+1])] = true;
+                    }
+                }
+                games.increment();
+            }
+            Ask(out, in, "QUIT", round_trip);
+        }
+    }
+
+    private static String Ask(Writer out, BufferedReader in, String command, Histogram round_trip) throws IOException {
+        long start = System.nanoTime();
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        round_trip.Record_Since(start);
+        if(reply==null){ throw new IOException("Server closed the session"); }
+        return reply;
+    }
+}
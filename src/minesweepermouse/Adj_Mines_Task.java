@@ -0,0 +1,158 @@
+
+package minesweepermouse;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task counting the adjacent mines of every space in a band of rows
+ * of a packed board (see Board for the layout). Bands larger than THRESHOLD
+ * spaces are split in half and counted in parallel.
+ *
+ * Within a band, neighbours are found from the board's topology as offsets
+ * from each space, with every space in the middle columns of a row sharing
+ * the same offsets. On square boards, spaces away from the edges are instead
+ * counted with the 8 neighbours written out, which is the common case and
+ * slightly faster, and only the edges use the offsets.
+ *
+ * Each task only writes to the rows of its own band and only reads the mine
+ * bits of the rows either side, which are never changed here, so bands can
+ * be counted at the same time.
+ *
+ * @author cjcode975
+ */
+class Adj_Mines_Task extends RecursiveAction {
+
+    //Largest band, in spaces, which is counted without splitting further
+    static final int THRESHOLD = 1<<16;
+
+    private final byte[] cells;
+    private final Topology topology;
+    private final int nrows, ncols;
+    //Rows first_row up to (not including) last_row make up the band
+    private final int first_row, last_row;
+
+    /**
+     * @param Cells packed spaces of the board, with no adjacent counts set
+     * @param Shape topology of the board
+     * @param First_Row first row of the band
+     * @param Last_Row row after the end of the band
+     */
+    public Adj_Mines_Task(byte[] Cells, Topology Shape, int First_Row, int Last_Row){
+        cells = Cells;
+        topology = Shape;
+        nrows = Shape.Rows();
+        ncols = Shape.Cols();
+        first_row = First_Row;
+        last_row = Last_Row;
+    }
+
+    /**
+     * Count the adjacent mines of every space on a board, in parallel if the
+     * board is large enough to be worth it
+     * @param cells packed spaces of the board, with no adjacent counts set
+     * @param topology topology of the board
+     */
+    public static void Count(byte[] cells, Topology topology){
+        Adj_Mines_Task task = new Adj_Mines_Task(cells, topology, 0, topology.Rows());
+        if(cells.length<=THRESHOLD){
+            task.compute();
+        }
+        else{
+            task.invoke();
+        }
+    }
+
+    @Override
+    protected void compute(){
+        if(last_row-first_row>1 && (long)(last_row-first_row)*ncols>THRESHOLD){
+            int mid = (first_row+last_row)>>>1;
+            invokeAll(new Adj_Mines_Task(cells, topology, first_row, mid),
+                      new Adj_Mines_Task(cells, topology, mid, last_row));
+            return;
+        }
+
+        if(topology.Type()==Topology.SQUARE){
+            Count_Interior();
+            Count_Border();
+        }
+        else{
+            for(int i=first_row; i<last_row; i++){ Count_Row(i); }
+        }
+    }
+
+    /**
+     * Count every space in a row from the topology's offsets
+     * @param i row position
+     */
+    private void Count_Row(int i){
+        Count_Checked(i,0);
+        if(ncols>1){ Count_Checked(i,ncols-1); }
+        if(ncols<3){ return; }
+
+        int[] off = topology.Offsets(i,1);
+        for(int k=i*ncols+1, end=(i+1)*ncols-1; k<end; k++){
+            int count = 0;
+            for(int d : off){ count += Mine(k+d); }
+            int c = cells[k];
+            cells[k] = (byte)(c | (count & (Mine(k)-1)));
+        }
+    }
+
+    /**
+     * Count spaces with all 8 neighbours on the board
+     */
+    private void Count_Interior(){
+        int r0 = Math.max(first_row, 1);
+        int r1 = Math.min(last_row, nrows-1);
+
+        for(int i=r0; i<r1; i++){
+            int above = (i-1)*ncols, row = i*ncols, below = (i+1)*ncols;
+            for(int j=1; j<ncols-1; j++){
+                int count = Mine(above+j-1)+Mine(above+j)+Mine(above+j+1)
+                          + Mine(row+j-1)              +Mine(row+j+1)
+                          + Mine(below+j-1)+Mine(below+j)+Mine(below+j+1);
+                //Mines keep a count of 0
+                int c = cells[row+j];
+                cells[row+j] = (byte)(c | (count & (Mine(row+j)-1)));
+            }
+        }
+    }
+
+    /**
+     * Count spaces in the first or last row or column of the board, whose
+     * neighbours depend on which edges they are on
+     */
+    private void Count_Border(){
+        for(int i=first_row; i<last_row; i++){
+            if(i==0 || i==nrows-1){
+                for(int j=0; j<ncols; j++){ Count_Checked(i,j); }
+            }
+            else{
+                Count_Checked(i,0);
+                if(ncols>1){ Count_Checked(i,ncols-1); }
+            }
+        }
+    }
+
+    /**
+     * Count the adjacent mines of a single space from the topology's offsets
+     * @param i row position
+     * @param j column position
+     */
+    private void Count_Checked(int i, int j){
+        int k = i*ncols+j;
+        if(Mine(k)==1){ return; }
+
+        int count = 0;
+        for(int d : topology.Offsets(i,j)){ count += Mine(k+d); }
+        cells[k] |= count;
+    }
+
+    /**
+     * @param k index of a space
+     * @return 1 if the space is a mine, 0 otherwise
+     */
+    private int Mine(int k){
+        return (cells[k] & Board.MINE) >>> 4;
+    }
+}
@@ -0,0 +1,432 @@
+
+package minesweepermouse;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scores many seeded boards for how hard they are, to rate and pick boards.
+ * For each board it finds:
+ *   3BV         the fewest clicks which clear the board: one per opening,
+ *               plus one per numbered space not next to any opening
+ *   openings    the number of openings, areas of spaces with no adjacent
+ *               mines which clear together from one click, and the size of
+ *               the largest, counting the numbered spaces around its edge
+ *   isolated    the number of numbered spaces not next to any opening
+ *   solvable    whether Hint_Engine clears the board from the centre space
+ *               without guessing, as No_Guess_Generator requires
+ *
+ * Board n is made with the seed Simulation.Game_Seed(master seed, n), with
+ * its first click in the centre, so any board can be made again from its
+ * seed as No_Guess_Generator does. The first three metrics come from two
+ * passes over the spaces, with no queue: the first joins each space with no
+ * adjacent mines to those before it in a union-find forest, and the second
+ * adds each numbered space to the openings its neighbours belong to.
+ *
+ * Boards are shared between threads a block at a time, as in Simulation,
+ * and each thread reuses one board and its arrays for all its boards. Blocks
+ * are written out in order as they finish, so the results stream out in
+ * board order whatever the number of threads, holding only the blocks which
+ * finished early in memory. Results are written as CSV, or as a binary file
+ * with a 36 byte header (all values big-endian):
+ *   int  MAGIC ("MSWA")
+ *   int  VERSION
+ *   int  topology type (see Topology), int layers
+ *   int  rows, int columns, int mines
+ *   long master seed
+ * followed by RECORD_SIZE bytes per board:
+ *   long seed
+ *   int  3BV, int openings, int largest opening, int isolated numbers
+ *   int  flags - FLAG_SOLVABLE if the board can be solved without guessing
+ *
+ * @author cjcode975
+ */
+class Analytics {
+
+    static final int MAGIC = 0x4D535741;
+    static final int VERSION = 1;
+    static final int FLAG_SOLVABLE = 1;
+    static final int RECORD_SIZE = 28;
+
+    //Number of boards a thread takes at a time
+    private static final int BLOCK = 256;
+    private static final int BUFFER = 1<<16;
+
+    private final Topology topology;
+    private final int nmines;
+    private final boolean binary;
+
+    //Totals and distributions over every board of the last run
+    private final LongAdder solvable = new LongAdder();
+    private final Histogram bbbv = new Histogram("3BV", "clicks");
+    private final Histogram openings = new Histogram("Openings", "openings");
+    private final Histogram opening_size = new Histogram("Opening size", "spaces");
+    private final Histogram isolated = new Histogram("Isolated", "spaces");
+    private long wall_nanos = 0;
+    private int nboards = 0, nthreads = 0;
+
+    //Output, and the blocks which finished before the ones ahead of them
+    private DataOutputStream out_binary;
+    private Writer out_csv;
+    private final Map<Integer, Block> pending = new HashMap<>();
+    private int next_write = 0;
+    //First error writing the output, which stops every thread
+    private volatile IOException failure = null;
+
+    /**
+     * @param Shape topology of the minefield
+     * @param N_Mines number of mines in minefield
+     * @param Binary true to write the binary format, false for CSV
+     * @throws IllegalArgumentException if the mines don't fit, see
+     * Board.Check_Size
+     */
+    public Analytics(Topology Shape, int N_Mines, boolean Binary){
+        //Fail here rather than on every thread
+        Board.Check_Size(Shape, N_Mines);
+        topology = Shape;
+        nmines = N_Mines;
+        binary = Binary;
+    }
+
+    /**
+     * Score a number of boards, writing the results out in board order. The
+     * totals and distributions of any previous run are replaced.
+     * @param N_Boards number of boards to score
+     * @param Master_Seed seed all the boards are derived from
+     * @param N_Threads number of threads to score on
+     * @param Out stream the results are written to, which is flushed but
+     * left open
+     * @throws IOException if the results can't be written
+     */
+    public void Run(int N_Boards, long Master_Seed, int N_Threads, OutputStream Out) throws IOException {
+        solvable.reset();
+        bbbv.Reset();
+        openings.Reset();
+        opening_size.Reset();
+        isolated.Reset();
+        nboards = N_Boards;
+        nthreads = N_Threads;
+        pending.clear();
+        next_write = 0;
+        failure = null;
+
+        if(binary){
+            out_binary = new DataOutputStream(new BufferedOutputStream(Out, BUFFER));
+            out_binary.writeInt(MAGIC);
+            out_binary.writeInt(VERSION);
+            out_binary.writeInt(topology.Type());
+            out_binary.writeInt(topology.Layers());
+            out_binary.writeInt(topology.Rows());
+            out_binary.writeInt(topology.Cols());
+            out_binary.writeInt(nmines);
+            out_binary.writeLong(Master_Seed);
+        }
+        else{
+            out_csv = new BufferedWriter(new OutputStreamWriter(Out, StandardCharsets.US_ASCII), BUFFER);
+            out_csv.write("board,seed,3bv,openings,largest_opening,isolated,solvable\n");
+        }
+
+        //Long, so threads taking blocks past the last board can't wrap round
+        //to the first
+        AtomicLong next = new AtomicLong(0);
+        ForkJoinPool pool = new ForkJoinPool(N_Threads);
+        long start = System.nanoTime();
+        try{
+            Scorer[] scorers = new Scorer[N_Threads];
+            for(int t=0; t<N_Threads; t++){
+                scorers[t] = new Scorer(next, Master_Seed);
+                pool.execute(scorers[t]);
+            }
+            for(Scorer s : scorers){ s.join(); }
+        }
+        finally{
+            pool.shutdown();
+        }
+        if(failure!=null){ throw failure; }
+        if(binary){ out_binary.flush(); }
+        else{ out_csv.flush(); }
+        wall_nanos = System.nanoTime()-start;
+    }
+
+    /**
+     * Metrics of one board, found by Scan
+     */
+    static class Result {
+        long seed;
+        int bbbv, openings, largest, isolated;
+        boolean solvable;
+    }
+
+    /**
+     * Finds the metrics of boards of one topology, keeping its arrays from
+     * one board to the next. Each thread needs its own.
+     */
+    static class Scan {
+
+        //Parent of each space with no adjacent mines in the union-find
+        //forest, or -1 for other spaces. Openings are the trees, each
+        //labelled by its root, the earliest space in it
+        private final int[] parent;
+        //Spaces in the opening of each root
+        private final int[] size;
+        private final int[] roots = new int[Topology.MAX_DEGREE];
+        private final Histogram sizes;
+
+        /**
+         * @param Shape topology of the boards to scan
+         * @param Sizes has the size of every opening recorded to it, or null
+         */
+        Scan(Topology Shape, Histogram Sizes){
+            int ncells = Shape.Rows()*Shape.Cols();
+            parent = new int[ncells];
+            size = new int[ncells];
+            sizes = Sizes;
+        }
+
+        /**
+         * Find 3BV, the openings and the isolated numbers of a board
+         * @param board board with its mines placed
+         * @param r filled in with the metrics, other than seed and solvable
+         */
+        void Measure(Board board, Result r){
+            Topology topology = board.Topology();
+            int ncells = board.Rows()*board.Cols();
+
+            //Join each space with no adjacent mines to those before it.
+            //Neighbours before a space always have negative offsets, so every
+            //pair is seen once, from the later space
+            for(int k=0; k<ncells; k++){
+                if(board.Is_Mine(k) || board.Adj(k)!=0){
+                    parent[k] = -1;
+                    continue;
+                }
+                parent[k] = k;
+                size[k] = 0;
+                for(int d : topology.Offsets(k)){
+                    if(d<0 && parent[k+d]>=0){ Union(k, k+d); }
+                }
+            }
+
+            //Count the spaces of each opening. A numbered space belongs to
+            //every opening next to it, or is isolated if there are none
+            int nisolated = 0;
+            for(int k=0; k<ncells; k++){
+                if(parent[k]>=0){
+                    size[Find(k)]++;
+                    continue;
+                }
+                if(board.Is_Mine(k)){ continue; }
+                int nroots = 0;
+                for(int d : topology.Offsets(k)){
+                    if(parent[k+d]<0){ continue; }
+                    int root = Find(k+d);
+                    boolean seen = false;
+                    for(int n=0; n<nroots && !seen; n++){ seen = roots[n]==root; }
+                    if(!seen){ roots[nroots++] = root; }
+                }
+                if(nroots==0){ nisolated++; }
+                for(int n=0; n<nroots; n++){ size[roots[n]]++; }
+            }
+
+            int nopenings = 0, largest = 0;
+            for(int k=0; k<ncells; k++){
+                if(parent[k]!=k){ continue; }
+                nopenings++;
+                largest = Math.max(largest, size[k]);
+                if(sizes!=null){ sizes.Record(size[k]); }
+            }
+            r.openings = nopenings;
+            r.largest = largest;
+            r.isolated = nisolated;
+            r.bbbv = nopenings+nisolated;
+        }
+
+        /**
+         * @return root of the tree holding space k, halving the path to it
+         */
+        private int Find(int k){
+            while(parent[k]!=k){
+                parent[k] = parent[parent[k]];
+                k = parent[k];
+            }
+            return k;
+        }
+
+        /**
+         * Join the trees of two spaces, keeping the earlier root
+         */
+        private void Union(int a, int b){
+            a = Find(a);
+            b = Find(b);
+            if(a<b){ parent[b] = a; }
+            else if(b<a){ parent[a] = b; }
+        }
+    }
+
+    /**
+     * Results of a block of boards, waiting to be written out
+     */
+    private static class Block {
+        final int first;
+        final Result[] results;
+
+        Block(int First, int N){
+            first = First;
+            results = new Result[N];
+            for(int n=0; n<N; n++){ results[n] = new Result(); }
+        }
+    }
+
+    /**
+     * Write out a finished block, along with any blocks after it which were
+     * waiting for it, keeping the output in board order
+     * @param block the finished block
+     */
+    private synchronized void Finished(Block block){
+        pending.put(block.first, block);
+        try{
+            for(Block b=pending.remove(next_write); b!=null; b=pending.remove(next_write)){
+                for(int n=0; n<b.results.length; n++){ Write(b.first+n, b.results[n]); }
+                next_write += b.results.length;
+            }
+        }
+        catch(IOException e){
+            if(failure==null){ failure = e; }
+        }
+    }
+
+    private void Write(int board, Result r) throws IOException {
+        if(binary){
+            out_binary.writeLong(r.seed);
+            out_binary.writeInt(r.bbbv);
+            out_binary.writeInt(r.openings);
+            out_binary.writeInt(r.largest);
+            out_binary.writeInt(r.isolated);
+            out_binary.writeInt(r.solvable ? FLAG_SOLVABLE : 0);
+        }
+        else{
+            out_csv.write(board+","+r.seed+","+r.bbbv+","+r.openings+","+r.largest+","+r.isolated+","+(r.solvable ? 1 : 0)+"\n");
+        }
+    }
+
+    /**
+     * Task scoring blocks of boards until there are none left
+     */
+    private class Scorer extends RecursiveAction {
+
+        private final AtomicLong next;
+        private final long master_seed;
+
+        Scorer(AtomicLong Next, long Master_Seed){
+            next = Next;
+            master_seed = Master_Seed;
+        }
+
+        @Override
+        protected void compute(){
+            Board board = new Board(topology, nmines, 0);
+            Scan scan = new Scan(topology, opening_size);
+            //Never set, as every board is played out to the end
+            AtomicBoolean stop = new AtomicBoolean(false);
+            for(long taken=next.getAndAdd(BLOCK); taken<nboards && failure==null; taken=next.getAndAdd(BLOCK)){
+                int first = (int)taken;
+                Block block = new Block(first, Math.min(BLOCK, nboards-first));
+                for(int n=0; n<block.results.length; n++){
+                    Result r = block.results[n];
+                    r.seed = Simulation.Game_Seed(master_seed, first+n);
+                    board.Reset(r.seed);
+                    board.Place_Mines(board.Rows()/2, board.Cols()/2);
+                    scan.Measure(board, r);
+                    r.solvable = No_Guess_Generator.Play_Out(board, stop);
+
+                    if(r.solvable){ solvable.increment(); }
+                    bbbv.Record(r.bbbv);
+                    openings.Record(r.openings);
+                    isolated.Record(r.isolated);
+                }
+                Finished(block);
+            }
+        }
+    }
+
+    public long Solvable(){ return solvable.sum(); }
+
+    /**
+     * @return boards scored per second of wall clock time in the last run
+     */
+    public double Boards_Per_Second(){
+        return wall_nanos>0 ? nboards*1e9/wall_nanos : 0;
+    }
+
+    /**
+     * @return summary of the last run
+     */
+    public String Report(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Board:      %dx%d %s, %d mines%n", topology.Rows(), topology.Cols(), topology.Name(), nmines));
+        sb.append(String.format("Boards:     %d on %d threads%n", nboards, nthreads));
+        if(nboards==0){ return sb.toString(); }
+        sb.append(String.format("Solvable:   %d (%.2f%%)%n", Solvable(), 100.0*Solvable()/nboards));
+        for(Histogram h : new Histogram[]{bbbv, openings, opening_size, isolated}){
+            sb.append(h.Summary()).append(String.format("%n"));
+        }
+        sb.append(String.format("Throughput: %.0f boards/s (%.2f s wall)%n", Boards_Per_Second(), wall_nanos/1e9));
+        return sb.toString();
+    }
+
+    /**
+     * Score boards from the command line:
+     *   --analyze rows cols mines boards [seed] [threads] [shape] [file]
+     * where shape is square (the default), torus, hex or layered:n, and rows
+     * and mines are for each layer of a layered board. Results are written to
+     * the file, in the binary format if its name ends in .bin and as CSV
+     * otherwise, or as CSV to standard output if there is no file or it is -.
+     * The summary is written to standard error.
+     * @param args the command line arguments, starting with --analyze
+     */
+    static void Main(String[] args){
+        if(args.length<5){
+            System.err.println("Usage: --analyze rows cols mines boards [seed] [threads] [square|torus|hex|layered:n] [file|-]");
+            System.exit(1);
+        }
+        try{
+            int rows = Integer.parseInt(args[1]);
+            int cols = Integer.parseInt(args[2]);
+            int mines = Integer.parseInt(args[3]);
+            int boards = Integer.parseInt(args[4]);
+            long seed = args.length>5 ? Long.parseLong(args[5]) : 1;
+            int threads = args.length>6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+            Topology shape = Topology.Parse(args.length>7 ? args[7] : "square", rows, cols);
+            String file = args.length>8 ? args[8] : "-";
+
+            Analytics analytics = new Analytics(shape, mines*shape.Layers(), file.endsWith(".bin"));
+            if(file.equals("-")){
+                analytics.Run(boards, seed, threads, System.out);
+            }
+            else{
+                try(OutputStream out = new FileOutputStream(file)){
+                    analytics.Run(boards, seed, threads, out);
+                }
+            }
+            System.err.print(analytics.Report());
+        }
+        catch(IllegalArgumentException | IOException e){
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,803 @@
+
+package minesweepermouse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Headless model of a minesweeper board, holding the minefield and the state
+ * of every space with no dependency on the GUI. A window, a bot or a test can
+ * all drive a game through this class.
+ *
+ * Each space is packed into a single byte: the low 4 bits hold the number of
+ * adjacent mines, and the remaining bits mark whether the space is a mine, has
+ * been cleared or has been flagged. Spaces are addressed by index
+ * row*ncols+col, and which spaces are adjacent is given by the board's
+ * Topology.
+ *
+ * Huge boards with few mines keep their spaces in Sparse_Cells instead of an
+ * array, giving the same bytes for each space from less memory but taking
+ * longer to read and write them. Which is used is chosen when the board is
+ * created, from its size and number of mines, see Is_Sparse.
+ *
+ * Spaces which are cleared or flagged are also marked as changed and noted in
+ * a list, so that a save file can be brought up to date by writing only the
+ * spaces changed since it was last written (see Save_File). Once more spaces
+ * have changed than it is worth listing, the list is dropped, see
+ * Changed_Overflow.
+ *
+ * @author cjcode975
+ */
+class Board {
+
+    //Bit layout of a space
+    static final int ADJ_MASK = 0x0F;
+    static final int MINE = 0x10;
+    static final int CLEARED = 0x20;
+    static final int FLAGGED = 0x40;
+    static final int CHANGED = 0x80;
+
+    //Smallest board, in spaces, which may be stored sparsely. Smaller boards
+    //take little memory anyway, and are faster to play stored densely
+    static final int SPARSE_MIN_CELLS = 1<<22;
+
+    //Shape of the board, and number of rows, columns and mines for the game
+    private final Topology topology;
+    private final int nrows, ncols, nmines;
+    //Seed the mines are placed from, and whether they have been placed yet
+    private long seed;
+    private boolean generated = false;
+    //Packed state of every space, in an array unless the board is stored
+    //sparsely, in which case the array is null
+    private final int ncells;
+    private final byte[] cells;
+    private final Sparse_Cells sparse;
+    //Keep track of number of flags placed and number of cleaned slots
+    private int nflagged = 0;
+    private int num_cleared = 0;
+
+    //Regions of no-mines are known as 'islands'. For each space with no
+    //adjacent mines keep the island it is part of (0 if none, otherwise island
+    //number + 1), and keep the spaces making up each island packed together,
+    //island n taking island_cells[island_start[n]] up to island_start[n+1]
+    private int[] island_id;
+    private int[] island_start;
+    private int[] island_cells;
+    private int nislands;
+
+    //Number of mines placed so far, read by other threads while the mines
+    //are being placed
+    private volatile int mines_placed = 0;
+    //Mine which was cleared, ending the game, or -1 if none
+    private int exploded = -1;
+
+    //Spaces cleared or flagged since the list was last emptied, and whether
+    //too many have changed to list
+    private int[] changed = new int[64];
+    private int nchanged = 0;
+    private boolean changed_overflow = false;
+
+    /**
+     * Create a new board. The mines are not placed until Place_Mines is
+     * called, normally with the first space cleared so that the first click
+     * of a game is always safe.
+     *
+     * @param N_Rows number of rows in minefield
+     * @param N_Cols number of columns in minefield
+     * @param N_Mines number of mines in minefield
+     * @param Seed seed for placing the mines. The same seed, size and first
+     * space always give the same minefield
+     */
+    public Board(int N_Rows, int N_Cols, int N_Mines, long Seed){
+        this(new Topology(N_Rows, N_Cols), N_Mines, Seed);
+    }
+
+    /**
+     * Create a new board of any shape, as for Board(rows, cols, mines, seed)
+     *
+     * @param Shape topology of the board, which may be shared between boards
+     * @param N_Mines number of mines in minefield
+     * @param Seed seed for placing the mines
+     */
+    public Board(Topology Shape, int N_Mines, long Seed){
+        Check_Size(Shape, N_Mines);
+        topology = Shape;
+        nrows = Shape.Rows();
+        ncols = Shape.Cols();
+        nmines = N_Mines;
+        seed = Seed;
+
+        ncells = nrows*ncols;
+        if(Is_Sparse(Shape, N_Mines)){
+            cells = null;
+            sparse = new Sparse_Cells(ncells, Max_Entries(Shape, N_Mines));
+        }
+        else{
+            cells = new byte[ncells];
+            sparse = null;
+        }
+    }
+
+    /**
+     * Check that a board can be made with a number of mines, which needs at
+     * least one space left without a mine
+     * @param shape topology of the board
+     * @param mines number of mines
+     * @throws IllegalArgumentException if the mines don't fit
+     */
+    static void Check_Size(Topology shape, int mines){
+        if(mines<0 || mines>=(long)shape.Rows()*shape.Cols()){
+            throw new IllegalArgumentException("Invalid board size "+shape.Rows()+"x"+shape.Cols()+" with "+mines+" mines");
+        }
+    }
+
+    /**
+     * Whether a board would be stored sparsely, which it is if it is large
+     * and that takes at most half the memory of storing it densely
+     * @param shape topology of the board
+     * @param mines number of mines
+     * @return true if the board is stored sparsely
+     */
+    static boolean Is_Sparse(Topology shape, long mines){
+        long n = (long)shape.Rows()*shape.Cols();
+        //Sparse storage takes 5 bytes or more for each space in the table, so
+        //boards with more than n/10 of those are dense without sizing a table
+        //which may be too large to make
+        long entries = Max_Entries(shape, mines);
+        return n>=SPARSE_MIN_CELLS && entries<=n/10 && 2*Sparse_Cells.Bytes(n, entries)<=n;
+    }
+
+    /**
+     * @return most spaces which can be mines or next to one
+     */
+    private static long Max_Entries(Topology shape, long mines){
+        return Math.min((long)shape.Rows()*shape.Cols(), mines*(1+shape.Max_Degree()));
+    }
+
+    /**
+     * Memory a board of a size takes, however it is stored, not counting
+     * anything made by Islands
+     * @param shape topology of the board
+     * @param mines number of mines
+     * @return size in bytes
+     */
+    static long Memory_Estimate(Topology shape, long mines){
+        long n = (long)shape.Rows()*shape.Cols();
+        return Is_Sparse(shape, mines) ? Sparse_Cells.Bytes(n, Max_Entries(shape, mines)) : n;
+    }
+
+    /**
+     * @return true if this board's spaces are stored sparsely
+     */
+    public boolean Is_Sparse(){ return sparse!=null; }
+
+    /**
+     * @param k index of a space
+     * @return packed byte of the space
+     */
+    private int Get(int k){
+        return sparse==null ? cells[k] : sparse.Get(k);
+    }
+
+    /**
+     * Replace the packed byte of a space
+     * @param k index of the space
+     * @param b new packed byte
+     */
+    private void Put(int k, int b){
+        if(sparse==null){ cells[k] = (byte)b; }
+        else{ sparse.Set(k, b); }
+    }
+
+    /**
+     * Set the cleared, flagged or changed bits of a space, which is quicker
+     * than Put on sparse boards
+     * @param k index of the space
+     * @param bits bits to set
+     */
+    private void Set_Bits(int k, int bits){
+        if(sparse==null){ cells[k] |= bits; }
+        else{ sparse.Set_State(k, bits); }
+    }
+
+    /**
+     * Start a new game on this board, as if it had just been created with a
+     * new seed, reusing its memory
+     * @param Seed seed for placing the mines
+     */
+    public void Reset(long Seed){
+        if(sparse==null){ Arrays.fill(cells, (byte)0); }
+        else{ sparse.Clear(); }
+        seed = Seed;
+        generated = false;
+        mines_placed = 0;
+        nflagged = 0;
+        num_cleared = 0;
+        exploded = -1;
+        nchanged = 0;
+        changed_overflow = false;
+        island_id = null;
+        island_start = null;
+        island_cells = null;
+        nislands = 0;
+    }
+
+    /**
+     * Make this board a copy of another of the same size, such as one made in
+     * the background, reusing this board's memory. Spaces changed on the other
+     * board are changed on this one.
+     * @param other board to copy
+     */
+    public void Copy_From(Board other){
+        if(!other.topology.equals(topology) || other.nmines!=nmines){
+            throw new IllegalArgumentException("Board sizes differ");
+        }
+        Reset(other.seed);
+        if(sparse==null){ System.arraycopy(other.cells, 0, cells, 0, ncells); }
+        else{ sparse.Copy_From(other.sparse); }
+        generated = other.generated;
+        mines_placed = other.mines_placed;
+        nflagged = other.nflagged;
+        num_cleared = other.num_cleared;
+        exploded = other.exploded;
+        if(changed.length<other.nchanged){ changed = new int[other.changed.length]; }
+        System.arraycopy(other.changed, 0, changed, 0, other.nchanged);
+        nchanged = other.nchanged;
+        changed_overflow = other.changed_overflow;
+    }
+
+    /**
+     * Generate the minefield for the game, randomly locating the mines. The
+     * given space is kept clear of mines, along with its neighbours if there
+     * is room for all the mines elsewhere.
+     *
+     * Mines are chosen with Floyd's sampling algorithm, so the time taken
+     * depends on the number of mines rather than the size of the board. The
+     * mine bits of the board itself are used as the set of spaces chosen so
+     * far, so no extra memory is needed, and on a sparse board placing the
+     * mines takes no time at all for the spaces without one.
+     *
+     * Large boards can be generated on another thread, see Board_Maker.
+     * Progress is given by Mines_Placed, and interrupting the thread stops
+     * generation with a CancellationException, leaving the board empty.
+     *
+     * @param i row position of the first space cleared, or -1 for none
+     * @param j column position of the first space cleared, or -1 for none
+     */
+    public void Place_Mines(int i, int j){
+        if(generated){ throw new IllegalStateException("Mines already placed"); }
+        long start = System.nanoTime();
+
+        //Spaces to keep clear, in increasing order
+        int[] safe = new int[1+Topology.MAX_DEGREE];
+        int nsafe = 0;
+        if(i>=0 && j>=0){
+            int k = Index(i,j);
+            safe[nsafe++] = k;
+            if(nmines<=ncells-1-topology.Max_Degree()){
+                for(int d : topology.Offsets(k)){ safe[nsafe++] = k+d; }
+            }
+            Arrays.sort(safe, 0, nsafe);
+        }
+
+        SplittableRandom rand = new SplittableRandom(seed);
+
+        //Choose nmines of the spaces which are not kept safe. Sample number s
+        //of those spaces is mapped to a space index by skipping the safe spaces
+        int available = ncells-nsafe;
+        for(int s=available-nmines; s<available; s++){
+            int k = Skip_Safe(rand.nextInt(s+1), safe, nsafe);
+            if((Get(k) & MINE) != 0){
+                k = Skip_Safe(s, safe, nsafe);
+            }
+            Put(k, Get(k) | MINE);
+
+            //Now and then note progress and check for cancellation
+            if(((s-available) & 0xFFFF) == 0){
+                mines_placed = s-(available-nmines);
+                if(Thread.interrupted()){
+                    Clear_Mines();
+                    mines_placed = 0;
+                    throw new CancellationException("Mine placement cancelled");
+                }
+            }
+        }
+        mines_placed = nmines;
+        Metrics.PLACE_MINES.Record_Since(start);
+
+        generated = true;
+        Adj_Mines();
+    }
+
+    /**
+     * @param s position among the spaces which are not kept safe
+     * @param safe indices of the safe spaces, in increasing order
+     * @param nsafe number of safe spaces
+     * @return index of the space
+     */
+    private static int Skip_Safe(int s, int[] safe, int nsafe){
+        for(int n=0; n<nsafe && safe[n]<=s; n++){
+            s++;
+        }
+        return s;
+    }
+
+    /**
+     * Place the mines from a bitmap with one bit per space, space k being bit
+     * k%8 of byte k/8, starting at the current position of the buffer
+     * @param bitmap buffer holding the mine bitmap
+     */
+    public void Place_Mines(ByteBuffer bitmap){
+        if(generated){ throw new IllegalStateException("Mines already placed"); }
+
+        int placed = 0;
+        for(int k=0; k<ncells; k+=8){
+            int bits = bitmap.get() & 0xFF;
+            for(int b=0; b<8 && k+b<ncells; b++){
+                //Too many mines would overfill sparse storage, so stop
+                //placing them once there are enough
+                if((bits & (1<<b)) != 0 && ++placed<=nmines){
+                    Put(k+b, Get(k+b) | MINE);
+                }
+            }
+        }
+        if(placed!=nmines){
+            //Leave the board without mines rather than half loaded
+            Clear_Mines();
+            throw new IllegalArgumentException("Expected "+nmines+" mines but found "+placed);
+        }
+        mines_placed = nmines;
+
+        generated = true;
+        Adj_Mines();
+    }
+
+    /**
+     * Remove every mine, as when placing them is cancelled
+     */
+    private void Clear_Mines(){
+        if(sparse==null){
+            for(int c=0; c<ncells; c++){ cells[c] &= ~MINE; }
+        }
+        else{
+            sparse.Clear_Mines();
+        }
+    }
+
+    /**
+     * For each location, identify the number of adjacent mines. Large dense
+     * boards are split into bands of rows counted in parallel (see
+     * Adj_Mines_Task), while sparse boards count around each mine.
+     */
+    private void Adj_Mines(){
+        long start = System.nanoTime();
+        if(sparse==null){ Adj_Mines_Task.Count(cells, topology); }
+        else{ sparse.Count_Adjacent(topology); }
+        Metrics.ADJ_MINES.Record_Since(start);
+    }
+
+    /**
+     * Identify the 'islands' of no mines - the area which should be cleared in
+     * one go when one the central locations is cleared. Games don't need this,
+     * as Reveal finds the island of a clicked space as it goes, but it gives a
+     * full picture of the board up front.
+     *
+     * Islands are labelled iteratively with a breadth first search over the
+     * spaces with no adjacent mines, so a large open area can't overflow the
+     * stack. Each such space records the island it belongs to, and the spaces
+     * of every island (including the numbered spaces bordering it) are stored
+     * one after another in island_cells.
+     */
+    public void Islands(){
+        long start = System.nanoTime();
+
+        island_id = new int[ncells];
+        island_start = new int[16];
+        island_cells = new int[16];
+        nislands = 0;
+        int nlisted = 0;
+
+        //Work queue of island body spaces still to spread from, and the last
+        //island each space was added to so that border spaces shared between
+        //neighbouring islands only appear once per island
+        int[] queue = new int[ncells];
+        int[] last_island = new int[ncells];
+
+        for(int k=0; k<ncells; k++){
+            if(island_id[k]!=0 || (Get(k) & (MINE|ADJ_MASK))!=0){ continue; }
+
+            //New island, spread out from k
+            nislands++;
+            if(nislands>=island_start.length){ island_start = Arrays.copyOf(island_start, 2*island_start.length); }
+            island_start[nislands-1] = nlisted;
+
+            int head = 0, tail = 0;
+            queue[tail++] = k;
+            island_id[k] = nislands;
+
+            while(head<tail){
+                int pos = queue[head++];
+                nlisted = Add_To_Island(pos, last_island, nlisted);
+
+                for(int d : topology.Offsets(pos)){
+                    int nb = pos+d;
+
+                    //Add all neighbours to the island
+                    nlisted = Add_To_Island(nb, last_island, nlisted);
+                    //If neighbour is within the island body, spread from it
+                    //as well, if this hasn't already been done
+                    if(island_id[nb]==0 && (Get(nb) & (MINE|ADJ_MASK))==0){
+                        island_id[nb] = nislands;
+                        queue[tail++] = nb;
+                    }
+                }
+            }
+        }
+
+        island_start[nislands] = nlisted;
+        island_start = Arrays.copyOf(island_start, nislands+1);
+        island_cells = Arrays.copyOf(island_cells, nlisted);
+        Metrics.ISLANDS.Record_Since(start);
+    }
+
+    /**
+     * Add a space to the island being labelled, unless it is already part of it
+     * @param k index of the space
+     * @param last_island last island each space was added to
+     * @param nlisted number of spaces in island_cells so far
+     * @return new number of spaces in island_cells
+     */
+    private int Add_To_Island(int k, int[] last_island, int nlisted){
+        if(last_island[k]==nislands){ return nlisted; }
+        last_island[k] = nislands;
+        if(nlisted==island_cells.length){ island_cells = Arrays.copyOf(island_cells, 2*nlisted); }
+        island_cells[nlisted++] = k;
+        return nlisted;
+    }
+
+    /**
+     * Given a position on an island, identify which island it is part of
+     * @param i row position
+     * @param j column position
+     * @return island number, for use with Island_Start and Island_End
+     */
+    public int Island_Of(int i, int j){
+        if(island_id==null){ throw new IllegalStateException("Islands not identified"); }
+        int id = island_id[Index(i,j)];
+        if(id==0){ throw new IllegalArgumentException("Location not part of an island"); }
+        return id-1;
+    }
+
+    /**
+     * The spaces of island n are Island_Cell(k) for Island_Start(n) &lt;= k &lt;
+     * Island_End(n)
+     * @param n island number
+     * @return position of the first space of the island in island_cells
+     */
+    public int Island_Start(int n){ return island_start[n]; }
+
+    public int Island_End(int n){ return island_start[n+1]; }
+
+    /**
+     * @param k position in island_cells
+     * @return index of the space
+     */
+    public int Island_Cell(int k){ return island_cells[k]; }
+
+    /**
+     * Clear a space, and if it has no adjacent mines, clear the island around
+     * it by flood filling out from the space. Only the spaces reached from
+     * (i,j) are visited, and spaces already cleared are never visited again,
+     * so clicking inside an island which has already been opened costs
+     * nothing. Flagged spaces are left alone.
+     *
+     * If the mines have not been placed yet they are placed first, keeping
+     * (i,j) safe. Clearing a mine clears nothing and ends the game, see
+     * Is_Exploded.
+     *
+     * @param i row position
+     * @param j column position
+     * @param out has the index of each space cleared added to it, so the
+     * caller can update only what changed. Reusing the same list between
+     * calls means nothing is allocated once it has grown.
+     * @return number of spaces cleared
+     */
+    public int Reveal(int i, int j, Int_List out){
+        int k = Index(i,j);
+        if((Get(k) & (CLEARED|FLAGGED)) != 0){ return 0; }
+        if(!generated){ Place_Mines(i,j); }
+
+        //Timed after placing the mines, which is recorded separately
+        long start = System.nanoTime();
+        int n = Flood(k, out);
+        Metrics.REVEAL_TIME.Record_Since(start);
+        Metrics.REVEAL_SIZE.Record(n);
+        return n;
+    }
+
+    /**
+     * Clear every unflagged neighbour of a cleared space, along with their
+     * islands, if as many of its neighbours are flagged as it has adjacent
+     * mines. If a wrongly placed flag means one of them is a mine the game
+     * ends, see Is_Exploded, but the other neighbours are still cleared.
+     * @param i row position
+     * @param j column position
+     * @param out has the index of each space cleared added to it, as for
+     * Reveal
+     * @return number of spaces cleared
+     */
+    public int Chord(int i, int j, Int_List out){
+        int k = Index(i,j);
+        int b = Get(k);
+        if((b & CLEARED)==0 || (b & ADJ_MASK)==0){ return 0; }
+
+        int[] around = topology.Offsets(k);
+        int flagged = 0;
+        for(int d : around){
+            if((Get(k+d) & FLAGGED)!=0){ flagged++; }
+        }
+        if(flagged!=(b & ADJ_MASK)){ return 0; }
+
+        long start = System.nanoTime();
+        int total = 0;
+        for(int d : around){ total += Flood(k+d, out); }
+        Metrics.CHORD_TIME.Record_Since(start);
+        Metrics.CHORD_SIZE.Record(total);
+        return total;
+    }
+
+    /**
+     * Clear an uncleared, unflagged space and its island, as for Reveal. The
+     * list is used as the work queue, from the position it had on entry.
+     * @param k index of the space
+     * @param out list to add the spaces cleared to
+     * @return number of spaces cleared
+     */
+    private int Flood(int k, Int_List out){
+        int b = Get(k);
+        if((b & (CLEARED|FLAGGED)) != 0){ return 0; }
+        if((b & MINE) != 0){
+            if(exploded<0){ exploded = k; }
+            return 0;
+        }
+
+        int first = out.Size();
+        Clear(k, out);
+        for(int head=first; head<out.Size(); head++){
+            int pos = out.Get(head);
+            if((Get(pos) & ADJ_MASK) != 0){ continue; }
+
+            //No adjacent mines, so all neighbours are safe to clear
+            for(int d : topology.Offsets(pos)){
+                if((Get(pos+d) & (CLEARED|FLAGGED)) == 0){
+                    Clear(pos+d, out);
+                }
+            }
+        }
+        return out.Size()-first;
+    }
+
+    /**
+     * Clear a space and add it to the work queue of Flood
+     * @param k index of the space
+     */
+    private void Clear(int k, Int_List out){
+        Set_Bits(k, CLEARED);
+        num_cleared++;
+        Mark_Changed(k);
+        out.Add(k);
+    }
+
+    /**
+     * Flag a space if unflagged, or unflag it if flagged. Cleared spaces can't
+     * be flagged.
+     * @param i row position
+     * @param j column position
+     * @return true if the space is flagged after the call
+     */
+    public boolean Toggle_Flag(int i, int j){
+        int k = Index(i,j);
+        int b = Get(k);
+        if((b & CLEARED) != 0){ return false; }
+
+        Put(k, b ^ FLAGGED);
+        Mark_Changed(k);
+        if((b & FLAGGED) == 0){
+            nflagged++;
+            return true;
+        }
+        nflagged--;
+        return false;
+    }
+
+    /**
+     * Flag or unflag a space as for Toggle_Flag(i,j)
+     * @param i row position
+     * @param j column position
+     * @param out has the index of the space added to it if it changed
+     * @return true if the space is flagged after the call
+     */
+    public boolean Toggle_Flag(int i, int j, Int_List out){
+        int k = Index(i,j);
+        if((Get(k) & CLEARED) != 0){ return false; }
+        out.Add(k);
+        return Toggle_Flag(i,j);
+    }
+
+    /**
+     * Note that a space has changed, unless it is already in the list of
+     * changed spaces. The list is dropped rather than grow past a twentieth of
+     * the spaces: each is saved in 5 bytes, so by then writing them all costs
+     * more than a snapshot of the whole board at 2 bits per space.
+     * @param k index of the space
+     */
+    private void Mark_Changed(int k){
+        if((Get(k) & CHANGED) != 0){ return; }
+        Set_Bits(k, CHANGED);
+        if(changed_overflow){ return; }
+        if(nchanged>=Math.max(4096, ncells/20)){
+            changed_overflow = true;
+            nchanged = 0;
+            changed = new int[64];
+            return;
+        }
+        if(nchanged==changed.length){
+            changed = Arrays.copyOf(changed, Math.min(2*changed.length, ncells));
+        }
+        changed[nchanged++] = k;
+    }
+
+    /**
+     * @return number of spaces changed since Clear_Changed was last called,
+     * or 0 once too many have changed to list
+     */
+    public int Num_Changed(){ return nchanged; }
+
+    /**
+     * @return true if too many spaces have changed since Clear_Changed was
+     * last called for them to be listed, so anything keeping up with the board
+     * has to look at every space
+     */
+    public boolean Changed_Overflow(){ return changed_overflow; }
+
+    /**
+     * @param n position in the list of changed spaces
+     * @return index of the space
+     */
+    public int Changed(int n){ return changed[n]; }
+
+    /**
+     * Empty the list of changed spaces, in time proportional to its length,
+     * or to the size of the board if too many had changed to list
+     */
+    public void Clear_Changed(){
+        if(changed_overflow){
+            if(sparse==null){
+                for(int k=0; k<ncells; k++){ cells[k] &= ~CHANGED; }
+            }
+            else{
+                sparse.Clear_Changed();
+            }
+        }
+        for(int n=0; n<nchanged; n++){
+            Put(changed[n], Get(changed[n]) & ~CHANGED);
+        }
+        nchanged = 0;
+        changed_overflow = false;
+    }
+
+    /**
+     * Cleared and flagged state of a space, as stored in save files
+     * @param k index of the space
+     * @return 1 if cleared, 2 if flagged, 0 otherwise
+     */
+    public int State(int k){ return (Get(k) & (CLEARED|FLAGGED)) >> 5; }
+
+    /**
+     * Restore the cleared and flagged state of a space, keeping the counts of
+     * cleared and flagged spaces in step. The space is not marked as changed.
+     * @param k index of the space
+     * @param state 1 if cleared, 2 if flagged, 0 otherwise, as from State
+     */
+    public void Set_State(int k, int state){
+        if(state<0 || state>2){ throw new IllegalArgumentException("Invalid state "+state); }
+        int b = Get(k);
+        if((b & CLEARED) != 0){ num_cleared--; }
+        if((b & FLAGGED) != 0){ nflagged--; }
+        Put(k, (b & ~(CLEARED|FLAGGED)) | (state << 5));
+        if(state==1){ num_cleared++; }
+        if(state==2){ nflagged++; }
+    }
+
+    /**
+     * Change the cleared and flagged state of a space as Set_State does, and
+     * mark it as changed so the next save records it, as when a move is
+     * undone or redone
+     * @param k index of the space
+     * @param state 1 if cleared, 2 if flagged, 0 otherwise
+     */
+    public void Change_State(int k, int state){
+        Set_State(k, state);
+        Mark_Changed(k);
+    }
+
+    /**
+     * Set which mine was cleared, as when the move which cleared it is undone
+     * or redone
+     * @param k index of the mine, or -1 for none
+     */
+    public void Set_Exploded(int k){
+        if(k>=0 && (Get(k) & MINE)==0){ throw new IllegalArgumentException("Not a mine: "+k); }
+        exploded = k;
+    }
+
+    /**
+     * Index of a space in the packed cell array
+     * @param i row position
+     * @param j column position
+     * @return row-major index of the space
+     */
+    public int Index(int i, int j){ return i*ncols+j; }
+
+    public int Row(int index){ return index/ncols; }
+
+    public int Col(int index){ return index%ncols; }
+
+    public boolean Is_Mine(int i, int j){ return (Get(Index(i,j)) & MINE) != 0; }
+
+    public boolean Is_Mine(int index){ return (Get(index) & MINE) != 0; }
+
+    public boolean Is_Cleared(int i, int j){ return (Get(Index(i,j)) & CLEARED) != 0; }
+
+    public boolean Is_Cleared(int index){ return (Get(index) & CLEARED) != 0; }
+
+    public boolean Is_Flagged(int i, int j){ return (Get(Index(i,j)) & FLAGGED) != 0; }
+
+    /**
+     * @param i row position
+     * @param j column position
+     * @return number of mines adjacent to the space
+     */
+    public int Adj(int i, int j){ return Get(Index(i,j)) & ADJ_MASK; }
+
+    public int Adj(int index){ return Get(index) & ADJ_MASK; }
+
+    /**
+     * @return true once every space without a mine has been cleared
+     */
+    public boolean Is_Won(){ return num_cleared == ncells-nmines; }
+
+    /**
+     * @return true once a mine has been cleared
+     */
+    public boolean Is_Exploded(){ return exploded>=0; }
+
+    /**
+     * @return index of the mine which was cleared, or -1 if none
+     */
+    public int Exploded(){ return exploded; }
+
+    public Topology Topology(){ return topology; }
+
+    public int Rows(){ return nrows; }
+
+    public int Cols(){ return ncols; }
+
+    public int Mines(){ return nmines; }
+
+    public long Seed(){ return seed; }
+
+    public boolean Is_Generated(){ return generated; }
+
+    /**
+     * @return roughly how many mines Place_Mines has placed so far, which may
+     * be read from another thread
+     */
+    public int Mines_Placed(){ return mines_placed; }
+
+    public int Num_Flagged(){ return nflagged; }
+
+    public int Num_Cleared(){ return num_cleared; }
+}
@@ -0,0 +1,204 @@
+
+package minesweepermouse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reading and writing boards in a compact binary file, so that a board can be
+ * shared, archived or played again.
+ *
+ * The file starts with a header (all values big-endian):
+ *   int  MAGIC ("MSWB")
+ *   int  VERSION
+ *   int  flags - FLAG_PLACED if the mines have been placed, the topology
+ *        type (see Topology) in bits 8-15 and the number of layers in bits
+ *        16-31
+ *   int  rows, int columns, int mines
+ *   long seed
+ * and, if the mines have been placed, is followed by a bitmap of the mines
+ * with one bit per space, space k being bit k%8 of byte k/8. The rows count
+ * the rows of every layer together. Version 1 files have no topology bits
+ * and are always square.
+ *
+ * Boards which have not had their mines placed are stored as just the header.
+ * As placement is seeded, playing such a board clicking the same first space
+ * gives the same minefield.
+ *
+ * @author cjcode975
+ */
+class Board_File {
+
+    static final int MAGIC = 0x4D535742;
+    static final int VERSION = 2;
+    static final int FLAG_PLACED = 1;
+    private static final int TYPE_SHIFT = 8;
+    private static final int LAYERS_SHIFT = 16;
+    static final int HEADER_SIZE = 32;
+
+    //Size of the buffer used to stream the bitmap out
+    private static final int CHUNK = 1<<16;
+
+    private Board_File(){
+    }
+
+    /**
+     * Write a board's minefield to a file, replacing any existing file
+     * @param board board to save
+     * @param file file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void Write(Board board, Path file) throws IOException {
+        try(FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK);
+            Write(board, out, buf);
+            Drain(out, buf);
+        }
+    }
+
+    /**
+     * Write a board's minefield into a buffer, writing the buffer out to a
+     * channel whenever it fills. Anything left in the buffer afterwards is
+     * for the caller to write out.
+     * @param board board to save
+     * @param out channel to write to
+     * @param buf buffer in write mode, at least HEADER_SIZE bytes long
+     * @throws IOException if the channel can't be written
+     */
+    static void Write(Board board, FileChannel out, ByteBuffer buf) throws IOException {
+        if(buf.remaining()<HEADER_SIZE){ Drain(out, buf); }
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        Topology shape = board.Topology();
+        buf.putInt((board.Is_Generated() ? FLAG_PLACED : 0) | shape.Type()<<TYPE_SHIFT | shape.Layers()<<LAYERS_SHIFT);
+        buf.putInt(board.Rows());
+        buf.putInt(board.Cols());
+        buf.putInt(board.Mines());
+        buf.putLong(board.Seed());
+
+        if(board.Is_Generated()){
+            int ncells = board.Rows()*board.Cols();
+            for(int k=0; k<ncells; k+=8){
+                int bits = 0;
+                for(int b=0; b<8 && k+b<ncells; b++){
+                    if(board.Is_Mine(k+b)){ bits |= 1<<b; }
+                }
+                if(!buf.hasRemaining()){ Drain(out, buf); }
+                buf.put((byte)bits);
+            }
+        }
+    }
+
+    /**
+     * Write out everything in a buffer and make it ready to fill again
+     */
+    static void Drain(FileChannel out, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while(buf.hasRemaining()){ out.write(buf); }
+        buf.clear();
+    }
+
+    /**
+     * Size of a board as given by the header of its file, so that it can be
+     * checked before the board is made
+     */
+    static class Header {
+        final Topology topology;
+        final int mines;
+        final long seed;
+        final int flags;
+
+        Header(Topology Shape, int Mines, long Seed, int Flags){
+            topology = Shape;
+            mines = Mines;
+            seed = Seed;
+            flags = Flags;
+        }
+    }
+
+    /**
+     * Read just the header of a board file, without making the board
+     * @param file file to read
+     * @return size of the board in the file
+     * @throws IOException if the file can't be read or is not a board file
+     */
+    public static Header Read_Header(Path file) throws IOException {
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+            if(in.size()<HEADER_SIZE){ throw new IOException("Not a board file: "+file); }
+            return Read_Header(in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE));
+        }
+    }
+
+    /**
+     * Read the header of a board from a buffer, leaving the buffer positioned
+     * after it
+     * @param map buffer positioned at the start of the board
+     * @return size of the board, checked to be one a Board can be made with
+     * @throws IOException if the buffer does not hold a valid header
+     */
+    static Header Read_Header(ByteBuffer map) throws IOException {
+        if(map.remaining()<HEADER_SIZE || map.getInt()!=MAGIC){ throw new IOException("Not a board file"); }
+        int version = map.getInt();
+        if(version<1 || version>VERSION){ throw new IOException("Unsupported board file version "+version); }
+        int flags = map.getInt();
+        int nrows = map.getInt();
+        int ncols = map.getInt();
+        int nmines = map.getInt();
+        long seed = map.getLong();
+
+        int type = version>1 ? (flags>>>TYPE_SHIFT) & 0xFF : Topology.SQUARE;
+        int nlayers = version>1 ? flags>>>LAYERS_SHIFT : 1;
+
+        try{
+            if(nlayers<1 || nrows%nlayers!=0){ throw new IllegalArgumentException("Invalid number of layers "+nlayers); }
+            Topology topology = new Topology(type, nrows/nlayers, ncols, nlayers);
+            Board.Check_Size(topology, nmines);
+            return new Header(topology, nmines, seed, flags);
+        }
+        catch(IllegalArgumentException e){
+            throw new IOException("Corrupt board file: "+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read a board from a file. The file is memory mapped and the mines are
+     * set straight from the mapped bitmap, so the bitmap is never copied onto
+     * the heap.
+     * @param file file to read
+     * @return board described by the file, with nothing cleared or flagged
+     * @throws IOException if the file can't be read or is not a board file
+     */
+    public static Board Read(Path file) throws IOException {
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+            if(in.size()<HEADER_SIZE){ throw new IOException("Not a board file: "+file); }
+            return Read(in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()));
+        }
+    }
+
+    /**
+     * Read a board from a buffer, such as a memory mapped file, leaving the
+     * buffer positioned after the board
+     * @param map buffer positioned at the start of the board
+     * @return board described by the buffer, with nothing cleared or flagged
+     * @throws IOException if the buffer does not hold a valid board
+     */
+    static Board Read(ByteBuffer map) throws IOException {
+        Header header = Read_Header(map);
+        Board board = new Board(header.topology, header.mines, header.seed);
+
+        if((header.flags & FLAG_PLACED)!=0){
+            long bitmap = ((long)board.Rows()*board.Cols()+7)/8;
+            if(map.remaining()<bitmap){ throw new IOException("Board file truncated"); }
+            try{
+                board.Place_Mines(map);
+            }
+            catch(IllegalArgumentException e){
+                throw new IOException("Corrupt board file: "+e.getMessage(), e);
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,314 @@
+
+package minesweepermouse;
+
+import java.awt.Font;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+/**
+ * Makes boards on a background thread, so the window stays responsive while
+ * slow boards are generated.
+ *
+ * Boards which can be cleared without guessing take many attempts to find,
+ * so once a game of one starts the next board of the same difficulty is made
+ * straight away, ready for "New Game (Same Difficulty)". Other boards have
+ * their mines placed on the first click, to keep it safe, so there is nothing
+ * to make ahead; for large boards that placement is done in the background
+ * instead.
+ *
+ * While a board the player is waiting for is made the window is disabled,
+ * and if it takes more than a moment a dialog shows progress with a button
+ * to cancel.
+ *
+ * All methods are called on the event dispatch thread.
+ *
+ * @author cjcode975
+ */
+class Board_Maker {
+
+    //Boards with at least this many spaces have their mines placed in the
+    //background
+    static final int LARGE = 1<<20;
+    //How often to check on progress, and how long to wait before showing it
+    private static final int POLL_MS = 50;
+    private static final int DIALOG_DELAY_MS = 250;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory(){
+        @Override
+        public Thread newThread(Runnable r){
+            Thread t = new Thread(r, "Board maker");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    //No guess board being made ahead, or null
+    private static Job next = null;
+
+    /**
+     * Told when a board is ready
+     */
+    interface Listener {
+        /**
+         * @param board board made, or null if it could not be made
+         * @param cancelled true if the player cancelled
+         * @param error what went wrong making the board, such as running out
+         * of memory, or null if nothing did
+         */
+        void Done(Board board, boolean cancelled, Throwable error);
+    }
+
+    /**
+     * Describe why a board could not be made, for showing to the player
+     * @param what what could not be done
+     * @param error error passed to the listener, or null
+     * @return the description, with the error if there was one
+     */
+    static String Message(String what, Throwable error){
+        if(error==null){ return what; }
+        if(error instanceof OutOfMemoryError){ return what+": there is not enough memory"; }
+        return what+": "+(error.getMessage()!=null ? error.getMessage() : error.toString());
+    }
+
+    /**
+     * Start making a no guess board of a difficulty, unless one is already
+     * being made
+     * @param shape topology of the board
+     * @param mines number of mines
+     */
+    static void Prepare_No_Guess(Topology shape, int mines){
+        if(next!=null && next.Is_Size(shape, mines)){ return; }
+        if(next!=null){ next.Cancel(); }
+        next = No_Guess_Job(shape, mines);
+    }
+
+    /**
+     * Get a no guess board, taking the one made ahead if it is the right size
+     * @param owner window to disable while waiting
+     * @param shape topology of the board
+     * @param mines number of mines
+     * @param listener told when the board is ready
+     */
+    static void No_Guess(JFrame owner, Topology shape, int mines, Listener listener){
+        Job job;
+        if(next!=null && next.Is_Size(shape, mines)){
+            job = next;
+        }
+        else{
+            if(next!=null){ next.Cancel(); }
+            job = No_Guess_Job(shape, mines);
+        }
+        next = null;
+        Wait(owner, "Finding a board without guessing", job, listener);
+    }
+
+    /**
+     * Place the mines of a board, keeping a space safe as Board.Place_Mines
+     * does. The board must not be used until the listener is told.
+     * @param owner window to disable while waiting
+     * @param board board without mines
+     * @param i row position of the first space cleared
+     * @param j column position of the first space cleared
+     * @param listener told when the mines are placed, with board
+     */
+    static void Place_Mines(JFrame owner, final Board board, final int i, final int j, Listener listener){
+        //Don't wait behind a no guess board nobody is playing for now
+        if(next!=null && !next.finished){
+            next.Cancel();
+            next = null;
+        }
+        Job job = new Job(board.Topology(), board.Mines(), null, board){
+            @Override
+            Board Make(){
+                board.Place_Mines(i,j);
+                return board;
+            }
+        };
+        EXECUTOR.execute(job);
+        Wait(owner, "Placing mines", job, listener);
+    }
+
+    /**
+     * Start making a no guess board
+     */
+    private static Job No_Guess_Job(Topology shape, int mines){
+        final No_Guess_Generator generator = new No_Guess_Generator(shape, mines);
+        Job job = new Job(shape, mines, generator, null){
+            @Override
+            Board Make(){
+                return generator.Generate(new SplittableRandom().nextLong());
+            }
+        };
+        EXECUTOR.execute(job);
+        return job;
+    }
+
+    /**
+     * Disable a window until a job finishes, showing progress if it takes a
+     * while, then tell the listener
+     */
+    private static void Wait(final JFrame owner, final String title, final Job job, final Listener listener){
+        owner.setEnabled(false);
+        final long start = System.currentTimeMillis();
+        final JDialog[] dialog = new JDialog[1];
+        final JProgressBar bar = new JProgressBar();
+
+        final Timer timer = new Timer(POLL_MS, null);
+        timer.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                if(job.finished){
+                    timer.stop();
+                    if(dialog[0]!=null){ dialog[0].dispose(); }
+                    owner.setEnabled(true);
+                    listener.Done(job.result, job.result==null && job.cancelled, job.error);
+                    return;
+                }
+                if(dialog[0]==null && System.currentTimeMillis()-start>=DIALOG_DELAY_MS){
+                    dialog[0] = Progress_Dialog(owner, title, bar, job);
+                }
+                if(dialog[0]!=null){ Show_Progress(bar, job); }
+            }
+        });
+        timer.start();
+    }
+
+    /**
+     * Create a dialog with a progress bar and a button to cancel a job
+     */
+    private static JDialog Progress_Dialog(JFrame owner, String title, JProgressBar bar, final Job job){
+        int button_size = 25;
+        Font game_font = new Font("Arial", Font.PLAIN, 12);
+        JDialog dialog = new JDialog(owner, title, false);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.setLayout(null);
+        dialog.setResizable(false);
+        dialog.setSize(12*button_size, 5*button_size);
+        dialog.setLocationRelativeTo(owner);
+
+        JPanel display = new JPanel();
+        display.setLayout(null);
+        display.setBounds(0, 0, 12*button_size, 5*button_size);
+        dialog.add(display);
+
+        bar.setStringPainted(true);
+        bar.setFont(game_font);
+        bar.setBounds(button_size, button_size/2, 10*button_size, button_size);
+        display.add(bar);
+
+        final JButton cancel = new JButton("Cancel");
+        cancel.setMargin(new Insets(5,5,5,5));
+        cancel.setFont(game_font);
+        cancel.setBounds(4*button_size, 2*button_size, 4*button_size, button_size);
+        cancel.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                cancel.setEnabled(false);
+                job.Cancel();
+            }
+        });
+        display.add(cancel);
+
+        dialog.setVisible(true);
+        return dialog;
+    }
+
+    /**
+     * Update a progress bar: the number of boards tried when looking for a no
+     * guess board, otherwise the fraction of mines placed
+     */
+    private static void Show_Progress(JProgressBar bar, Job job){
+        if(job.generator!=null){
+            bar.setIndeterminate(true);
+            bar.setString(job.generator.Num_Attempts()+" boards tried");
+        }
+        else if(job.board_placing!=null){
+            Board b = job.board_placing;
+            bar.setIndeterminate(false);
+            bar.setMaximum(Math.max(1, b.Mines()));
+            bar.setValue(b.Mines_Placed());
+            bar.setString(b.Mines_Placed()<b.Mines() ? String.format("%,d of %,d mines", b.Mines_Placed(), b.Mines()) : "Counting adjacent mines");
+        }
+    }
+
+    /**
+     * Board being made on the background thread. The result and error are
+     * only read once finished is set.
+     */
+    private abstract static class Job implements Runnable {
+
+        private final Topology shape;
+        private final int mines;
+        //Generator for no guess boards, null otherwise
+        final No_Guess_Generator generator;
+        //Board having its mines placed, null otherwise
+        final Board board_placing;
+        volatile boolean cancelled = false;
+        volatile boolean finished = false;
+        private Thread worker = null;
+        Board result = null;
+        Throwable error = null;
+
+        Job(Topology Shape, int Mines, No_Guess_Generator Generator, Board Placing){
+            shape = Shape;
+            mines = Mines;
+            generator = Generator;
+            board_placing = Placing;
+        }
+
+        /**
+         * @return board made, or null if none could be found
+         */
+        abstract Board Make();
+
+        @Override
+        public void run(){
+            //Clear any interrupt meant for an earlier job
+            Thread.interrupted();
+            synchronized(this){ worker = Thread.currentThread(); }
+            try{
+                if(!cancelled){ result = Make(); }
+            }
+            catch(CancellationException e){
+                result = null;
+            }
+            catch(RuntimeException | OutOfMemoryError e){
+                result = null;
+                error = e;
+            }
+            finally{
+                synchronized(this){ worker = null; }
+                finished = true;
+            }
+        }
+
+        /**
+         * Stop making the board. It may still be finished if it was nearly
+         * done, in which case it is used.
+         */
+        void Cancel(){
+            cancelled = true;
+            if(generator!=null){ generator.Cancel(); }
+            //Only interrupt the thread while it is still working on this job
+            synchronized(this){
+                if(worker!=null){ worker.interrupt(); }
+            }
+        }
+
+        boolean Is_Size(Topology Shape, int Mines){
+            return shape.equals(Shape) && mines==Mines && !cancelled;
+        }
+    }
+}
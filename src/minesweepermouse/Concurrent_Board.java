@@ -0,0 +1,221 @@
+
+package minesweepermouse;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Board which many threads can play on at once, for co-op games and bots
+ * sharing one large board. No locks are taken: each space has the same
+ * packed byte as in Board, four to an int of an AtomicIntegerArray, and
+ * clearing or flagging a space is a compare-and-set on its int.
+ *
+ * A space is only ever cleared by the thread whose compare-and-set moved it
+ * from uncleared to cleared, and only that thread adds it to its flood fill
+ * and its count, so floods from several threads meeting never count a space
+ * twice. Totals are kept in LongAdders, added to once per move, so threads
+ * don't contend on a single counter. Whichever move clears the last safe
+ * space runs the win action, exactly once however many threads finish at the
+ * same moment.
+ *
+ * The mines are taken from a Board which has had them placed, and never
+ * change.
+ *
+ * @author cjcode975
+ */
+class Concurrent_Board {
+
+    private final int nrows, ncols, nmines;
+    private final Topology topology;
+    //Packed spaces, space k being byte k%4 of int k/4
+    private final AtomicIntegerArray words;
+    private final LongAdder cleared = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+    //First mine cleared, or -1 if none
+    private final AtomicInteger exploded = new AtomicInteger(-1);
+    private final AtomicBoolean won = new AtomicBoolean(false);
+    //Run once, by the thread whose move wins the game, or null
+    private final Runnable on_win;
+
+    /**
+     * Share a board between threads. Any spaces already cleared or flagged
+     * stay so.
+     * @param Board_In board with its mines placed, which is only read
+     * @param On_Win action run by the thread which clears the last safe
+     * space, or null
+     */
+    public Concurrent_Board(Board Board_In, Runnable On_Win){
+        if(!Board_In.Is_Generated()){ throw new IllegalStateException("Mines not placed"); }
+        nrows = Board_In.Rows();
+        ncols = Board_In.Cols();
+        nmines = Board_In.Mines();
+        topology = Board_In.Topology();
+        on_win = On_Win;
+
+        int ncells = nrows*ncols;
+        words = new AtomicIntegerArray((ncells+3)/4);
+        for(int k=0; k<ncells; k++){
+            int b = Board_In.Adj(k) | (Board_In.Is_Mine(k) ? Board.MINE : 0) | (Board_In.State(k) << 5);
+            words.set(k>>2, words.get(k>>2) | (b << ((k&3)<<3)));
+        }
+        cleared.add(Board_In.Num_Cleared());
+        flagged.add(Board_In.Num_Flagged());
+    }
+
+    /**
+     * @param k index of a space
+     * @return packed state of the space, as in Board
+     */
+    public int Peek(int k){
+        return (words.get(k>>2) >>> ((k&3)<<3)) & 0xFF;
+    }
+
+    /**
+     * Set a bit of a space, unless it or any of the forbidden bits is set
+     * already
+     * @return true if this call set the bit
+     */
+    private boolean Set_If_Clear(int k, int bit, int forbidden){
+        int w = k>>2, shift = (k&3)<<3;
+        while(true){
+            int old = words.get(w);
+            if(((old >>> shift) & (bit|forbidden)) != 0){ return false; }
+            if(words.compareAndSet(w, old, old | (bit << shift))){ return true; }
+        }
+    }
+
+    /**
+     * Clear a space and, if it has no adjacent mines, its island, as
+     * Board.Reveal does. Safe to call from any thread at any time.
+     * @param i row position
+     * @param j column position
+     * @param out has the index of each space this call cleared added to it
+     * @return number of spaces this call cleared
+     */
+    public int Reveal(int i, int j, Int_List out){
+        int n = Flood(i*ncols+j, out);
+        Count_Cleared(n);
+        return n;
+    }
+
+    /**
+     * Clear every unflagged neighbour of a cleared number, if as many of its
+     * neighbours are flagged as it has adjacent mines. The flags are read as
+     * they are at the time, while other threads may be changing them.
+     * @param i row position
+     * @param j column position
+     * @param out has the index of each space this call cleared added to it
+     * @return number of spaces this call cleared
+     */
+    public int Chord(int i, int j, Int_List out){
+        int k = i*ncols+j;
+        int b = Peek(k);
+        if((b & Board.CLEARED)==0 || (b & Board.ADJ_MASK)==0){ return 0; }
+
+        int[] around = topology.Offsets(k);
+        int nflags = 0;
+        for(int d : around){
+            if((Peek(k+d) & Board.FLAGGED)!=0){ nflags++; }
+        }
+        if(nflags!=(b & Board.ADJ_MASK)){ return 0; }
+
+        int total = 0;
+        for(int d : around){ total += Flood(k+d, out); }
+        Count_Cleared(total);
+        return total;
+    }
+
+    /**
+     * Clear a space and its island, counting only the spaces this thread
+     * clears
+     */
+    private int Flood(int k, Int_List out){
+        int b = Peek(k);
+        if((b & (Board.CLEARED|Board.FLAGGED)) != 0){ return 0; }
+        if((b & Board.MINE) != 0){
+            //Mines can't be flagged between the check and here mattering:
+            //the player who cleared it loses either way
+            exploded.compareAndSet(-1, k);
+            return 0;
+        }
+        if(!Set_If_Clear(k, Board.CLEARED, Board.FLAGGED)){ return 0; }
+
+        int first = out.Size();
+        out.Add(k);
+        for(int head=first; head<out.Size(); head++){
+            int pos = out.Get(head);
+            if((Peek(pos) & Board.ADJ_MASK) != 0){ continue; }
+
+            //No adjacent mines, so all neighbours are safe to clear. Those
+            //cleared by another thread first are left to it
+            for(int d : topology.Offsets(pos)){
+                if(Set_If_Clear(pos+d, Board.CLEARED, Board.FLAGGED)){ out.Add(pos+d); }
+            }
+        }
+        return out.Size()-first;
+    }
+
+    /**
+     * Add to the count of cleared spaces, and run the win action if this
+     * move cleared the last safe space. The LongAdder's sum is exact once
+     * every add has finished, so at least one of the threads adding last
+     * sees the full count, and the compare-and-set lets only one of them win.
+     */
+    private void Count_Cleared(int n){
+        if(n==0){ return; }
+        cleared.add(n);
+        if(cleared.sum()==(long)nrows*ncols-nmines && exploded.get()<0 && won.compareAndSet(false, true)){
+            if(on_win!=null){ on_win.run(); }
+        }
+    }
+
+    /**
+     * Flag a space if unflagged, or unflag it if flagged. Cleared spaces can't
+     * be flagged.
+     * @param i row position
+     * @param j column position
+     * @return true if the space is flagged after the call
+     */
+    public boolean Toggle_Flag(int i, int j){
+        int k = i*ncols+j;
+        int w = k>>2, shift = (k&3)<<3;
+        while(true){
+            int old = words.get(w);
+            int b = (old >>> shift) & 0xFF;
+            if((b & Board.CLEARED) != 0){ return false; }
+            if(words.compareAndSet(w, old, old ^ (Board.FLAGGED << shift))){
+                boolean now = (b & Board.FLAGGED) == 0;
+                if(now){ flagged.increment(); }
+                else{ flagged.decrement(); }
+                return now;
+            }
+        }
+    }
+
+    public int Rows(){ return nrows; }
+
+    public int Cols(){ return ncols; }
+
+    public int Mines(){ return nmines; }
+
+    /**
+     * @return spaces cleared, exact once no move is in progress
+     */
+    public long Num_Cleared(){ return cleared.sum(); }
+
+    /**
+     * @return spaces flagged, exact once no move is in progress
+     */
+    public long Num_Flagged(){ return flagged.sum(); }
+
+    public boolean Is_Won(){ return won.get(); }
+
+    public boolean Is_Exploded(){ return exploded.get()>=0; }
+
+    /**
+     * @return index of the first mine cleared, or -1 if none
+     */
+    public int Exploded(){ return exploded.get(); }
+}
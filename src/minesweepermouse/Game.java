@@ -3,20 +3,29 @@ package minesweepermouse;
 
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.awt.Insets;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.util.SplittableRandom;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.JTextField;
+import javax.swing.JToggleButton;
 import javax.swing.SwingUtilities;
 
 /**
@@ -31,17 +40,8 @@ class Game {
     
     //Number of rows, columns and mines for the game
     private final int nrows, ncols, nmines; 
-    //Store data on mine location, and number of mines adjacent to a point
-    private final int[][] mines, adj_mines; 
-    //Keep track of number of flags placed and number of cleaned slots
-    private int nflagged = 0;
-    private int num_cleared = 0;
-    
-    //Regions of no-mines are known as 'islands'. Keep a list of all spaces 
-    //making up each island
-    private ArrayList<Set<Integer>> islands;    
-    //For keeping trackof which spots have been visited when identifying the islands
-    private boolean visited [][];
+    //Minefield and the state of each space. The GUI only displays this
+    private final Board board;
     
     //GUI details
     private final JFrame window = new JFrame("Minesweeper");
@@ -49,10 +49,61 @@ class Game {
     private final JTextField text1 = new JTextField("");  
     private final JTextField text2 = new JTextField("# Mines Remaining:");  
     private final Font game_font = new Font("Arial", Font.PLAIN, 12);
-    //Buttons will form most of the game. Stored as an array here
-    private final JButton buttons [][]; 
+    //The minefield forms most of the game, drawn by a single component
+    private final Minefield minefield;
+    //Overview of boards too large to fit on screen, null otherwise
+    private final Minimap minimap;
+    //Finds certain moves from what the player can see, made the first time a
+    //hint is asked for as it keeps a byte for every space
+    private Hint_Engine hints = null;
+    //Chance of each space being a mine, made the first time it is shown
+    private Probability_Engine risk = null;
+    //Spaces changed by the current move, reused from move to move, and all
+    //spaces changed this game, which are all that need redrawing on restart.
+    //Each space is only in played once, marked by its bit in played_bits,
+    //however often it is flagged, undone or redone
+    private final Int_List changed = new Int_List();
+    private final Int_List played = new Int_List();
+    private final long[] played_bits;
+    //Moves made, to undo and redo, and the spaces flagged or unflagged by
+    //the move being undone or redone
+    private final Move_History history;
+    private final Int_List toggled = new Int_List();
+    private JButton undo, redo;
+    //Shown when the game ends, made the first time it is needed and reused
+    private JFrame eg_window = null;
+    private final JTextField eg_text = new JTextField("");
+    private JToggleButton show_risk;
+    //Width of the overview, in multiples of button_size
+    private final int map_size = 6;
     private final int button_size = 25;
     
+    //Game in progress is saved after every move, so it can be resumed later
+    private final Save_File save;
+    private boolean save_failed = false;
+    private boolean over = false;
+    //Time played before this window was opened, or this game was started in
+    //it, and when that was
+    private long elapsed_before;
+    private long start_time = System.currentTimeMillis();
+    //Whether new games of the same difficulty are made without guessing
+    private boolean no_guess = false;
+    
+    /**
+     * Create a new game of minesweeper on a board which can be cleared without
+     * guessing, starting from the space already cleared in the centre. The
+     * next board of the same difficulty is started in the background.
+     * 
+     * @param Board_In board from No_Guess_Generator, see Board_Maker.No_Guess
+     * @return the new game
+     */
+    static Game No_Guess(Board Board_In, Point pos){
+        Game game = new Game(Board_In, pos);
+        game.no_guess = true;
+        Board_Maker.Prepare_No_Guess(Board_In.Topology(), Board_In.Mines());
+        return game;
+    }
+    
     /**
      * Create a new game of minesweeper, including a suitably sized window, 
      * minefield and new game buttons
@@ -62,199 +113,359 @@ class Game {
      * @param N_Mines number of mines in minefield
      */
     public Game(int N_Rows, int N_Cols, int N_Mines, Point pos){
+        this(N_Rows, N_Cols, N_Mines, new SplittableRandom().nextLong(), pos);
+    }
+    
+    /**
+     * Create a new game of minesweeper with a given seed for placing the mines,
+     * so that a game can be played again
+     * 
+     * @param N_Rows number of rows in minefield
+     * @param N_Cols number of columns in minefield
+     * @param N_Mines number of mines in minefield
+     * @param Seed seed for placing the mines
+     */
+    public Game(int N_Rows, int N_Cols, int N_Mines, long Seed, Point pos){
+        //Mines are placed on the first click
+        this(new Board(N_Rows, N_Cols, N_Mines, Seed), pos);
+    }
+    
+    /**
+     * Create a new game of minesweeper on an existing board, such as one
+     * loaded from a file
+     * 
+     * @param Board_In board to play, with nothing cleared or flagged
+     */
+    public Game(Board Board_In, Point pos){
+        this(Board_In, new Save_File(Save_File.DEFAULT), pos);
+    }
+    
+    /**
+     * Create a game of minesweeper on an existing board, which may be part way
+     * through a game
+     * 
+     * @param Board_In board to play
+     * @param Save file to save the game to, and which the board was loaded 
+     * from if resuming a saved game
+     */
+    public Game(Board Board_In, Save_File Save, Point pos){
            
         //Initialise the minefield
-        nrows = N_Rows;
-        ncols = N_Cols;
-        nmines = N_Mines;
-        
-        mines = new int[nrows][ncols];
-        adj_mines = new int[nrows][ncols];  
-                
-        Fill_Mines();
-        Adj_Mines();
-        Islands();
+        board = Board_In;
+        save = Save;
+        elapsed_before = save.Elapsed();
+        nrows = board.Rows();
+        ncols = board.Cols();
+        nmines = board.Mines();
          
         //Create GUI components
-        //Window to hold game
+        //Minefield, in a scrolling view limited to what fits on screen. Boards
+        //too large for the screen also get an overview map to navigate with
+        minefield = new Minefield(board, button_size, game_font);
+        history = new Move_History(nrows*ncols);
+        played_bits = new long[(nrows*ncols+63)/64];
+        for(int k=0; k<nrows*ncols && played.Size()<board.Num_Cleared()+board.Num_Flagged(); k++){
+            if(board.State(k)!=0){ Note_Played(k); }
+        }
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        int view_cols = Math.min(ncols, screen.width/button_size-3-map_size);
+        int view_rows = Math.min(nrows, screen.height/button_size-9);
+        boolean scrolled = view_cols<ncols || view_rows<nrows;
+        
+        JScrollPane view = new JScrollPane(minefield);
+        view.setBorder(null);
+        view.getVerticalScrollBar().setUnitIncrement(button_size);
+        view.getHorizontalScrollBar().setUnitIncrement(button_size);
+        int scrollbar = scrolled ? view.getVerticalScrollBar().getPreferredSize().width : 0;
+        //Shifted hex rows make the whole minefield a little wider than its columns
+        int view_width = (view_cols<ncols ? button_size*view_cols : minefield.getPreferredSize().width)+scrollbar;
+        int view_height = button_size*view_rows+scrollbar;
+        view.setBounds(button_size, button_size, view_width, view_height);
+        
+        //Mouse listener tracks whether to flag/clear a space based on right/left click
+        minefield.addMouseListener(new ClearenceListener());
+        minefield.addMouseWheelListener(new ZoomListener(view.getViewport()));
+        
+        int window_width = view_width+2*button_size;
+        if(scrolled){
+            minimap = new Minimap(board, minefield, view.getViewport(), map_size*button_size);
+            minimap.setBounds(window_width, button_size, minimap.getPreferredSize().width, minimap.getPreferredSize().height);
+            window_width += (map_size+1)*button_size;
+        }
+        else{
+            minimap = null;
+        }
+        
+        //Window to hold game. Closing it saves the game to resume later
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);   
+        window.addWindowListener(new WindowAdapter(){
+            @Override
+            public void windowClosing(WindowEvent we) {
+                Checkpoint();
+            }
+        });
         window.setLocation(pos);
         window.setLayout(null);
         window.setResizable(false); 
-        window.setSize(button_size*(ncols+2), button_size*(nrows+7)); 
+        window.setSize(window_width, view_height+8*button_size+button_size/4); 
         
         //JFrame
         display.setLayout(null);
-        display.setBounds(0, 0, button_size*(ncols+2), button_size*(nrows+7));
+        display.setBounds(0, 0, window_width, view_height+8*button_size+button_size/4);
         window.add(display); 
+        display.add(view);
+        if(minimap!=null){ display.add(minimap); }
         
         //Field to keep track of mines left to flag
-        text1.setText(Integer.toString(nmines));
-        text1.setBounds(button_size*(ncols-2), button_size*(nrows+2), 3*button_size, button_size);     
+        text1.setText(Integer.toString(nmines-board.Num_Flagged()));
+        text1.setBounds(view_width-2*button_size, view_height+2*button_size, 3*button_size, button_size);     
         text1.setEditable(false);
         text1.setHorizontalAlignment(JTextField.CENTER);
         text1.setFont(game_font);
         display.add(text1);
         
-        text2.setBounds(button_size, button_size*(nrows+2), 5*button_size, button_size);     
+        text2.setBounds(button_size, view_height+2*button_size, 5*button_size, button_size);     
         text2.setEditable(false);
         text2.setHorizontalAlignment(JTextField.CENTER);
         text2.setFont(game_font);
         display.add(text2);
         
-        //Buttons making up minefield
-        buttons = new JButton[nrows][ncols];
-        
-        for(int i=0; i<nrows; i++){
-            for(int j=0; j<ncols; j++){
-                buttons[i][j] = new JButton();
-                buttons[i][j].setMargin(new Insets(5,5,5,5));
-                buttons[i][j].setFont(game_font);
-                buttons[i][j].setBounds(button_size*(j+1), button_size*(i+1), button_size, button_size);
-                //Mouse listener tracks whether to flag/clear a space based on right/left click
-                buttons[i][j].addMouseListener(new ClearenceListener(i,j));
-                display.add(buttons[i][j]);
-            }
-        }
-        
         //Button to start a new game
         JButton end_game = new JButton("New Game");
         end_game.setMargin(new Insets(5,5,5,5));
         end_game.setFont(game_font);
-        end_game.setBounds(button_size, button_size*(nrows+4), ncols*button_size, button_size);
+        end_game.setBounds(button_size, view_height+4*button_size, view_width/3, button_size);
         end_game.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
                 New_Game ng = new New_Game(window.getLocationOnScreen());
+                if(eg_window!=null){ eg_window.dispose(); }
                 window.dispose();
             }
             
         });
         display.add(end_game);
         
+        //Button to save the board to a file, to share or play again
+        JButton save = new JButton("Save Board");
+        save.setMargin(new Insets(5,5,5,5));
+        save.setFont(game_font);
+        save.setBounds(button_size+view_width/3, view_height+4*button_size, view_width/3, button_size);
+        save.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                JFileChooser chooser = new JFileChooser();
+                if(chooser.showSaveDialog(window)!=JFileChooser.APPROVE_OPTION){ return; }
+                try{
+                    Board_File.Write(board, chooser.getSelectedFile().toPath());
+                }
+                catch(IOException e){
+                    JOptionPane.showMessageDialog(window, "Could not save board: "+e.getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            
+        });
+        display.add(save);
+        
+        //Button to highlight a space which is certainly safe, or a mine
+        JButton hint = new JButton("Hint");
+        hint.setMargin(new Insets(5,5,5,5));
+        hint.setFont(game_font);
+        hint.setBounds(button_size+2*(view_width/3), view_height+4*button_size, view_width-2*(view_width/3), button_size);
+        hint.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                if(hints==null){ hints = new Hint_Engine(board); }
+                int k = hints.Find_Hint();
+                if(k<0){
+                    minefield.Show_Hint(-1, false);
+                    JOptionPane.showMessageDialog(window, "No certain move - time to guess", "Minesweeper", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                minefield.Show_Hint(k, hints.Hint_Is_Mine());
+                minefield.scrollRectToVisible(minefield.Tile_Bounds(board.Row(k), board.Col(k)));
+            }
+            
+        });
+        display.add(hint);
+        
+        //Buttons to take back the last move, including one which lost the
+        //game, and to make it again
+        undo = new JButton("Undo");
+        undo.setMargin(new Insets(5,5,5,5));
+        undo.setFont(game_font);
+        undo.setBounds(button_size, view_height+5*button_size+button_size/4, view_width/3, button_size);
+        undo.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                Undo();
+            }
+            
+        });
+        display.add(undo);
+        
+        redo = new JButton("Redo");
+        redo.setMargin(new Insets(5,5,5,5));
+        redo.setFont(game_font);
+        redo.setBounds(button_size+view_width/3, view_height+5*button_size+button_size/4, view_width/3, button_size);
+        redo.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                Redo();
+            }
+            
+        });
+        display.add(redo);
+        Update_Undo_Buttons();
+        
+        //Button to shade each space by its chance of being a mine
+        show_risk = new JToggleButton("Show Risk");
+        show_risk.setMargin(new Insets(5,5,5,5));
+        show_risk.setFont(game_font);
+        show_risk.setBounds(button_size+2*(view_width/3), view_height+5*button_size+button_size/4, view_width-2*(view_width/3), button_size);
+        show_risk.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                if(show_risk.isSelected() && risk==null){ risk = new Probability_Engine(board); }
+                minefield.Show_Risk(show_risk.isSelected() ? risk : null);
+            }
+            
+        });
+        display.add(show_risk);
+        
         //Start game
         window.setVisible(true);
     }
     
     /**
-     * Generate the minefield for the game, randomly locating the mines
+     * Bring the display and the engines up to date with the spaces changed
+     * by the last move, which are in changed
+     * @param cleared true if the spaces were cleared, false if flagged or
+     * unflagged, which only changes the display
      */
-    private void Fill_Mines(){
-        int placed = 0;
-        double to_check = nrows*ncols;
-        
-        Random rand = new Random(System.currentTimeMillis());
-        
-        /**Generate the mines by looping through spaces, each space is a mine 
-         * with probability based on number of spaces and unplaced mines left         * 
-         */
-        for(int i=0; i<nrows; i++){
-            for(int j=0; j<ncols; j++){
-                
-                if(rand.nextDouble() <= (nmines-placed)/to_check){
-                    mines[i][j] = 1;
-                    placed++;  
-                    
-                    if(placed==nmines){ //If all mines placed, can finish
-                        return;                        
-                    }
-                }
-                to_check--;
-            }
-        }            
+    private void Apply_Changes(boolean cleared){
+        minefield.Repaint_Changed(changed);
+        Note_Played(changed);
+        if(!cleared){ return; }
+        if(minimap!=null){ minimap.Update_Opened(changed); }
+        if(hints!=null){ hints.Update_Opened(changed); }
+        if(risk!=null){ risk.Update_Opened(changed); }
     }
     
     /**
-     * For each location, identify the number of adjacent mines
+     * Record the last move so it can be undone, then show what it changed
+     * @param cleared true if the move cleared spaces, false if it flagged
      */
-    private void Adj_Mines(){
-        for(int i=0; i<nrows; i++){
-            for(int j=0; j<ncols; j++){
-                if(mines[i][j]==1){
-                    adj_mines[i][j] = -1;
-                }
-                else{
-                    for(int i1=-1; i1<=1; i1++){
-                        for(int j1=-1; j1<=1; j1++){
-                            if(0<=i+i1 && i+i1<nrows && 0<=j+j1 && j+j1<ncols){ //Make sure not to leave array bounds
-                                adj_mines[i][j] += mines[i+i1][j+j1];
-                            }
-                        }
-                    }
-                }
-            }
-        }
-            
+    private void After_Move(boolean cleared){
+        if(cleared){ history.Record_Clears(changed, board.Exploded()); }
+        else{ history.Record_Flags(changed); }
+        Show_Move(cleared);
     }
     
     /**
-     * Identify the 'islands' of no mines - the area which should be cleared in
-     * one go when one the central locations is cleared.
+     * Show what the last move, or a move redone, changed, check whether the
+     * game is lost or won, save the changes and remove any hint now it has
+     * been seen
+     * @param cleared true if the move cleared spaces, false if it flagged
      */
-    private void Islands(){
-        
-        islands = new ArrayList<Set<Integer>>();
-        visited = new boolean[nrows][ncols];        
-      
-        for(int i=0; i<nrows; i++){
-            for(int j=0; j<ncols; j++){
-                if(!visited[i][j] && adj_mines[i][j]==0){ 
-                    //If is part of new island, look for island
-                    Set<Integer> island = new HashSet<Integer>();
-                    island.add(i*nrows+j);
-                    islands.add(island);
-                    visited[i][j] = true;
-                    //Identify full island
-                    Spread_Island(i,j);
-                    
-                }
-                visited[i][j] = true;
-            }
+    private void Show_Move(boolean cleared){
+        Apply_Changes(cleared);
+        if(board.Is_Exploded()){
+            minefield.Explode(board.Row(board.Exploded()), board.Col(board.Exploded()));
+            Game_End(false);
+        }
+        else if(board.Is_Won()){
+            Game_End(true);
         }
-                
+        Checkpoint();
+        minefield.Show_Hint(-1, false);
+        Update_Undo_Buttons();
     }
     
     /**
-     * Given a position on an island, check if neighbouring positions are also 0
-     * adjacent mine positions. If they are, spread the island out to include them.
-     * @param i row position
-     * @param j column position
+     * Take back the last move, carrying on with the game if it had ended.
+     * Only the spaces the move changed are redrawn; the hint engine works
+     * out what it knows again when next asked.
      */
-    private void Spread_Island(int i, int j){
-        visited[i][j] = true;
-        for(int m=-1; m<=1; m++){
-            for(int n=-1; n<=1; n++){
-                if(i+m>=0 && i+m<nrows && j+n>=0 && j+n<ncols){
-                    //Add all neighbours to the island
-                    islands.get(islands.size()-1).add(nrows*(i+m)+(j+n));
-                    if(((!(m==0)) || (!(n==0))) && adj_mines[i+m][j+n] == 0 && !visited[i+m][j+n]){
-                        /**
-                         * If neighbour is within the island body, add recursively
-                         *add its neighbours to the island, if this hasn't already 
-                         *been done
-                         */
-                        Spread_Island(i+m,j+n);
-                    }
-                }
-                
-            }
+    private void Undo(){
+        changed.Clear();
+        toggled.Clear();
+        if(!history.Undo(board, toggled, changed)){ return; }
+        
+        minefield.Repaint_Changed(toggled);
+        minefield.Repaint_Changed(changed);
+        Note_Played(toggled);
+        Note_Played(changed);
+        if(!board.Is_Exploded()){ minefield.Clear_Explosion(); }
+        if(!changed.Is_Empty()){
+            if(minimap!=null){ minimap.Update_Closed(changed); }
+            if(hints!=null){ hints.Forget(); }
+            if(risk!=null){ risk.Update_Closed(changed); }
+        }
+        text1.setText(Integer.toString(nmines-board.Num_Flagged()));
+        
+        if(over){
+            over = false;
+            eg_window.setVisible(false);
+            window.setEnabled(true);
+            window.toFront();
         }
+        Checkpoint();
+        minefield.Show_Hint(-1, false);
+        Update_Undo_Buttons();
     }
     
     /**
-     * Given a position on an island, identify which other spaces can be cleared
-     * as part of the island
-     * @param i row position
-     * @param j column position
-     * @return list position in islands containing the positions which can be cleared
+     * Make the last move undone again
      */
-    private int Identify_Island(int i, int j){
-        int pos = nrows*i+j;
-        for(int k=0; k<islands.size(); k++){
-            if(islands.get(k).contains(pos)){ return k; }
-        }
+    private void Redo(){
+        changed.Clear();
+        toggled.Clear();
+        if(!history.Redo(board, toggled, changed)){ return; }
         
-        throw new IllegalArgumentException("Location not part of an island");
+        minefield.Repaint_Changed(toggled);
+        Note_Played(toggled);
+        text1.setText(Integer.toString(nmines-board.Num_Flagged()));
+        Show_Move(true);
+    }
+    
+    /**
+     * Add spaces to those changed this game, unless already there
+     * @param spaces indices of the spaces changed
+     */
+    private void Note_Played(Int_List spaces){
+        for(int c=0; c<spaces.Size(); c++){ Note_Played(spaces.Get(c)); }
+    }
+    
+    private void Note_Played(int k){
+        if((played_bits[k>>>6] & 1L<<k)!=0){ return; }
+        played_bits[k>>>6] |= 1L<<k;
+        played.Add(k);
+    }
+    
+    /**
+     * Enable the undo and redo buttons only when there is a move to take back
+     * or make again
+     */
+    private void Update_Undo_Buttons(){
+        undo.setEnabled(history.Can_Undo());
+        redo.setEnabled(history.Can_Redo());
+    }
+    
+    /**
+     * Save the spaces changed since the last checkpoint. Nothing is saved 
+     * before the first click places the mines, or once the game is over. If 
+     * saving fails the player is told once and saving stops.
+     */
+    private void Checkpoint(){
+        if(over || save_failed || !board.Is_Generated()){ return; }
+        try{
+            save.Checkpoint(board, elapsed_before+System.currentTimeMillis()-start_time);
+        }
+        catch(IOException e){
+            save_failed = true;
+            JOptionPane.showMessageDialog(window, "Could not save game: "+e.getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+        }
     }
     
     /**
@@ -264,29 +475,45 @@ class Game {
      */
     private void Game_End(boolean win){
         
-        //New window
-        final JFrame eg_window = new JFrame("Minesweeper");
-        eg_window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);       
+        //Nothing left to resume
+        if(!over){
+            over = true;
+            try{ save.Delete(); }
+            catch(IOException e){ /* Left behind, replaced by the next game */ }
+        }
+        
+        //Made once and reused for every game played in this window
+        if(eg_window==null){ Make_End_Window(); }
+        eg_text.setText("You "+(win ? "Won!" : "Lost."));
         eg_window.setLocation(window.getLocationOnScreen());
+        eg_window.setVisible(true);
+        window.setEnabled(false);
+        
+    }
+    
+    /**
+     * Create the window shown when a game ends, offering to start a new game
+     */
+    private void Make_End_Window(){
+        eg_window = new JFrame("Minesweeper");
+        eg_window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);       
         eg_window.setLayout(null);
         eg_window.setResizable(false); 
-        eg_window.setSize(9*button_size, 8*button_size);
+        eg_window.setSize(9*button_size, 10*button_size);
         
         JPanel eg_disp = new JPanel();
-        eg_disp.setBounds(0,0,9*button_size, 6*button_size);
+        eg_disp.setBounds(0,0,9*button_size, 8*button_size);
         eg_disp.setLayout(null);
         eg_window.add(eg_disp);
         
         //Ouptut win or lose state
-        String eg_text_input = win ? "Won!" : "Lost.";
-        JTextField eg_text = new JTextField("You "+eg_text_input);
         eg_text.setEditable(false);
         eg_text.setHorizontalAlignment(JTextField.CENTER);
         eg_text.setFont(new Font("Arial", Font.PLAIN, 12));
         eg_text.setBounds(button_size, button_size, 7*button_size, button_size);
         eg_disp.add(eg_text);
         
-        //Start a new game with same difficulty
+        //Start a new game with same difficulty, in this window
         JButton new_game = new JButton("New Game (Same Difficulty)");
         new_game.setFont(game_font);
         new_game.setMargin(new Insets(5,5,5,5));
@@ -294,9 +521,22 @@ class Game {
         new_game.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
-                Game ng = new Game(nrows,ncols,nmines,eg_window.getLocationOnScreen());
-                eg_window.dispose();
-                window.dispose();                
+                if(!no_guess){
+                    Restart(null);
+                    return;
+                }
+                //Usually made while this game was played, so ready at once
+                Board_Maker.No_Guess(eg_window, board.Topology(), nmines, new Board_Maker.Listener(){
+                    @Override
+                    public void Done(Board made, boolean cancelled, Throwable error) {
+                        if(made==null){
+                            if(!cancelled){ JOptionPane.showMessageDialog(eg_window, Board_Maker.Message("Could not find a board without guessing", error), "Minesweeper", JOptionPane.ERROR_MESSAGE); }
+                            return;
+                        }
+                        Restart(made);
+                        Board_Maker.Prepare_No_Guess(board.Topology(), nmines);
+                    }
+                });
             }
             
         });        
@@ -318,9 +558,61 @@ class Game {
         });        
         eg_disp.add(new_game2);
         
-        eg_window.setVisible(true);
-        window.setEnabled(false);
+        //Take back the last move, such as the one which lost the game, and
+        //carry on playing
+        JButton undo_end = new JButton("Undo Last Move");
+        undo_end.setFont(game_font);
+        undo_end.setMargin(new Insets(5,5,5,5));
+        undo_end.setBounds(button_size,7*button_size, 7*button_size, button_size);
+        undo_end.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                Undo();
+            }
+            
+        });        
+        eg_disp.add(undo_end);
+    }
+    
+    /**
+     * Start a new game of the same size in this window, keeping the window and
+     * its components. Only the spaces changed in the last game are redrawn.
+     * @param made board to copy, as made by Board_Maker, or null for a new
+     * board with its mines placed on the first click
+     */
+    private void Restart(Board made){
+        minefield.Reset(played);
+        //Every bit set is for a space in played, so clearing their words
+        //clears them all without going over the whole board
+        for(int c=0; c<played.Size(); c++){ played_bits[played.Get(c)>>>6] = 0; }
+        played.Clear();
+        history.Clear();
+        if(made==null){
+            board.Reset(new SplittableRandom().nextLong());
+        }
+        else{
+            board.Copy_From(made);
+            for(int c=0; c<board.Num_Changed(); c++){ Note_Played(board.Changed(c)); }
+            if(board.Changed_Overflow()){ minefield.repaint(); }
+            else{ minefield.Repaint_Changed(played); }
+        }
+        
+        if(hints!=null){ hints.Reset(); }
+        if(minimap!=null){ minimap.Reset(); }
+        risk = show_risk.isSelected() ? new Probability_Engine(board) : null;
+        if(risk!=null){ minefield.Show_Risk(risk); }
+        
+        save.Start_New();
+        save_failed = false;
+        over = false;
+        elapsed_before = 0;
+        start_time = System.currentTimeMillis();
+        text1.setText(Integer.toString(nmines-board.Num_Flagged()));
+        Update_Undo_Buttons();
         
+        eg_window.setVisible(false);
+        window.setEnabled(true);
+        window.toFront();
     }
     
     /**
@@ -333,20 +625,9 @@ class Game {
         private boolean leftclicked = false;
         private boolean rightclicked = false;
         
-        //Keep track of which button the listener applies to
-        private int row;
-        private int col;
-        
-        /**
-         * Initialise the listener with information as to which button in an 
-         * array it belongs to
-         * @param i row in array 
-         * @param j column in array
-         */
-        public ClearenceListener(int i, int j){
-            row = i;
-            col = j;
-        }
+        //Keep track of which space the mouse buttons were pressed on
+        private int row = -1;
+        private int col = -1;
 
         /**
          * Action on mouse click ignored - events handled by mouse press + release
@@ -357,11 +638,17 @@ class Game {
         }
 
         /**
-         * If a mouse button is pressed, store which is pressed
+         * If a mouse button is pressed, store which is pressed, and on which 
+         * space if it is the first button down
          * @param me mouse event
          */
         @Override
         public void mousePressed(MouseEvent me) {
+            if(!leftclicked && !rightclicked){
+                row = minefield.Row_At(me.getY());
+                col = minefield.Col_At(me.getX(), me.getY());
+            }
+            
             if(SwingUtilities.isLeftMouseButton(me)){
                 leftclicked = true;
             }            
@@ -380,157 +667,66 @@ class Game {
          */
         @Override
         public void mouseReleased(MouseEvent me) {
-            /**
-             * Double click - if number of adjacent flags = number adjacent mines
-             * clear all adjacent non-flagged spaces
-             */ 
-            if(leftclicked && rightclicked){
-                
-                //Unclick mouse
+            //Moving off the space before releasing cancels the click
+            if(row<0 || col<0 || minefield.Row_At(me.getY())!=row || minefield.Col_At(me.getX(), me.getY())!=col){
                 leftclicked = false;
                 rightclicked = false;
-                
-                //Only works if space is cleared and needs non-zero number of adjacent mines                 
-                if(!buttons[row][col].isEnabled() && !"".equals(buttons[row][col].getText())){
-                    
-                    //Check number of adjacent flags == number adjacent mines
-                    int found_adj_mines = Integer.parseInt(buttons[row][col].getText());
-                    for(int i=-1; i<=1; i++){
-                        for(int j=-1; j<=1; j++){
-                            if(row+i>=0 && row+i<nrows && col+j>=0 && col+j<ncols && "F".equals(buttons[row+i][col+j].getText())){
-                                found_adj_mines--;
-                            }
-                        }
-                    }
-                    
-                    if(found_adj_mines == 0){
-                        
-                        for(int i=-1; i<=1; i++){
-                            for(int j=-1; j<=1; j++){
-                                
-                                //Clear any adjacent non-cleared, non-flagged spaces
-                                if(row+i>=0 && row+i<nrows && col+j>=0 && col+j<ncols && buttons[row+i][col+j].isEnabled() && (!"F".equals(buttons[row+i][col+j].getText()))){
-                                    
-                                    //If mine is cleared, lose game
-                                    if(mines[row+i][col+j]==1){
-                                        buttons[row+i][col+j].setText("M");
-                                        Game_End(false);
-                                    }
-                                    
-                                    //Clear space
-                                    else{
-                                        
-                                        //Clear a single space
-                                        if(adj_mines[row+i][col+j]!=0){
-                                            num_cleared++;
-                                            buttons[row+i][col+j].setEnabled(false);
-                                            buttons[row+i][col+j].setText(Integer.toString(adj_mines[row+i][col+j]));
-                                        }
-                                        //Clear an island
-                                        else{
-                                            int list_pos = Identify_Island(row+i,col+j);
-                                            for(int pos : islands.get(list_pos)){
-                                                int r = pos/nrows;
-                                                int c = pos%nrows;
-                            
-                                                if(buttons[r][c].isEnabled()){
-                                                    num_cleared++;
-                                                    buttons[r][c].setEnabled(false);
-                                                    buttons[r][c].setText(adj_mines[r][c]==0 ? "" : Integer.toString(adj_mines[r][c]));
-                                                }                                                    
-                                            }
-                                        }  
-                                        
-                                        //Check if all spaces have been cleared
-                                        //if so, win
-                                        if(num_cleared==nrows*ncols-nmines){
-                                            Game_End(true);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+                return;
             }
             
-            //Left click == clear the space if not flagged
-            else if(leftclicked){ 
-                
-                //Unclick mouse
-                leftclicked = false;
-                
-                if(!buttons[row][col].isEnabled()){ return; }
-                
-                //Do nothing if space is flagged
-                if("F".equals(buttons[row][col].getText())){                 
+            boolean left = leftclicked, right = rightclicked;
+            leftclicked = false;
+            rightclicked = false;
+            changed.Clear();
+
+            //Double click - if number of adjacent flags = number adjacent
+            //mines clear all adjacent non-flagged spaces
+            if(left && right){
+                board.Chord(row,col,changed);
+            }
+
+            //Left click == clear the space if not flagged. The mines are
+            //placed on the first click, keeping this space safe, in the
+            //background if the board is large
+            else if(left){
+                if(!board.Is_Generated() && !board.Is_Flagged(row,col) && (long)nrows*ncols>=Board_Maker.LARGE){
+                    Reveal_After_Placing(row,col);
                     return;
                 }
-                
-                //Atempt to clear a mine - lose game
-                if(mines[row][col]==1){
-                    buttons[row][col].setText("M");
-                    Game_End(false);
-                }
-                
-                //Succesffully clear location
-                else{
-                    
-                    //set the text1 as number of adjacent mines
-                    if(adj_mines[row][col]!=0){
-                        num_cleared++;
-                        buttons[row][col].setEnabled(false);
-                        buttons[row][col].setText(Integer.toString(adj_mines[row][col]));
-                    }
-                    //If no adjacent mines, display the 'island' in the minefield
-                    else{
-                        int list_pos = Identify_Island(row,col);
-                        for(int pos : islands.get(list_pos)){
-                            int r = pos/nrows;
-                            int c = pos%nrows;
-                            
-                            if(buttons[r][c].isEnabled()){
-                                num_cleared++;
-                                buttons[r][c].setEnabled(false);
-                                buttons[r][c].setText(adj_mines[r][c]==0 ? "" : Integer.toString(adj_mines[r][c]));
-                            }                                                      
-                            
-                        }
-                    }                    
-                    
-                    //Check if all mines cleared - if so, win 
-                    if(num_cleared==nrows*ncols-nmines){
-                        Game_End(true);
-                    }
-                    
-                }
+                board.Reveal(row,col,changed);
             }
-            
-            //Flag or unflag a location
-            else if(rightclicked){
-                //Unclick mouse
-                rightclicked = false;
-                
-                //Do nothing is space has been cleared
-                if(!buttons[row][col].isEnabled()){ return; }
-                
-                //Flag if unflagged
-                if(!"F".equals(buttons[row][col].getText())){
-                    buttons[row][col].setText("F");
-                    nflagged++;                    
-                }
-                //Unflag if flagged
-                else{
-                    buttons[row][col].setText("");
-                    nflagged--;
-                }  
-                
-                text1.setText(Integer.toString(nmines-nflagged));
+
+            //Flag or unflag a location, unless it has been cleared
+            else if(right){
+                board.Toggle_Flag(row,col,changed);
+                text1.setText(Integer.toString(nmines-board.Num_Flagged()));
             }
+
+            After_Move(left);
         }
 
         /**
-         * Do nothing if mouse enters area over button
+         * Place the mines in the background, then clear the first space
+         * @param i row position
+         * @param j column position
+         */
+        private void Reveal_After_Placing(final int i, final int j){
+            Board_Maker.Place_Mines(window, board, i, j, new Board_Maker.Listener(){
+                @Override
+                public void Done(Board made, boolean cancelled, Throwable error) {
+                    if(made==null){
+                        if(!cancelled){ JOptionPane.showMessageDialog(window, Board_Maker.Message("Could not place the mines", error), "Minesweeper", JOptionPane.ERROR_MESSAGE); }
+                        return;
+                    }
+                    changed.Clear();
+                    board.Reveal(i,j,changed);
+                    After_Move(true);
+                }
+            });
+        }
+
+        /**
+         * Do nothing if mouse enters area over minefield
          * @param me 
          */
         @Override
@@ -549,4 +745,50 @@ class Game {
         }
         
     }
+    
+    /**
+     * Class to zoom the minefield in and out with the mouse wheel while control
+     * is held. Without control, the wheel scrolls the view as normal.
+     */
+    private class ZoomListener implements MouseWheelListener{
+        
+        private final JViewport viewport;
+        
+        /**
+         * Initialise the listener with the viewport showing the minefield
+         * @param Viewport viewport to keep the zoom centred within
+         */
+        public ZoomListener(JViewport Viewport){
+            viewport = Viewport;
+        }
+
+        /**
+         * Zoom about the mouse position, keeping the space under the mouse in
+         * the same place on screen
+         * @param mwe mouse wheel event
+         */
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent mwe) {
+            if(!mwe.isControlDown()){
+                //Pass the event on so that the scroll pane scrolls
+                viewport.getParent().dispatchEvent(SwingUtilities.convertMouseEvent(minefield, mwe, viewport.getParent()));
+                return;
+            }
+            
+            int old_size = minefield.Tile_Size();
+            int new_size = mwe.getWheelRotation()<0 ? old_size+Math.max(1, old_size/5) : old_size-Math.max(1, old_size/5);
+            minefield.Set_Tile_Size(new_size);
+            new_size = minefield.Tile_Size();
+            if(new_size==old_size){ return; }
+            
+            Point view_pos = viewport.getViewPosition();
+            int x = mwe.getX()*new_size/old_size-(mwe.getX()-view_pos.x);
+            int y = mwe.getY()*new_size/old_size-(mwe.getY()-view_pos.y);
+            viewport.setViewSize(minefield.getPreferredSize());
+            viewport.setViewPosition(new Point(
+                    Math.max(0, Math.min(x, minefield.getWidth()-viewport.getExtentSize().width)),
+                    Math.max(0, Math.min(y, minefield.getHeight()-viewport.getExtentSize().height))));
+        }
+        
+    }
 }
@@ -0,0 +1,436 @@
+
+package minesweepermouse;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves games of minesweeper over TCP on the loopback interface, for bots
+ * and tournaments to play many games at once without the GUI.
+ *
+ * Each connection is a session playing one game at a time, through a line
+ * protocol. Commands, with rows and columns counted from 0:
+ *   NEW rows cols mines [seed]  start a game, the first OPEN is always safe
+ *   OPEN i j                    clear a space
+ *   CHORD i j                   clear the neighbours of a number
+ *   FLAG i j                    flag or unflag a space
+ *   BOARD                       show the whole board as seen by a player
+ *   QUIT                        end the session
+ * OPEN and CHORD reply "PLAYING n" or "WON n" followed by the row, column and
+ * adjacent mine count of each of the n spaces cleared, or "LOST i j n ..."
+ * giving the mine which was cleared first. FLAG replies "FLAGGED i j" or
+ * "UNFLAGGED i j", NEW replies "OK rows cols mines", and BOARD replies with
+ * one line of rows*cols characters: '.' uncleared, 'F' flagged, or the
+ * number of adjacent mines. Anything else gets "ERR" and a reason. Lines
+ * longer than MAX_LINE characters get "ERR" and end the session.
+ *
+ * Every session keeps only a Board, at one byte per space, and a list of
+ * the spaces changed by the last move, so board size is limited rather than
+ * the number of sessions. Sessions sending nothing for the idle timeout are
+ * evicted, as are sessions sending a line which is too long, and any session
+ * over the limit is refused when it connects. Connections which fail are
+ * counted rather than logged, so a misbehaving client can't flood the log.
+ *
+ * Each session is served on its own thread from a pool. Threads are given a
+ * small stack, so thousands of sessions fit in a modest amount of memory.
+ *
+ * @author cjcode975
+ */
+class Game_Server {
+
+    //Stack size for session threads, which only parse lines and play moves
+    private static final long STACK_SIZE = 256*1024;
+    //Size of each session's read and write buffers, in characters. Replies
+    //longer than this, such as BOARD on a large board, still work, at the
+    //cost of more system calls
+    private static final int BUFFER = 1024;
+    //Longest line accepted, in characters, well over the longest command
+    static final int MAX_LINE = 256;
+
+    private final int port;
+    private final int max_sessions;
+    private final int idle_ms;
+    private final int max_spaces;
+
+    private ServerSocket server_socket;
+    private ExecutorService sessions;
+    private Thread acceptor;
+    private final AtomicInteger active = new AtomicInteger();
+    //Sockets of the open sessions, closed when the server stops
+    private final Set<Socket> open = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final LongAdder sessions_served = new LongAdder();
+    private final LongAdder sessions_evicted = new LongAdder();
+    private final LongAdder sessions_failed = new LongAdder();
+    private final LongAdder accepts_failed = new LongAdder();
+    private final LongAdder games_started = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+
+    /**
+     * @param Port port to listen on, or 0 for any free port
+     * @param Max_Sessions most sessions open at once
+     * @param Idle_Ms time a session may send nothing before it is closed
+     * @param Max_Spaces largest board a session may play, in spaces
+     */
+    public Game_Server(int Port, int Max_Sessions, int Idle_Ms, int Max_Spaces){
+        port = Port;
+        max_sessions = Max_Sessions;
+        idle_ms = Idle_Ms;
+        max_spaces = Max_Spaces;
+    }
+
+    /**
+     * Start listening for sessions on a background thread
+     * @throws IOException if the port can't be listened on
+     */
+    public void Start() throws IOException {
+        server_socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        sessions = Executors.newCachedThreadPool(new ThreadFactory(){
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r){
+                Thread t = new Thread(null, r, "Session "+count.incrementAndGet(), STACK_SIZE);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        acceptor = new Thread(new Runnable(){
+            @Override
+            public void run(){ Accept(); }
+        }, "Session acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accept connections until the server is stopped
+     */
+    private void Accept(){
+        while(!server_socket.isClosed()){
+            final Socket socket;
+            try{
+                socket = server_socket.accept();
+            }
+            catch(IOException e){
+                if(!server_socket.isClosed()){ accepts_failed.increment(); }
+                continue;
+            }
+            if(active.incrementAndGet()>max_sessions){
+                active.decrementAndGet();
+                Refuse(socket);
+                continue;
+            }
+            sessions.execute(new Runnable(){
+                @Override
+                public void run(){
+                    open.add(socket);
+                    try{ new Session(socket).Serve(); }
+                    finally{
+                        open.remove(socket);
+                        active.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Turn away a connection when the server is full
+     */
+    private static void Refuse(Socket socket){
+        try(Socket s = socket){
+            s.getOutputStream().write("ERR server full\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        catch(IOException e){ /* Gone already */ }
+    }
+
+    /**
+     * Stop accepting sessions and close the open ones
+     */
+    public void Stop() throws IOException {
+        server_socket.close();
+        sessions.shutdownNow();
+        //Sessions blocked reading are only woken by closing their sockets
+        for(Socket s : open){
+            try{ s.close(); }
+            catch(IOException e){ /* Closing anyway */ }
+        }
+        try{ sessions.awaitTermination(5, TimeUnit.SECONDS); }
+        catch(InterruptedException e){ Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * @return port being listened on
+     */
+    public int Port(){ return server_socket.getLocalPort(); }
+
+    public int Active_Sessions(){ return active.get(); }
+
+    public long Sessions_Served(){ return sessions_served.sum(); }
+
+    /**
+     * @return sessions closed for going idle or sending a line over MAX_LINE
+     */
+    public long Sessions_Evicted(){ return sessions_evicted.sum(); }
+
+    /**
+     * @return sessions ended by an error reading or writing their socket
+     */
+    public long Sessions_Failed(){ return sessions_failed.sum(); }
+
+    /**
+     * @return connections which could not be accepted
+     */
+    public long Accepts_Failed(){ return accepts_failed.sum(); }
+
+    public long Games_Started(){ return games_started.sum(); }
+
+    /**
+     * @return OPEN, CHORD and FLAG commands played so far
+     */
+    public long Moves(){ return moves.sum(); }
+
+    /**
+     * One connection, playing one game at a time
+     */
+    private class Session {
+
+        private final Socket socket;
+        private Writer out;
+        private Board board = null;
+        //Spaces changed by the last move, reused from move to move
+        private final Int_List changed = new Int_List();
+        private final StringBuilder reply = new StringBuilder();
+        private final StringBuilder line = new StringBuilder();
+
+        Session(Socket Socket){
+            socket = Socket;
+        }
+
+        /**
+         * Read and answer commands until the client quits, goes quiet or
+         * disconnects
+         */
+        void Serve(){
+            sessions_served.increment();
+            try(Socket s = socket){
+                s.setSoTimeout(idle_ms);
+                s.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII), BUFFER);
+                out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII), BUFFER);
+                try{
+                    for(String text=Read_Line(in); text!=null; text=Read_Line(in)){
+                        if(!Command(text.trim().split("\\s+"))){ break; }
+                        out.write(reply.toString());
+                        out.write('\n');
+                        out.flush();
+                    }
+                }
+                catch(SocketTimeoutException e){
+                    sessions_evicted.increment();
+                    out.write("BYE idle\n");
+                    out.flush();
+                }
+                catch(ProtocolException e){
+                    sessions_evicted.increment();
+                    out.write("ERR "+e.getMessage()+"\n");
+                    out.flush();
+                }
+            }
+            catch(SocketException e){
+                //Client disconnected, or the server is stopping
+            }
+            catch(IOException e){
+                sessions_failed.increment();
+            }
+        }
+
+        /**
+         * Read a line, unlike BufferedReader.readLine never holding more than
+         * MAX_LINE characters of it
+         * @param in stream to read from
+         * @return the line without its end, or null at the end of the stream
+         * @throws ProtocolException if the line is longer than MAX_LINE
+         */
+        private String Read_Line(BufferedReader in) throws IOException {
+            line.setLength(0);
+            for(int c=in.read(); c!='\n'; c=in.read()){
+                if(c<0){ return line.length()>0 ? line.toString() : null; }
+                if(line.length()==MAX_LINE){ throw new ProtocolException("line longer than "+MAX_LINE+" characters"); }
+                line.append((char)c);
+            }
+            return line.toString();
+        }
+
+        /**
+         * Carry out a command, leaving the reply in reply
+         * @param words command and its arguments
+         * @return false if the session should end
+         */
+        private boolean Command(String[] words){
+            reply.setLength(0);
+            try{
+                switch(words[0].toUpperCase()){
+                    case "NEW": New(words); break;
+                    case "OPEN": Move(words, false); break;
+                    case "CHORD": Move(words, true); break;
+                    case "FLAG": Flag(words); break;
+                    case "BOARD": Show(words); break;
+                    case "QUIT":
+                        Write_Quietly("BYE\n");
+                        return false;
+                    default: reply.append("ERR unknown command ").append(words[0]);
+                }
+            }
+            catch(IllegalArgumentException | IllegalStateException e){
+                reply.setLength(0);
+                reply.append("ERR ").append(e.getMessage());
+            }
+            return true;
+        }
+
+        private void New(String[] words){
+            Need(words, 4);
+            int rows = Integer.parseInt(words[1]);
+            int cols = Integer.parseInt(words[2]);
+            int mines = Integer.parseInt(words[3]);
+            long seed = words.length>4 ? Long.parseLong(words[4]) : new SplittableRandom().nextLong();
+            if((long)rows*cols>max_spaces){ throw new IllegalArgumentException("board larger than "+max_spaces+" spaces"); }
+
+            //Reuse the last board if it is the same size
+            if(board!=null && board.Rows()==rows && board.Cols()==cols && board.Mines()==mines){
+                board.Reset(seed);
+            }
+            else{
+                board = new Board(rows, cols, mines, seed);
+            }
+            games_started.increment();
+            reply.append("OK ").append(rows).append(' ').append(cols).append(' ').append(mines);
+        }
+
+        private void Move(String[] words, boolean chord){
+            Need(words, 3);
+            int i = Row(words[1]), j = Col(words[2]);
+            moves.increment();
+            changed.Clear();
+            if(chord){ board.Chord(i,j,changed); }
+            else{ board.Reveal(i,j,changed); }
+
+            if(board.Is_Exploded()){
+                reply.append("LOST ").append(board.Row(board.Exploded())).append(' ').append(board.Col(board.Exploded())).append(' ');
+            }
+            else{
+                reply.append(board.Is_Won() ? "WON " : "PLAYING ");
+            }
+            reply.append(changed.Size());
+            for(int c=0; c<changed.Size(); c++){
+                int k = changed.Get(c);
+                reply.append(' ').append(board.Row(k)).append(' ').append(board.Col(k)).append(' ').append(board.Adj(board.Row(k), board.Col(k)));
+            }
+        }
+
+        private void Flag(String[] words){
+            Need(words, 3);
+            int i = Row(words[1]), j = Col(words[2]);
+            moves.increment();
+            if(board.Is_Cleared(i,j)){ throw new IllegalArgumentException("space already cleared"); }
+            reply.append(board.Toggle_Flag(i,j) ? "FLAGGED " : "UNFLAGGED ").append(i).append(' ').append(j);
+        }
+
+        private void Show(String[] words){
+            Need(words, 1);
+            for(int i=0; i<board.Rows(); i++){
+                for(int j=0; j<board.Cols(); j++){
+                    if(board.Is_Cleared(i,j)){ reply.append((char)('0'+board.Adj(i,j))); }
+                    else if(board.Is_Flagged(i,j)){ reply.append('F'); }
+                    else{ reply.append('.'); }
+                }
+            }
+        }
+
+        /**
+         * Check there is a game in progress and enough arguments
+         */
+        private void Need(String[] words, int n){
+            if(words.length<n){ throw new IllegalArgumentException("expected "+(n-1)+" arguments"); }
+            if(board==null && !words[0].equalsIgnoreCase("NEW")){ throw new IllegalStateException("no game, send NEW first"); }
+            if(board!=null && (board.Is_Exploded() || board.Is_Won()) && !words[0].equalsIgnoreCase("NEW") && !words[0].equalsIgnoreCase("BOARD")){
+                throw new IllegalStateException("game over, send NEW to play again");
+            }
+        }
+
+        private int Row(String word){
+            int i = Integer.parseInt(word);
+            if(i<0 || i>=board.Rows()){ throw new IllegalArgumentException("row out of range"); }
+            return i;
+        }
+
+        private int Col(String word){
+            int j = Integer.parseInt(word);
+            if(j<0 || j>=board.Cols()){ throw new IllegalArgumentException("column out of range"); }
+            return j;
+        }
+
+        private void Write_Quietly(String text){
+            try{
+                out.write(text);
+                out.flush();
+            }
+            catch(IOException e){ /* Closing anyway */ }
+        }
+    }
+
+    /**
+     * Run a server until the process is killed, printing a line of counts
+     * every ten seconds
+     * @param args --serve [port] [idle seconds] [max sessions] [max spaces]
+     */
+    static void Main(String[] args){
+        try{
+            int port = args.length>1 ? Integer.parseInt(args[1]) : 7975;
+            int idle_s = args.length>2 ? Integer.parseInt(args[2]) : 300;
+            int max_sessions = args.length>3 ? Integer.parseInt(args[3]) : 10000;
+            int max_spaces = args.length>4 ? Integer.parseInt(args[4]) : 1<<20;
+            Game_Server server = new Game_Server(port, max_sessions, idle_s*1000, max_spaces);
+            server.Start();
+            System.out.println("Serving minesweeper on "+InetAddress.getLoopbackAddress().getHostAddress()+":"+server.Port());
+            while(true){
+                Thread.sleep(10000);
+                System.out.println(String.format("%d sessions open, %d served, %d evicted, %d failed, %d accepts failed, %d games, %d moves",
+                        server.Active_Sessions(), server.Sessions_Served(), server.Sessions_Evicted(), server.Sessions_Failed(),
+                        server.Accepts_Failed(), server.Games_Started(), server.Moves()));
+            }
+        }
+        catch(IllegalArgumentException e){
+            System.err.println("Usage: --serve [port] [idle seconds] [max sessions] [max spaces]");
+            System.exit(1);
+        }
+        catch(IOException e){
+            System.err.println("Could not start server: "+e.getMessage());
+            System.exit(1);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,457 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds spaces which are certainly safe or certainly mines, using only what a
+ * player can see: the numbers on cleared spaces. Mines are never looked at,
+ * and flags placed by the player are not trusted, as they may be wrong.
+ *
+ * Each cleared space with a number is a constraint: the uncleared spaces
+ * around it hold that many mines, less any mines already found. Constraints
+ * are only re-examined when something near them changes, so the work done
+ * for a hint depends on the spaces changed since the last hint rather than
+ * the size of the board. Rules are tried cheapest first:
+ *   1. single constraints where all unknown spaces must be safe, or all mines
+ *   2. pairs of nearby constraints where one's unknowns are a subset of the
+ *      other's, so the difference must be all safe or all mines
+ *   3. Gaussian elimination over each connected group of constraints, used
+ *      only once the first two rules have nothing left to find
+ *
+ * @author cjcode975
+ */
+class Hint_Engine {
+
+    //Per space flags: what has been deduced, and which work queues hold it
+    private static final int SAFE = 1;
+    private static final int MINE = 2;
+    private static final int QUEUED_SINGLE = 4;
+    private static final int QUEUED_SUBSET = 8;
+    private static final int QUEUED_LINEAR = 16;
+
+    //Largest group of unknown spaces to run Gaussian elimination over
+    static final int MAX_LINEAR_VARS = 200;
+
+    private final Board board;
+    private final Topology topology;
+    private final byte[] known;
+
+    //Constraints waiting to be checked by each rule
+    private final Int_List single = new Int_List();
+    private final Int_List subset = new Int_List();
+    private final Int_List linear = new Int_List();
+    //Spaces deduced but not yet acted on by the player
+    private final Int_List found_safe = new Int_List();
+    private final Int_List found_mine = new Int_List();
+    //Deductions made during the current call to Solve
+    private int new_found = 0;
+
+    //Scratch space for the unknown neighbours of up to two constraints, and
+    //the number of mines among them
+    private final int[] unknown_a = new int[Topology.MAX_DEGREE];
+    private final int[] unknown_b = new int[Topology.MAX_DEGREE];
+    private int need;
+    //Scratch space for the spaces within two steps of a constraint
+    private final int[] nearby = new int[Topology.MAX_DEGREE*(Topology.MAX_DEGREE+1)];
+
+    //Result of the last call to Find_Hint
+    private boolean hint_mine = false;
+    //Whether spaces have been covered again since the last hint, so that
+    //everything deduced has to be worked out again
+    private boolean stale = false;
+
+    /**
+     * Create a hint engine for a board. Any spaces already cleared, as in a
+     * resumed game, are queued up to be checked.
+     * @param Board_In board to give hints for
+     */
+    public Hint_Engine(Board Board_In){
+        board = Board_In;
+        topology = board.Topology();
+        known = new byte[board.Rows()*board.Cols()];
+        Note_All_Cleared();
+    }
+
+    /**
+     * Forget everything, for a new game on the same board, then queue up any
+     * spaces already cleared
+     */
+    public void Reset(){
+        Arrays.fill(known, (byte)0);
+        single.Clear();
+        subset.Clear();
+        linear.Clear();
+        found_safe.Clear();
+        found_mine.Clear();
+        new_found = 0;
+        hint_mine = false;
+        stale = false;
+        Note_All_Cleared();
+    }
+
+    /**
+     * Spaces have been covered again by undoing a move, so what was deduced
+     * from them may no longer be known. Everything is worked out again from
+     * the board at the next hint, so undoing costs nothing until then.
+     */
+    public void Forget(){
+        stale = true;
+    }
+
+    /**
+     * Queue up the spaces already cleared, as in a resumed game
+     */
+    private void Note_All_Cleared(){
+        if(board.Num_Cleared()==0){ return; }
+        for(int k=0; k<known.length; k++){
+            if(board.Is_Cleared(board.Row(k), board.Col(k))){ Note_Cleared(k); }
+        }
+    }
+
+    /**
+     * Take account of spaces cleared by Board.Reveal or Board.Chord
+     * @param opened indices of the spaces cleared
+     */
+    public void Update_Opened(Int_List opened){
+        if(stale){ return; }
+        for(int c=0; c<opened.Size(); c++){
+            Note_Cleared(opened.Get(c));
+        }
+    }
+
+    /**
+     * A space has been cleared: it is safe, it may be a new constraint, and
+     * the constraints around it have one fewer unknown
+     * @param k index of the space
+     */
+    private void Note_Cleared(int k){
+        known[k] |= SAFE;
+        Queue_Around(k);
+        if(board.Adj(board.Row(k), board.Col(k))>0){ Queue(k); }
+    }
+
+    /**
+     * Find a space which is certainly safe, or failing that, certainly a mine
+     * and not yet flagged
+     * @return index of the space, or -1 if there is no certain move. Whether
+     * the space is a mine is given by Hint_Is_Mine
+     */
+    public int Find_Hint(){
+        //Before the first click any space is safe
+        if(!board.Is_Generated()){
+            hint_mine = false;
+            return board.Index(board.Rows()/2, board.Cols()/2);
+        }
+        if(stale){ Reset(); }
+
+        int hint = Pending_Hint();
+        if(hint>=0){ return hint; }
+        Solve();
+        return Pending_Hint();
+    }
+
+    /**
+     * @return true if the space from the last Find_Hint is a mine
+     */
+    public boolean Hint_Is_Mine(){ return hint_mine; }
+
+    /**
+     * Find a deduction the player has not yet acted on, dropping safe spaces
+     * which have since been cleared and mines which have since been flagged
+     * @return index of the space, or -1 if none
+     */
+    private int Pending_Hint(){
+        while(!found_safe.Is_Empty()){
+            int k = found_safe.Get(found_safe.Size()-1);
+            if(!board.Is_Cleared(board.Row(k), board.Col(k))){
+                hint_mine = false;
+                return k;
+            }
+            found_safe.Remove_Last();
+        }
+        while(!found_mine.Is_Empty()){
+            int k = found_mine.Get(found_mine.Size()-1);
+            if(!board.Is_Flagged(board.Row(k), board.Col(k))){
+                hint_mine = true;
+                return k;
+            }
+            found_mine.Remove_Last();
+        }
+        return -1;
+    }
+
+    /**
+     * Apply the rules to queued constraints until something new is found or
+     * there is nothing left to check. Cheaper rules are always run to
+     * completion before a more expensive rule is tried.
+     */
+    private void Solve(){
+        new_found = 0;
+        while(true){
+            if(!single.Is_Empty()){
+                int c = single.Remove_Last();
+                known[c] &= ~QUEUED_SINGLE;
+                Apply_Single(c);
+            }
+            else if(new_found>0){
+                return;
+            }
+            else if(!subset.Is_Empty()){
+                int c = subset.Remove_Last();
+                if((known[c] & QUEUED_SUBSET)==0){ continue; }
+                known[c] &= ~QUEUED_SUBSET;
+                Apply_Subset(c);
+            }
+            else if(!linear.Is_Empty()){
+                int c = linear.Remove_Last();
+                if((known[c] & QUEUED_LINEAR)==0){ continue; }
+                known[c] &= ~QUEUED_LINEAR;
+                Apply_Linear(c);
+            }
+            else{
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rule 1: all unknowns of a constraint are safe if it needs no more mines,
+     * or are all mines if it needs as many mines as it has unknowns
+     * @param c index of the constraint space
+     */
+    private void Apply_Single(int c){
+        int n = Unknowns(c, unknown_a);
+        if(n==0){ return; }
+        if(need==0){
+            for(int u=0; u<n; u++){ Mark(unknown_a[u], SAFE); }
+        }
+        else if(need==n){
+            for(int u=0; u<n; u++){ Mark(unknown_a[u], MINE); }
+        }
+    }
+
+    /**
+     * Rule 2: compare a constraint with each constraint near enough to share
+     * an unknown, which are those within two steps of it, in order of index.
+     * If one's unknowns are a subset of the other's, the spaces only in the
+     * larger hold the difference in the number of mines needed.
+     * @param a index of the constraint space
+     */
+    private void Apply_Subset(int a){
+        int count = 0;
+        for(int d : topology.Offsets(a)){
+            int k = a+d;
+            nearby[count++] = k;
+            for(int e : topology.Offsets(k)){ nearby[count++] = k+e; }
+        }
+        Arrays.sort(nearby, 0, count);
+
+        for(int s=0; s<count; s++){
+            int b = nearby[s];
+            if(b==a || (s>0 && b==nearby[s-1]) || !Is_Constraint(b)){ continue; }
+
+            int na = Unknowns(a, unknown_a);
+            int need_a = need;
+            if(na==0){ return; }
+            int nb = Unknowns(b, unknown_b);
+            int need_b = need;
+            if(nb==0){ continue; }
+
+            if(na<=nb && Is_Subset(unknown_a, na, unknown_b, nb)){
+                Apply_Difference(unknown_b, nb, unknown_a, na, need_b-need_a);
+            }
+            else if(nb<na && Is_Subset(unknown_b, nb, unknown_a, na)){
+                Apply_Difference(unknown_a, na, unknown_b, nb, need_a-need_b);
+            }
+        }
+    }
+
+    /**
+     * @return true if every entry of small is in large
+     */
+    private static boolean Is_Subset(int[] small, int nsmall, int[] large, int nlarge){
+        for(int s=0; s<nsmall; s++){
+            boolean present = false;
+            for(int l=0; l<nlarge && !present; l++){
+                present = small[s]==large[l];
+            }
+            if(!present){ return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Mark the spaces in large but not small, which hold diff mines between
+     * them, if that decides them
+     */
+    private void Apply_Difference(int[] large, int nlarge, int[] small, int nsmall, int diff){
+        int ndiff = nlarge-nsmall;
+        if(ndiff==0 || (diff!=0 && diff!=ndiff)){ return; }
+        for(int l=0; l<nlarge; l++){
+            boolean shared = false;
+            for(int s=0; s<nsmall && !shared; s++){
+                shared = large[l]==small[s];
+            }
+            if(!shared){ Mark(large[l], diff==0 ? SAFE : MINE); }
+        }
+    }
+
+    /**
+     * Rule 3: gather every constraint connected to c through shared unknowns,
+     * reduce them to row echelon form, and look for rows which can only be
+     * satisfied one way: if the right hand side equals the sum of the positive
+     * coefficients, every positive coefficient's space is a mine and every
+     * negative one's is safe, and the reverse if it equals the sum of the
+     * negative coefficients.
+     * @param c index of a constraint space
+     */
+    private void Apply_Linear(int c){
+        if(Unknowns(c, unknown_a)==0){ return; }
+
+        //Find the connected group of constraints and their unknowns
+        Map<Integer,Integer> columns = new HashMap<Integer,Integer>();
+        Set<Integer> seen = new HashSet<Integer>();
+        Int_List rows = new Int_List();
+        Int_List vars = new Int_List();
+        seen.add(c);
+        rows.Add(c);
+        for(int r=0; r<rows.Size(); r++){
+            int n = Unknowns(rows.Get(r), unknown_a);
+            for(int u=0; u<n; u++){
+                int v = unknown_a[u];
+                if(columns.containsKey(v)){ continue; }
+                columns.put(v, vars.Size());
+                vars.Add(v);
+                if(vars.Size()>MAX_LINEAR_VARS){ return; }
+
+                //Every constraint around the unknown joins the group
+                for(int d : topology.Offsets(v)){
+                    int nb = v+d;
+                    if(Is_Constraint(nb) && seen.add(nb)){
+                        rows.Add(nb);
+                        known[nb] &= ~QUEUED_LINEAR;
+                    }
+                }
+            }
+        }
+
+        //Build the system, one row per constraint
+        int nvars = vars.Size();
+        double[][] a = new double[rows.Size()][nvars+1];
+        for(int r=0; r<rows.Size(); r++){
+            int n = Unknowns(rows.Get(r), unknown_a);
+            for(int u=0; u<n; u++){ a[r][columns.get(unknown_a[u])] = 1; }
+            a[r][nvars] = need;
+        }
+
+        Row_Reduce(a, nvars);
+
+        final double eps = 1e-9;
+        for(double[] row : a){
+            double max = 0, min = 0;
+            for(int v=0; v<nvars; v++){
+                if(row[v]>eps){ max += row[v]; }
+                else if(row[v]<-eps){ min += row[v]; }
+            }
+            boolean at_max = Math.abs(row[nvars]-max)<eps;
+            boolean at_min = Math.abs(row[nvars]-min)<eps;
+            if(max-min<eps || (!at_max && !at_min)){ continue; }
+            for(int v=0; v<nvars; v++){
+                if(row[v]>eps){ Mark(vars.Get(v), at_max ? MINE : SAFE); }
+                else if(row[v]<-eps){ Mark(vars.Get(v), at_max ? SAFE : MINE); }
+            }
+        }
+    }
+
+    /**
+     * Reduce a matrix to reduced row echelon form in place, with partial
+     * pivoting
+     * @param a matrix with the right hand side in the last column
+     * @param ncols number of columns excluding the right hand side
+     */
+    private static void Row_Reduce(double[][] a, int ncols){
+        int pivot_row = 0;
+        for(int col=0; col<ncols && pivot_row<a.length; col++){
+            int best = pivot_row;
+            for(int r=pivot_row+1; r<a.length; r++){
+                if(Math.abs(a[r][col])>Math.abs(a[best][col])){ best = r; }
+            }
+            if(Math.abs(a[best][col])<1e-9){ continue; }
+            double[] tmp = a[best]; a[best] = a[pivot_row]; a[pivot_row] = tmp;
+
+            double p = a[pivot_row][col];
+            for(int k=col; k<=ncols; k++){ a[pivot_row][k] /= p; }
+            for(int r=0; r<a.length; r++){
+                if(r==pivot_row || a[r][col]==0){ continue; }
+                double f = a[r][col];
+                for(int k=col; k<=ncols; k++){ a[r][k] -= f*a[pivot_row][k]; }
+            }
+            pivot_row++;
+        }
+    }
+
+    /**
+     * Record a deduction about a space and requeue the constraints around it
+     * @param k index of the space
+     * @param what SAFE or MINE
+     */
+    private void Mark(int k, int what){
+        if((known[k] & (SAFE|MINE))!=0){ return; }
+        known[k] |= what;
+        if(what==SAFE){ found_safe.Add(k); }
+        else{ found_mine.Add(k); }
+        new_found++;
+        Queue_Around(k);
+    }
+
+    /**
+     * Queue every constraint around a space for checking by all rules
+     * @param k index of the space
+     */
+    private void Queue_Around(int k){
+        for(int d : topology.Offsets(k)){
+            if(Is_Constraint(k+d)){ Queue(k+d); }
+        }
+    }
+
+    /**
+     * Queue a constraint for checking by each rule it isn't already queued for
+     * @param c index of the constraint space
+     */
+    private void Queue(int c){
+        if((known[c] & QUEUED_SINGLE)==0){ known[c] |= QUEUED_SINGLE; single.Add(c); }
+        if((known[c] & QUEUED_SUBSET)==0){ known[c] |= QUEUED_SUBSET; subset.Add(c); }
+        if((known[c] & QUEUED_LINEAR)==0){ known[c] |= QUEUED_LINEAR; linear.Add(c); }
+    }
+
+    /**
+     * @param k index of a space
+     * @return true if the space is cleared and shows a number
+     */
+    private boolean Is_Constraint(int k){
+        return board.Is_Cleared(k) && board.Adj(k)>0;
+    }
+
+    /**
+     * List the unknown neighbours of a constraint, and set need to the number
+     * of mines among them
+     * @param c index of the constraint space
+     * @param out array to list the unknown spaces in
+     * @return number of unknown spaces
+     */
+    private int Unknowns(int c, int[] out){
+        int n = 0;
+        need = board.Adj(c);
+        for(int d : topology.Offsets(c)){
+            int nb = c+d;
+            if((known[nb] & MINE)!=0){ need--; }
+            else if((known[nb] & SAFE)==0 && !board.Is_Cleared(nb)){ out[n++] = nb; }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,66 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays every certain move found by Hint_Engine, and clears a random uncleared
+ * space whenever there is no certain move. Starts in the centre.
+ *
+ * @author cjcode975
+ */
+class Hint_Strategy implements Strategy {
+
+    private Board board;
+    private Hint_Engine hints;
+    private SplittableRandom random;
+    private boolean flag = false;
+
+    @Override
+    public void Start(Board board, SplittableRandom random){
+        this.board = board;
+        this.random = random;
+        hints = new Hint_Engine(board);
+    }
+
+    @Override
+    public int Next_Move(){
+        int k = hints.Find_Hint();
+        if(k>=0){
+            flag = hints.Hint_Is_Mine();
+            return k;
+        }
+        flag = false;
+        return Random_Uncleared(board, random);
+    }
+
+    @Override
+    public boolean Move_Is_Flag(){ return flag; }
+
+    @Override
+    public void Opened(Int_List opened){ hints.Update_Opened(opened); }
+
+    /**
+     * Pick an uncleared, unflagged space at random
+     * @param board board to pick from
+     * @param random random numbers to pick with
+     * @return index of the space
+     */
+    static int Random_Uncleared(Board board, SplittableRandom random){
+        int ncells = board.Rows()*board.Cols();
+        //Guessing at random is usually quick on a board with plenty left to
+        //clear, otherwise fall back to counting the candidates
+        for(int tries=0; tries<64; tries++){
+            int k = random.nextInt(ncells);
+            if(!board.Is_Cleared(board.Row(k), board.Col(k)) && !board.Is_Flagged(board.Row(k), board.Col(k))){ return k; }
+        }
+        int left = 0;
+        for(int k=0; k<ncells; k++){
+            if(!board.Is_Cleared(board.Row(k), board.Col(k)) && !board.Is_Flagged(board.Row(k), board.Col(k))){ left++; }
+        }
+        int pick = random.nextInt(left);
+        for(int k=0; ; k++){
+            if(!board.Is_Cleared(board.Row(k), board.Col(k)) && !board.Is_Flagged(board.Row(k), board.Col(k)) && pick--==0){ return k; }
+        }
+    }
+}
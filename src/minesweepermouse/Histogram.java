@@ -0,0 +1,149 @@
+
+package minesweepermouse;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram of non-negative values, such as times in nanoseconds, which can
+ * be recorded to from many threads at once with little overhead.
+ *
+ * Values are counted in buckets set by their highest bit and the SUB_BITS
+ * bits below it, so each bucket covers values within 1/2^SUB_BITS of each
+ * other whatever their size, as in HdrHistogram. Recording a value is a
+ * couple of bit operations and an increment of a LongAdder, so threads
+ * recording at the same time don't contend.
+ *
+ * @author cjcode975
+ */
+class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1<<SUB_BITS;
+    //Enough buckets for any non-negative long
+    private static final int NBUCKETS = (64-SUB_BITS)*SUB;
+
+    private final String name;
+    private final String unit;
+    private final LongAdder[] buckets = new LongAdder[NBUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(new LongBinaryOperator(){
+        @Override
+        public long applyAsLong(long a, long b){ return Math.max(a, b); }
+    }, 0);
+
+    /**
+     * @param Name name shown in reports
+     * @param Unit unit of the values, "ns" for times which are shown scaled
+     */
+    public Histogram(String Name, String Unit){
+        name = Name;
+        unit = Unit;
+        for(int b=0; b<NBUCKETS; b++){ buckets[b] = new LongAdder(); }
+    }
+
+    /**
+     * @param value value to record, negative values counting as 0
+     */
+    public void Record(long value){
+        if(value<0){ value = 0; }
+        buckets[Bucket(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Record the time since a start time
+     * @param start_ns start time from System.nanoTime
+     */
+    public void Record_Since(long start_ns){
+        Record(System.nanoTime()-start_ns);
+    }
+
+    /**
+     * @return bucket holding a value
+     */
+    static int Bucket(long value){
+        if(value<SUB){ return (int)value; }
+        int exp = 63-Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exp-SUB_BITS)) & (SUB-1);
+        return (exp-SUB_BITS+1)*SUB+sub;
+    }
+
+    /**
+     * @return largest value held in a bucket
+     */
+    static long Bucket_Max(int bucket){
+        if(bucket<SUB){ return bucket; }
+        int exp = bucket/SUB+SUB_BITS-1;
+        long sub = bucket%SUB;
+        return ((SUB+sub+1) << (exp-SUB_BITS))-1;
+    }
+
+    public String Name(){ return name; }
+
+    public String Unit(){ return unit; }
+
+    public long Count(){ return count.sum(); }
+
+    public long Max(){ return max.get(); }
+
+    public double Mean(){
+        long n = count.sum();
+        return n>0 ? (double)sum.sum()/n : 0;
+    }
+
+    /**
+     * @param fraction fraction of values, such as 0.99
+     * @return value which that fraction of recorded values are at most,
+     * accurate to the size of a bucket
+     */
+    public long Percentile(double fraction){
+        long[] counts = new long[NBUCKETS];
+        long total = 0;
+        for(int b=0; b<NBUCKETS; b++){
+            counts[b] = buckets[b].sum();
+            total += counts[b];
+        }
+        if(total==0){ return 0; }
+
+        long target = Math.max(1, (long)Math.ceil(fraction*total));
+        long seen = 0;
+        for(int b=0; b<NBUCKETS; b++){
+            seen += counts[b];
+            if(seen>=target){ return Math.min(Bucket_Max(b), Max()); }
+        }
+        return Max();
+    }
+
+    /**
+     * Forget all values recorded so far. Values recorded at the same time as
+     * the reset may be partly kept.
+     */
+    public void Reset(){
+        for(LongAdder b : buckets){ b.reset(); }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * @return one line summary: count, mean, median, 90th and 99th
+     * percentiles and maximum
+     */
+    public String Summary(){
+        return String.format("%-16s count %10d  mean %10s  p50 %10s  p90 %10s  p99 %10s  max %10s",
+                name, Count(), Format(Mean()), Format(Percentile(0.5)), Format(Percentile(0.9)), Format(Percentile(0.99)), Format(Max()));
+    }
+
+    private String Format(double value){
+        if(!unit.equals("ns")){ return String.format("%.0f %s", value, unit); }
+        if(value<1e3){ return String.format("%.0f ns", value); }
+        if(value<1e6){ return String.format("%.1f us", value/1e3); }
+        if(value<1e9){ return String.format("%.1f ms", value/1e6); }
+        return String.format("%.2f s", value/1e9);
+    }
+}
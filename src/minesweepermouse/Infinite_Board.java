@@ -0,0 +1,450 @@
+
+package minesweepermouse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A minefield with no edges, for the endless mode. Nothing is stored for the
+ * board as a whole: it is split into square chunks of CHUNK x CHUNK spaces,
+ * and the mines of each chunk are worked out when needed from a hash of the
+ * seed and the chunk's coordinates, each space being a mine with the same
+ * chance. The spaces around the start (0,0) never hold mines.
+ *
+ * A chunk is only built, with its mines and adjacent mine counts, once one
+ * of its spaces is opened or flagged, or a flood fill reaches it. Chunks are
+ * kept in a cache which forgets the least recently used chunk once it holds
+ * more than a set number. Chunks with nothing cleared or flagged can be
+ * rebuilt from the seed, so are simply dropped, while chunks which have been
+ * played on are written to a file first and read back when next needed.
+ * Reading a chunk back can happen while painting, through Peek, so errors
+ * reading or writing chunks are thrown as UncheckedIOException for the
+ * caller to report.
+ *
+ * The chunks written out are not limited in number, as each holds spaces the
+ * player has cleared or flagged which can't be worked out again. Each costs
+ * a 1KB file and about 50 bytes in the spilled set, for 4096 spaces played
+ * on, so a session has to play on millions of spaces before they add up to
+ * more than the chunks kept in memory.
+ *
+ * Spaces are addressed by row and column, which may be negative. Each space is
+ * stored in a byte laid out as in Board.
+ *
+ * @author cjcode975
+ */
+class Infinite_Board {
+
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK = 1<<CHUNK_BITS;
+    private static final int LOCAL_MASK = CHUNK-1;
+
+    //Below this density islands of spaces with no adjacent mines can grow
+    //without limit, and a single click could clear forever
+    static final double MIN_DENSITY = 0.15;
+    static final double MAX_DENSITY = 0.5;
+
+    //Number of chunks kept in memory by default, about 4MB
+    static final int DEFAULT_MAX_CHUNKS = 1024;
+
+    private final long seed;
+    private final double density;
+    private final int max_chunks;
+
+    private final Map<Long, Chunk> chunks;
+    //Chunks written out to spill_dir when they were dropped from the cache.
+    //Grows with the chunks played on, without limit (see above)
+    private final Set<Long> spilled = new HashSet<>();
+    private Path spill_dir = null;
+
+    private long num_cleared = 0;
+    private long nflagged = 0;
+    private long nspills = 0, nloads = 0, nbuilt = 0;
+    //Mine which was opened, if any
+    private boolean exploded = false;
+    private int exploded_row, exploded_col;
+
+    //Spaces cleared by the last call to Open or Chord, also used as the work
+    //queue of the flood fill
+    private int[] opened_row = new int[64];
+    private int[] opened_col = new int[64];
+    private int nopened = 0;
+
+    /**
+     * Spaces of one chunk, and whether any have been cleared or flagged
+     */
+    private static class Chunk {
+        final byte[] cells = new byte[CHUNK*CHUNK];
+        boolean modified = false;
+    }
+
+    /**
+     * @param Seed seed for placing the mines
+     * @param Density chance of each space being a mine
+     * @param Max_Chunks number of chunks to keep in memory
+     */
+    public Infinite_Board(long Seed, double Density, int Max_Chunks){
+        if(!(Density>=MIN_DENSITY && Density<=MAX_DENSITY)){
+            throw new IllegalArgumentException("Density must be between "+MIN_DENSITY+" and "+MAX_DENSITY);
+        }
+        if(Max_Chunks<9){ throw new IllegalArgumentException("Must keep at least 9 chunks"); }
+        seed = Seed;
+        density = Density;
+        max_chunks = Max_Chunks;
+
+        //Access order, so the eldest entry is the least recently used
+        chunks = new LinkedHashMap<Long, Chunk>(2*Max_Chunks, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest){
+                if(size()<=max_chunks){ return false; }
+                if(eldest.getValue().modified){ Spill(eldest.getKey(), eldest.getValue()); }
+                return true;
+            }
+        };
+    }
+
+    public Infinite_Board(long Seed, double Density){
+        this(Seed, Density, DEFAULT_MAX_CHUNKS);
+    }
+
+    private static long Key(int cr, int cc){
+        return ((long)cr<<32) | (cc & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the chunk holding a space, building or reading it back if it is
+     * not in memory. Building a chunk may drop another from the cache, so a
+     * chunk must not be held on to across calls.
+     */
+    private Chunk Chunk_At(int i, int j){
+        int cr = i>>CHUNK_BITS, cc = j>>CHUNK_BITS;
+        long key = Key(cr, cc);
+        Chunk chunk = chunks.get(key);
+        if(chunk==null){
+            chunk = Build(cr, cc);
+            if(spilled.remove(key)){ Load(key, chunk); }
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private static int Local(int i, int j){
+        return ((i & LOCAL_MASK)<<CHUNK_BITS) | (j & LOCAL_MASK);
+    }
+
+    /**
+     * @param i row position
+     * @param j column position
+     * @return the byte of a space, as laid out in Board, or -1 for a space
+     * which has never been played on. Chunks are not built just to look at,
+     * but chunks written to disk are read back.
+     * @throws UncheckedIOException if a chunk can't be read back
+     */
+    public int Peek(int i, int j){
+        long key = Key(i>>CHUNK_BITS, j>>CHUNK_BITS);
+        Chunk chunk = chunks.get(key);
+        if(chunk==null){
+            if(!spilled.contains(key)){ return -1; }
+            chunk = Chunk_At(i,j);
+        }
+        return chunk.cells[Local(i,j)] & 0xFF;
+    }
+
+    /**
+     * Build a chunk with its mines and adjacent mine counts, and nothing
+     * cleared or flagged
+     */
+    private Chunk Build(int cr, int cc){
+        nbuilt++;
+        //Mines of the chunk and the ring of spaces around it
+        long[][] rows = new long[3*CHUNK][];
+        for(int dr=-1; dr<=1; dr++){
+            for(int dc=-1; dc<=1; dc++){
+                long[] m = Chunk_Mines(cr+dr, cc+dc);
+                for(int r=0; r<CHUNK; r++){
+                    if(rows[(dr+1)*CHUNK+r]==null){ rows[(dr+1)*CHUNK+r] = new long[3]; }
+                    rows[(dr+1)*CHUNK+r][dc+1] = m[r];
+                }
+            }
+        }
+
+        Chunk chunk = new Chunk();
+        for(int r=0; r<CHUNK; r++){
+            for(int c=0; c<CHUNK; c++){
+                int count = 0;
+                for(int m=-1; m<=1; m++){
+                    long[] row = rows[CHUNK+r+m];
+                    for(int n=-1; n<=1; n++){
+                        if(m==0 && n==0){ continue; }
+                        int col = CHUNK+c+n;
+                        count += (int)(row[col>>CHUNK_BITS] >>> (col & LOCAL_MASK)) & 1;
+                    }
+                }
+                boolean mine = ((rows[CHUNK+r][1] >>> c) & 1)!=0;
+                chunk.cells[(r<<CHUNK_BITS)|c] = (byte)(mine ? Board.MINE : count);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Work out which spaces of a chunk are mines, from the seed and the
+     * chunk's coordinates alone
+     * @return bit c of entry r set if row r, column c of the chunk is a mine
+     */
+    private long[] Chunk_Mines(int cr, int cc){
+        long hash = new SplittableRandom(seed+cr*0x9E3779B97F4A7C15L).nextLong();
+        SplittableRandom random = new SplittableRandom(hash+cc*0xC2B2AE3D27D4EB4FL);
+        long[] rows = new long[CHUNK];
+        for(int r=0; r<CHUNK; r++){
+            for(int c=0; c<CHUNK; c++){
+                if(random.nextDouble()<density){ rows[r] |= 1L<<c; }
+            }
+        }
+
+        //Keep the start and its neighbours safe
+        for(int i=-1; i<=1; i++){
+            for(int j=-1; j<=1; j++){
+                if(i>>CHUNK_BITS==cr && j>>CHUNK_BITS==cc){
+                    rows[i & LOCAL_MASK] &= ~(1L<<(j & LOCAL_MASK));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Write the cleared and flagged spaces of a chunk dropped from the cache
+     * to a file, 2 bits per space as in Save_File
+     */
+    private void Spill(long key, Chunk chunk){
+        try{
+            if(spill_dir==null){ spill_dir = Files.createTempDirectory("minesweepermouse"); }
+            byte[] packed = new byte[CHUNK*CHUNK/4];
+            for(int k=0; k<CHUNK*CHUNK; k++){
+                packed[k>>2] |= ((chunk.cells[k] & (Board.CLEARED|Board.FLAGGED)) >> 5) << (2*(k&3));
+            }
+            Files.write(spill_dir.resolve(Long.toHexString(key)), packed);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not write chunk to disk", e);
+        }
+        spilled.add(key);
+        nspills++;
+    }
+
+    /**
+     * Read back the cleared and flagged spaces of a chunk written by Spill
+     */
+    private void Load(long key, Chunk chunk){
+        Path file = spill_dir.resolve(Long.toHexString(key));
+        try{
+            byte[] packed = Files.readAllBytes(file);
+            for(int k=0; k<CHUNK*CHUNK; k++){
+                int state = (packed[k>>2] >> (2*(k&3))) & 3;
+                chunk.cells[k] |= state << 5;
+            }
+            Files.delete(file);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not read chunk from disk", e);
+        }
+        chunk.modified = true;
+        nloads++;
+    }
+
+    /**
+     * Remove any chunks written to disk. The board can't be used afterwards.
+     */
+    public void Close(){
+        chunks.clear();
+        spilled.clear();
+        if(spill_dir==null){ return; }
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(spill_dir)){
+            for(Path f : files){ Files.deleteIfExists(f); }
+            Files.deleteIfExists(spill_dir);
+        }
+        catch(IOException e){
+            //Left in the temporary directory
+        }
+        spill_dir = null;
+    }
+
+    /**
+     * Clear a space, and if it has no adjacent mines its whole island. The
+     * flood fill builds chunks only as it reaches them.
+     * @param i row position
+     * @param j column position
+     * @return number of spaces cleared, which are given by Opened_Row and
+     * Opened_Col. Opening a mine clears nothing and ends the game, see
+     * Is_Exploded.
+     */
+    public int Open(int i, int j){
+        long start = System.nanoTime();
+        nopened = 0;
+        Flood(i,j);
+        Metrics.REVEAL_TIME.Record_Since(start);
+        Metrics.REVEAL_SIZE.Record(nopened);
+        return nopened;
+    }
+
+    /**
+     * Clear every unflagged neighbour of a cleared space, if as many of its
+     * neighbours are flagged as it has adjacent mines
+     * @param i row position
+     * @param j column position
+     * @return number of spaces cleared, as for Open
+     */
+    public int Chord(int i, int j){
+        nopened = 0;
+        int b = Chunk_At(i,j).cells[Local(i,j)];
+        if((b & Board.CLEARED)==0 || (b & Board.ADJ_MASK)==0){ return 0; }
+
+        int flagged = 0;
+        for(int m=-1; m<=1; m++){
+            for(int n=-1; n<=1; n++){
+                if(Is_Flagged(i+m, j+n)){ flagged++; }
+            }
+        }
+        if(flagged!=(b & Board.ADJ_MASK)){ return 0; }
+
+        long start = System.nanoTime();
+        for(int m=-1; m<=1; m++){
+            for(int n=-1; n<=1; n++){
+                Flood(i+m, j+n);
+            }
+        }
+        Metrics.CHORD_TIME.Record_Since(start);
+        Metrics.CHORD_SIZE.Record(nopened);
+        return nopened;
+    }
+
+    /**
+     * Clear a space and its island, adding to the spaces already opened
+     */
+    private void Flood(int i, int j){
+        int b = Chunk_At(i,j).cells[Local(i,j)];
+        if((b & (Board.CLEARED|Board.FLAGGED))!=0){ return; }
+        if((b & Board.MINE)!=0){
+            if(!exploded){
+                exploded = true;
+                exploded_row = i;
+                exploded_col = j;
+            }
+            return;
+        }
+
+        int head = nopened;
+        Push_Opened(i,j);
+        for(; head<nopened; head++){
+            int r = opened_row[head], c = opened_col[head];
+            if((Chunk_At(r,c).cells[Local(r,c)] & Board.ADJ_MASK)!=0){ continue; }
+
+            //No adjacent mines, so all neighbours are safe to clear
+            for(int m=-1; m<=1; m++){
+                for(int n=-1; n<=1; n++){
+                    if((Chunk_At(r+m,c+n).cells[Local(r+m,c+n)] & (Board.CLEARED|Board.FLAGGED))==0){
+                        Push_Opened(r+m, c+n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear a space and add it to the work queue of Flood
+     */
+    private void Push_Opened(int i, int j){
+        Chunk chunk = Chunk_At(i,j);
+        chunk.cells[Local(i,j)] |= Board.CLEARED;
+        chunk.modified = true;
+        num_cleared++;
+        if(nopened==opened_row.length){
+            opened_row = Arrays.copyOf(opened_row, 2*nopened);
+            opened_col = Arrays.copyOf(opened_col, 2*nopened);
+        }
+        opened_row[nopened] = i;
+        opened_col[nopened++] = j;
+    }
+
+    public int Opened_Row(int n){ return opened_row[n]; }
+
+    public int Opened_Col(int n){ return opened_col[n]; }
+
+    /**
+     * Flag a space if unflagged, or unflag it if flagged. Cleared spaces can't
+     * be flagged.
+     * @param i row position
+     * @param j column position
+     * @return true if the space is flagged after the call
+     */
+    public boolean Toggle_Flag(int i, int j){
+        Chunk chunk = Chunk_At(i,j);
+        int k = Local(i,j);
+        if((chunk.cells[k] & Board.CLEARED)!=0){ return false; }
+
+        chunk.cells[k] ^= Board.FLAGGED;
+        chunk.modified = true;
+        if((chunk.cells[k] & Board.FLAGGED)!=0){
+            nflagged++;
+            return true;
+        }
+        nflagged--;
+        return false;
+    }
+
+    public boolean Is_Cleared(int i, int j){
+        int b = Peek(i,j);
+        return b>=0 && (b & Board.CLEARED)!=0;
+    }
+
+    public boolean Is_Flagged(int i, int j){
+        int b = Peek(i,j);
+        return b>=0 && (b & Board.FLAGGED)!=0;
+    }
+
+    /**
+     * @return true once a mine has been opened
+     */
+    public boolean Is_Exploded(){ return exploded; }
+
+    public int Exploded_Row(){ return exploded_row; }
+
+    public int Exploded_Col(){ return exploded_col; }
+
+    public long Seed(){ return seed; }
+
+    public double Density(){ return density; }
+
+    public long Num_Cleared(){ return num_cleared; }
+
+    public long Num_Flagged(){ return nflagged; }
+
+    /**
+     * @return number of chunks in memory
+     */
+    public int Num_Chunks(){ return chunks.size(); }
+
+    /**
+     * @return number of chunks written to disk so far
+     */
+    public long Num_Spills(){ return nspills; }
+
+    /**
+     * @return number of chunks read back from disk so far
+     */
+    public long Num_Loads(){ return nloads; }
+
+    /**
+     * @return number of chunks built from the seed so far
+     */
+    public long Num_Built(){ return nbuilt; }
+}
@@ -0,0 +1,180 @@
+
+package minesweepermouse;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Component drawing a window onto an Infinite_Board. As the board has no
+ * edges it can't sit in a scroll pane: instead the component shows a fixed
+ * number of spaces and keeps track of which row and column are at its top
+ * left, moved with Scroll.
+ *
+ * Tiles are copied from the same atlas as Minefield. Spaces in chunks which
+ * have never been played on are drawn covered without building the chunk.
+ * Painting can read a chunk back from disk, so it can fail. The spaces which
+ * can't be read are drawn covered, and the error is passed on to be shown
+ * once painting is done, see On_Error.
+ *
+ * @author cjcode975
+ */
+class Infinite_Field extends JComponent {
+
+    private final Infinite_Board board;
+    private final int tile_size;
+    private final BufferedImage atlas;
+    //Space shown in the top left corner
+    private int top_row, left_col;
+    //Told of errors reading the board while painting, and the first error of
+    //the paint in progress
+    private Consumer<UncheckedIOException> on_error = null;
+    private UncheckedIOException paint_error = null;
+
+    /**
+     * @param Board_In board to display
+     * @param View_Rows number of rows of spaces shown
+     * @param View_Cols number of columns of spaces shown
+     * @param Tile_Size width and height of each space in pixels
+     * @param Tile_Font font to draw numbers and markers with
+     */
+    public Infinite_Field(Infinite_Board Board_In, int View_Rows, int View_Cols, int Tile_Size, Font Tile_Font){
+        board = Board_In;
+        tile_size = Tile_Size;
+        atlas = Minefield.Render_Atlas(Tile_Font, tile_size);
+        setOpaque(true);
+        Dimension size = new Dimension(View_Cols*tile_size, View_Rows*tile_size);
+        setPreferredSize(size);
+        setSize(size);
+    }
+
+    /**
+     * Paint the spaces overlapping the area to be repainted
+     * @param g graphics to paint with
+     */
+    @Override
+    protected void paintComponent(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        if(clip==null){ clip = new Rectangle(0, 0, getWidth(), getHeight()); }
+
+        int r0 = clip.y/tile_size, r1 = (clip.y+clip.height-1)/tile_size;
+        int c0 = clip.x/tile_size, c1 = (clip.x+clip.width-1)/tile_size;
+        for(int r=r0; r<=r1; r++){
+            for(int c=c0; c<=c1; c++){
+                int sx = Tile(top_row+r, left_col+c)*tile_size;
+                int x = c*tile_size, y = r*tile_size;
+                g.drawImage(atlas, x, y, x+tile_size, y+tile_size, sx, 0, sx+tile_size, tile_size, null);
+            }
+        }
+
+        //Report outside of painting, as the handler may show a dialog
+        if(paint_error!=null){
+            final UncheckedIOException e = paint_error;
+            paint_error = null;
+            if(on_error!=null){
+                SwingUtilities.invokeLater(new Runnable(){
+                    @Override
+                    public void run(){ on_error.accept(e); }
+                });
+            }
+        }
+    }
+
+    /**
+     * @param Handler told of errors reading a chunk back from disk while
+     * painting, on the event dispatch thread after the paint
+     */
+    public void On_Error(Consumer<UncheckedIOException> Handler){
+        on_error = Handler;
+    }
+
+    /**
+     * @return atlas tile showing the current state of a space
+     */
+    private int Tile(int i, int j){
+        if(board.Is_Exploded() && i==board.Exploded_Row() && j==board.Exploded_Col()){ return Minefield.MINE; }
+        int b;
+        try{
+            b = board.Peek(i,j);
+        }
+        catch(UncheckedIOException e){
+            if(paint_error==null){ paint_error = e; }
+            return Minefield.COVERED;
+        }
+        if(b<0){ return Minefield.COVERED; }
+        if((b & Board.CLEARED)!=0){ return b & Board.ADJ_MASK; }
+        if((b & Board.FLAGGED)!=0){ return Minefield.FLAG; }
+        return Minefield.COVERED;
+    }
+
+    /**
+     * Move the view
+     * @param rows number of rows to move down, negative to move up
+     * @param cols number of columns to move right, negative to move left
+     */
+    public void Scroll(int rows, int cols){
+        top_row += rows;
+        left_col += cols;
+        repaint();
+    }
+
+    /**
+     * Move the view so that a space is in the centre
+     * @param i row position
+     * @param j column position
+     */
+    public void Centre_On(int i, int j){
+        top_row = i-getHeight()/tile_size/2;
+        left_col = j-getWidth()/tile_size/2;
+        repaint();
+    }
+
+    /**
+     * Repaint only the tile of a single space, if it is in view
+     * @param i row position
+     * @param j column position
+     */
+    public void Repaint_Space(int i, int j){
+        repaint((j-left_col)*tile_size, (i-top_row)*tile_size, tile_size, tile_size);
+    }
+
+    /**
+     * Repaint the spaces cleared by the last call to Open or Chord, limiting
+     * the repaint to the rectangle which contains them
+     * @param n number of spaces cleared
+     */
+    public void Repaint_Opened(int n){
+        if(n==0){ return; }
+        int r0 = Integer.MAX_VALUE, r1 = Integer.MIN_VALUE, c0 = Integer.MAX_VALUE, c1 = Integer.MIN_VALUE;
+        for(int k=0; k<n; k++){
+            int r = board.Opened_Row(k), c = board.Opened_Col(k);
+            r0 = Math.min(r0, r); r1 = Math.max(r1, r);
+            c0 = Math.min(c0, c); c1 = Math.max(c1, c);
+        }
+        //Keep within the view, so far away floods don't overflow
+        r0 = Math.max(r0, top_row); r1 = Math.min(r1, top_row+getHeight()/tile_size);
+        c0 = Math.max(c0, left_col); c1 = Math.min(c1, left_col+getWidth()/tile_size);
+        if(r0>r1 || c0>c1){ return; }
+        repaint((c0-left_col)*tile_size, (r0-top_row)*tile_size, (c1-c0+1)*tile_size, (r1-r0+1)*tile_size);
+    }
+
+    public int Tile_Size(){ return tile_size; }
+
+    /**
+     * @param y vertical position in pixels
+     * @return row at that position
+     */
+    public int Row_At(int y){ return top_row+Math.floorDiv(y, tile_size); }
+
+    /**
+     * @param x horizontal position in pixels
+     * @return column at that position
+     */
+    public int Col_At(int x){ return left_col+Math.floorDiv(x, tile_size); }
+}
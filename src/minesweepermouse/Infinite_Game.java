@@ -0,0 +1,278 @@
+
+package minesweepermouse;
+
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+
+/**
+ * Game of minesweeper on a board with no edges. There is nothing to win: the
+ * aim is to clear as many spaces as possible before hitting a mine. The game
+ * starts with the space at (0,0) cleared.
+ *
+ * Clicking works as in Game. The view is moved with the arrow keys, the mouse
+ * wheel (with shift held to move sideways) or by dragging with the middle
+ * mouse button.
+ *
+ * @author cjcode975
+ */
+class Infinite_Game {
+
+    private final Infinite_Board board;
+    private final Infinite_Field field;
+
+    //GUI details
+    private final JFrame window = new JFrame("Minesweeper - Endless");
+    private final JPanel display = new JPanel();
+    private final JTextField text1 = new JTextField("");
+    private final JTextField text2 = new JTextField("# Spaces Cleared:");
+    private final Font game_font = new Font("Arial", Font.PLAIN, 12);
+    private final int button_size = 25;
+    private boolean over = false;
+
+    /**
+     * Create a new endless game with a random seed
+     * @param Density chance of each space being a mine
+     */
+    public Infinite_Game(double Density, Point pos){
+        this(new Infinite_Board(new SplittableRandom().nextLong(), Density), pos);
+    }
+
+    /**
+     * @param Board_In board to play
+     */
+    public Infinite_Game(Infinite_Board Board_In, Point pos){
+        board = Board_In;
+
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        int view_cols = Math.min(40, screen.width/button_size-2);
+        int view_rows = Math.min(24, screen.height/button_size-9);
+        field = new Infinite_Field(board, view_rows, view_cols, button_size, game_font);
+        int view_width = view_cols*button_size, view_height = view_rows*button_size;
+        field.setBounds(button_size, button_size, view_width, view_height);
+
+        //Painting can read chunks back from disk, which can fail
+        field.On_Error(new Consumer<UncheckedIOException>(){
+            @Override
+            public void accept(UncheckedIOException e){ Disk_Error(e); }
+        });
+
+        Field_Listener listener = new Field_Listener();
+        field.addMouseListener(listener);
+        field.addMouseMotionListener(listener);
+        field.addMouseWheelListener(listener);
+        Bind_Scroll_Key(KeyEvent.VK_UP, "up", -1, 0);
+        Bind_Scroll_Key(KeyEvent.VK_DOWN, "down", 1, 0);
+        Bind_Scroll_Key(KeyEvent.VK_LEFT, "left", 0, -1);
+        Bind_Scroll_Key(KeyEvent.VK_RIGHT, "right", 0, 1);
+
+        //Window to hold the game. Closing it removes any chunks written to disk
+        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        window.addWindowListener(new WindowAdapter(){
+            @Override
+            public void windowClosing(WindowEvent we) {
+                board.Close();
+            }
+        });
+        window.setLocation(pos);
+        window.setLayout(null);
+        window.setResizable(false);
+        window.setSize(view_width+2*button_size, view_height+7*button_size);
+
+        display.setLayout(null);
+        display.setBounds(0, 0, view_width+2*button_size, view_height+7*button_size);
+        window.add(display);
+        display.add(field);
+
+        //Field to keep track of the spaces cleared
+        text1.setBounds(view_width-2*button_size, view_height+2*button_size, 3*button_size, button_size);
+        text1.setEditable(false);
+        text1.setHorizontalAlignment(JTextField.CENTER);
+        text1.setFont(game_font);
+        display.add(text1);
+
+        text2.setBounds(button_size, view_height+2*button_size, 5*button_size, button_size);
+        text2.setEditable(false);
+        text2.setHorizontalAlignment(JTextField.CENTER);
+        text2.setFont(game_font);
+        display.add(text2);
+
+        //Button to start a new game
+        JButton end_game = new JButton("New Game");
+        end_game.setMargin(new Insets(5,5,5,5));
+        end_game.setFont(game_font);
+        end_game.setBounds(button_size, view_height+4*button_size, view_width/2, button_size);
+        end_game.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                board.Close();
+                New_Game ng = new New_Game(window.getLocationOnScreen());
+                window.dispose();
+            }
+
+        });
+        display.add(end_game);
+
+        //Button to return the view to where the game started
+        JButton home = new JButton("Back to Start");
+        home.setMargin(new Insets(5,5,5,5));
+        home.setFont(game_font);
+        home.setBounds(button_size+view_width/2, view_height+4*button_size, view_width-view_width/2, button_size);
+        home.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                field.Centre_On(0,0);
+            }
+
+        });
+        display.add(home);
+
+        //Start game, with the start already cleared
+        board.Open(0,0);
+        field.Centre_On(0,0);
+        text1.setText(Long.toString(board.Num_Cleared()));
+        window.setVisible(true);
+    }
+
+    /**
+     * Move the view when an arrow key is pressed
+     */
+    private void Bind_Scroll_Key(int key, String name, final int rows, final int cols){
+        field.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+        field.getActionMap().put(name, new AbstractAction(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                field.Scroll(rows, cols);
+            }
+        });
+    }
+
+    /**
+     * Act on the spaces cleared by the last call to Open or Chord, ending the
+     * game if a mine was opened
+     * @param n number of spaces cleared
+     */
+    private void After_Open(int n){
+        field.Repaint_Opened(n);
+        text1.setText(Long.toString(board.Num_Cleared()));
+        if(board.Is_Exploded()){
+            over = true;
+            field.Repaint_Space(board.Exploded_Row(), board.Exploded_Col());
+            JOptionPane.showMessageDialog(window, "You hit a mine after clearing "+board.Num_Cleared()+" spaces", "Minesweeper", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * End the game after a chunk couldn't be written to or read from disk, as
+     * the spaces played on it are lost. Only the first error is shown.
+     * @param e the error
+     */
+    private void Disk_Error(UncheckedIOException e){
+        if(over){ return; }
+        over = true;
+        JOptionPane.showMessageDialog(window, e.getMessage()+": "+e.getCause().getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Listener for clicking on spaces, which works as ClearenceListener in
+     * Game, and for moving the view with the mouse
+     */
+    private class Field_Listener extends MouseAdapter {
+
+        private boolean leftclicked = false;
+        private boolean rightclicked = false;
+        //Space the current click started on
+        private int row, col;
+        //Last position while dragging the view
+        private int drag_x, drag_y;
+
+        @Override
+        public void mousePressed(MouseEvent me) {
+            if(SwingUtilities.isMiddleMouseButton(me)){
+                drag_x = me.getX();
+                drag_y = me.getY();
+                return;
+            }
+            if(!leftclicked && !rightclicked){
+                row = field.Row_At(me.getY());
+                col = field.Col_At(me.getX());
+            }
+            if(SwingUtilities.isLeftMouseButton(me)){ leftclicked = true; }
+            if(SwingUtilities.isRightMouseButton(me)){ rightclicked = true; }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent me) {
+            if(!SwingUtilities.isMiddleMouseButton(me)){ return; }
+            int tile = field.Tile_Size();
+            int rows = (drag_y-me.getY())/tile, cols = (drag_x-me.getX())/tile;
+            if(rows!=0 || cols!=0){
+                field.Scroll(rows, cols);
+                drag_y -= rows*tile;
+                drag_x -= cols*tile;
+            }
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent me) {
+            if(me.isShiftDown()){ field.Scroll(0, 3*me.getWheelRotation()); }
+            else{ field.Scroll(3*me.getWheelRotation(), 0); }
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent me) {
+            if(SwingUtilities.isMiddleMouseButton(me)){ return; }
+            boolean left = leftclicked, right = rightclicked;
+            leftclicked = false;
+            rightclicked = false;
+
+            //Moving off the space before releasing cancels the click
+            if(over || field.Row_At(me.getY())!=row || field.Col_At(me.getX())!=col){ return; }
+
+            try{
+                //Both buttons - clear the neighbours of a number whose mines
+                //are all flagged
+                if(left && right){
+                    After_Open(board.Chord(row,col));
+                }
+
+                //Left click - clear the space if not flagged
+                else if(left){
+                    if(board.Is_Flagged(row,col)){ return; }
+                    After_Open(board.Open(row,col));
+                }
+
+                //Right click - flag or unflag the space
+                else if(right){
+                    board.Toggle_Flag(row,col);
+                    field.Repaint_Space(row,col);
+                }
+            }
+            catch(UncheckedIOException e){
+                Disk_Error(e);
+            }
+        }
+    }
+}
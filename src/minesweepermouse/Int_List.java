@@ -0,0 +1,107 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints, used for lists of spaces and work queues without
+ * boxing each entry. The backing array is kept when the list is cleared, so a
+ * list which is reused does not allocate once it has grown large enough.
+ *
+ * @author cjcode975
+ */
+class Int_List {
+
+    private int[] items;
+    private int size = 0;
+
+    public Int_List(){
+        this(16);
+    }
+
+    /**
+     * @param Capacity number of entries to make room for up front
+     */
+    public Int_List(int Capacity){
+        items = new int[Math.max(1, Capacity)];
+    }
+
+    /**
+     * Add an entry to the end of the list
+     * @param value entry to add
+     */
+    public void Add(int value){
+        if(size==items.length){
+            items = Arrays.copyOf(items, 2*items.length);
+        }
+        items[size++] = value;
+    }
+
+    /**
+     * @param n position in the list
+     * @return entry at that position
+     */
+    public int Get(int n){
+        if(n>=size){ throw new IndexOutOfBoundsException("Index "+n+" of "+size); }
+        return items[n];
+    }
+
+    /**
+     * Replace an entry of the list
+     * @param n position in the list
+     * @param value new entry
+     */
+    public void Set(int n, int value){
+        if(n>=size){ throw new IndexOutOfBoundsException("Index "+n+" of "+size); }
+        items[n] = value;
+    }
+
+    /**
+     * Remove and return the last entry, to use the list as a stack
+     * @return the last entry
+     */
+    public int Remove_Last(){
+        if(size==0){ throw new IndexOutOfBoundsException("List is empty"); }
+        return items[--size];
+    }
+
+    /**
+     * Remove an entry by moving the last entry into its place, which does not
+     * keep the order of the list
+     * @param n position in the list
+     */
+    public void Swap_Remove(int n){
+        if(n>=size){ throw new IndexOutOfBoundsException("Index "+n+" of "+size); }
+        items[n] = items[--size];
+    }
+
+    /**
+     * Remove the entries from one position to another, moving those after
+     * them down to close the gap
+     * @param from position of the first entry removed
+     * @param to position after the last entry removed
+     */
+    public void Remove_Range(int from, int to){
+        if(from<0 || from>to || to>size){ throw new IndexOutOfBoundsException("Range "+from+" to "+to+" of "+size); }
+        System.arraycopy(items, to, items, from, size-to);
+        size -= to-from;
+    }
+
+    /**
+     * Remove every entry from a position on
+     * @param n number of entries to keep
+     */
+    public void Truncate(int n){
+        if(n<0 || n>size){ throw new IndexOutOfBoundsException("Index "+n+" of "+size); }
+        size = n;
+    }
+
+    public int Size(){ return size; }
+
+    public boolean Is_Empty(){ return size==0; }
+
+    /**
+     * Empty the list, keeping the space already allocated
+     */
+    public void Clear(){ size = 0; }
+}
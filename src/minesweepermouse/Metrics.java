@@ -0,0 +1,179 @@
+
+package minesweepermouse;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Histograms of how long the engine's hot paths take, so that a game which
+ * stutters can be looked into. Times are in nanoseconds from System.nanoTime
+ * and recording is cheap enough to be left on all the time.
+ *
+ * The histograms are registered with the platform MBean server under
+ * "minesweepermouse:type=Metrics" by Start, which also writes them to a file
+ * every few seconds if the system property minesweepermouse.metrics.file is
+ * set (interval in seconds from minesweepermouse.metrics.interval, default
+ * 10).
+ *
+ * @author cjcode975
+ */
+final class Metrics implements Metrics_MBean {
+
+    //Board generation phases
+    static final Histogram PLACE_MINES = new Histogram("Place_Mines", "ns");
+    static final Histogram ADJ_MINES = new Histogram("Adj_Mines", "ns");
+    static final Histogram ISLANDS = new Histogram("Islands", "ns");
+    //Clearing a space and its island
+    static final Histogram REVEAL_TIME = new Histogram("Reveal time", "ns");
+    static final Histogram REVEAL_SIZE = new Histogram("Reveal size", "spaces");
+    //Clearing the neighbours of a number
+    static final Histogram CHORD_TIME = new Histogram("Chord time", "ns");
+    static final Histogram CHORD_SIZE = new Histogram("Chord size", "spaces");
+    //Time the event dispatch thread spends on each mouse or key event
+    static final Histogram EVENT_TIME = new Histogram("EDT input event", "ns");
+
+    private static final Histogram[] ALL = {
+        PLACE_MINES, ADJ_MINES, ISLANDS, REVEAL_TIME, REVEAL_SIZE, CHORD_TIME, CHORD_SIZE, EVENT_TIME
+    };
+
+    static final String NAME = "minesweepermouse:type=Metrics";
+    private static boolean started = false;
+
+    private Metrics(){
+    }
+
+    /**
+     * Register the MBean and start writing to a file if asked to. Only the
+     * first call does anything.
+     */
+    static synchronized void Start(){
+        if(started){ return; }
+        started = true;
+
+        try{
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new Metrics(), Metrics_MBean.class, true), new ObjectName(NAME));
+        }
+        catch(JMException e){
+            System.err.println("Could not register metrics: "+e.getMessage());
+        }
+
+        String file = System.getProperty("minesweepermouse.metrics.file");
+        if(file!=null){
+            long interval = Long.getLong("minesweepermouse.metrics.interval", 10);
+            Start_Dump(Paths.get(file), interval);
+        }
+    }
+
+    /**
+     * Write the histograms to a file at a fixed interval, and once more when
+     * the program exits
+     */
+    private static void Start_Dump(final Path file, long interval_s){
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+            @Override
+            public Thread newThread(Runnable r){
+                Thread t = new Thread(r, "Metrics dump");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        Runnable dump = new Runnable(){
+            @Override
+            public void run(){ Dump(file); }
+        };
+        timer.scheduleAtFixedRate(dump, interval_s, interval_s, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(dump, "Metrics dump"));
+    }
+
+    /**
+     * Write the histograms to a file, replacing it
+     */
+    static synchronized void Dump(Path file){
+        try{
+            Path tmp = file.resolveSibling(file.getFileName()+".tmp");
+            Files.write(tmp, ("# "+new Date()+"\n"+Report_All()).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e){
+            System.err.println("Could not write metrics: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Time every mouse and key event handled by the event dispatch thread,
+     * from the start to the end of its dispatch
+     */
+    static void Watch_Events(){
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue(){
+            @Override
+            protected void dispatchEvent(AWTEvent event){
+                if(!(event instanceof InputEvent)){
+                    super.dispatchEvent(event);
+                    return;
+                }
+                long start = System.nanoTime();
+                super.dispatchEvent(event);
+                EVENT_TIME.Record_Since(start);
+            }
+        });
+    }
+
+    /**
+     * @return every histogram, one per line
+     */
+    static String Report_All(){
+        StringBuilder sb = new StringBuilder();
+        for(Histogram h : ALL){ sb.append(h.Summary()).append('\n'); }
+        return sb.toString();
+    }
+
+    @Override
+    public Snapshot getPlace_Mines(){ return new Snapshot(PLACE_MINES); }
+
+    @Override
+    public Snapshot getAdj_Mines(){ return new Snapshot(ADJ_MINES); }
+
+    @Override
+    public Snapshot getIslands(){ return new Snapshot(ISLANDS); }
+
+    @Override
+    public Snapshot getReveal_Time(){ return new Snapshot(REVEAL_TIME); }
+
+    @Override
+    public Snapshot getReveal_Size(){ return new Snapshot(REVEAL_SIZE); }
+
+    @Override
+    public Snapshot getChord_Time(){ return new Snapshot(CHORD_TIME); }
+
+    @Override
+    public Snapshot getChord_Size(){ return new Snapshot(CHORD_SIZE); }
+
+    @Override
+    public Snapshot getEvent_Time(){ return new Snapshot(EVENT_TIME); }
+
+    @Override
+    public String Report(){ return Report_All(); }
+
+    @Override
+    public void Reset(){
+        for(Histogram h : ALL){ h.Reset(); }
+    }
+}
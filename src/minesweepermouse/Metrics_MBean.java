@@ -0,0 +1,69 @@
+
+package minesweepermouse;
+
+/**
+ * Management interface of Metrics, registered as an MXBean so that the
+ * histograms can be watched from JConsole or any JMX client. The getter names
+ * follow the JavaBeans convention JMX needs, each giving one attribute, and
+ * JMX only accepts public interfaces.
+ *
+ * @author cjcode975
+ */
+public interface Metrics_MBean {
+
+    Snapshot getPlace_Mines();
+
+    Snapshot getAdj_Mines();
+
+    Snapshot getIslands();
+
+    Snapshot getReveal_Time();
+
+    Snapshot getReveal_Size();
+
+    Snapshot getChord_Time();
+
+    Snapshot getChord_Size();
+
+    Snapshot getEvent_Time();
+
+    /**
+     * @return all histograms, one per line
+     */
+    String Report();
+
+    /**
+     * Forget everything recorded so far
+     */
+    void Reset();
+
+    /**
+     * Summary of a histogram at one moment, shown by JMX clients as a
+     * composite of its getters
+     */
+    class Snapshot {
+        private final long count, p50, p90, p99, max;
+        private final double mean;
+
+        Snapshot(Histogram h){
+            count = h.Count();
+            mean = h.Mean();
+            p50 = h.Percentile(0.5);
+            p90 = h.Percentile(0.9);
+            p99 = h.Percentile(0.99);
+            max = h.Max();
+        }
+
+        public long getCount(){ return count; }
+
+        public double getMean(){ return mean; }
+
+        public long getP50(){ return p50; }
+
+        public long getP90(){ return p90; }
+
+        public long getP99(){ return p99; }
+
+        public long getMax(){ return max; }
+    }
+}
@@ -0,0 +1,354 @@
+
+package minesweepermouse;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+
+/**
+ * Component drawing the whole minefield of a board. Replaces a grid of one
+ * button per space: each space is painted as a tile copied from a strip of
+ * pre-rendered tiles, and mouse positions are mapped back to spaces with
+ * Row_At and Col_At.
+ *
+ * Only the tiles inside the area being repainted are drawn, so when the
+ * minefield sits in a scroll pane the cost of painting depends on the size of
+ * the viewport rather than the size of the board.
+ *
+ * Hex boards are drawn with odd rows shifted half a space to the right, and
+ * layered boards with each layer below the last and a line between them.
+ *
+ * @author cjcode975
+ */
+class Minefield extends JComponent {
+
+    //Positions of the tiles in the atlas. Tiles 0 to Topology.MAX_DEGREE are
+    //cleared spaces with that many adjacent mines
+    static final int COVERED = Topology.MAX_DEGREE+1;
+    static final int FLAG = COVERED+1;
+    static final int MINE = COVERED+2;
+    static final int NTILES = COVERED+3;
+
+    //Colours of the adjacent mine counts 1-10
+    private static final Color[] NUMBER_COLOURS = {
+        new Color(0,0,255), new Color(0,128,0), new Color(255,0,0), new Color(0,0,128),
+        new Color(128,0,0), new Color(0,128,128), Color.BLACK, Color.GRAY,
+        new Color(128,0,128), new Color(255,128,0)
+    };
+
+    //Shading of uncleared spaces by their chance of being a mine, from
+    //certainly safe to certainly a mine
+    private static final int RISK_LEVELS = 11;
+    private static final Color[] RISK_COLOURS = new Color[RISK_LEVELS];
+    static{
+        RISK_COLOURS[0] = new Color(0,160,0,90);
+        for(int r=1; r<RISK_LEVELS; r++){
+            RISK_COLOURS[r] = new Color(255,0,0,20+150*r/(RISK_LEVELS-1));
+        }
+    }
+
+    //Limits on zooming, in pixels per space
+    static final int MIN_TILE_SIZE = 4;
+    static final int MAX_TILE_SIZE = 60;
+
+    private final Board board;
+    private final boolean hex;
+    private final Font tile_font;
+    private int tile_size;
+    //All tiles drawn side by side in a single image
+    private BufferedImage atlas;
+    //Mine which was cleared to lose the game, -1 if none
+    private int exploded = -1;
+    //Space suggested by a hint, -1 if none, and whether it is a mine
+    private int hint = -1;
+    private boolean hint_mine = false;
+    //Chances of each space being a mine, shown over the minefield, or null
+    private Probability_Engine risk = null;
+
+    /**
+     * Create a minefield display for a board
+     * @param Board_In board to display
+     * @param Tile_Size width and height of each space in pixels
+     * @param Tile_Font font to draw numbers and markers with
+     */
+    public Minefield(Board Board_In, int Tile_Size, Font Tile_Font){
+        board = Board_In;
+        hex = board.Topology().Type()==Topology.HEX;
+        tile_font = Tile_Font;
+        setOpaque(true);
+        Set_Tile_Size(Tile_Size);
+    }
+
+    /**
+     * Change the size each space is drawn at, to zoom in or out
+     * @param Tile_Size width and height of each space in pixels
+     */
+    public void Set_Tile_Size(int Tile_Size){
+        tile_size = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, Tile_Size));
+        atlas = Render_Atlas(tile_font, tile_size);
+
+        int width = tile_size*board.Cols()+(hex && board.Rows()>1 ? tile_size/2 : 0);
+        Dimension size = new Dimension(width, tile_size*board.Rows());
+        setPreferredSize(size);
+        setSize(size);
+        revalidate();
+        repaint();
+    }
+
+    public int Tile_Size(){ return tile_size; }
+
+    /**
+     * Draw every kind of tile once, so that painting the minefield is only a
+     * matter of copying images
+     * @param font font to draw numbers and markers with, at 25 pixel tiles
+     * @param tile_size width and height of each tile in pixels
+     * @return image containing all tiles in a row, tile t starting at
+     * t*tile_size
+     */
+    static BufferedImage Render_Atlas(Font font, int tile_size){
+        //Scale the font with the tiles, keeping the original size at 25 pixels
+        font = font.deriveFont(font.getSize2D()*tile_size/25f);
+        BufferedImage img = new BufferedImage(NTILES*tile_size, tile_size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font.deriveFont(Font.BOLD));
+
+        for(int t=0; t<NTILES; t++){
+            int x = t*tile_size;
+
+            if(t<COVERED){
+                //Cleared space, flat with a thin grid line
+                g.setColor(new Color(224,224,224));
+                g.fillRect(x, 0, tile_size, tile_size);
+                g.setColor(Color.GRAY);
+                g.drawRect(x, 0, tile_size-1, tile_size-1);
+                if(t>0){ Draw_Label(g, Integer.toString(t), x, tile_size, NUMBER_COLOURS[t-1]); }
+            }
+            else{
+                //Uncleared space, raised
+                g.setColor(new Color(192,192,192));
+                g.fillRect(x, 0, tile_size, tile_size);
+                g.setColor(Color.WHITE);
+                g.fillRect(x, 0, tile_size-1, 2);
+                g.fillRect(x, 0, 2, tile_size-1);
+                g.setColor(Color.GRAY);
+                g.fillRect(x+1, tile_size-2, tile_size-1, 2);
+                g.fillRect(x+tile_size-2, 1, 2, tile_size-1);
+
+                if(t==FLAG){ Draw_Label(g, "F", x, tile_size, Color.RED); }
+                else if(t==MINE){ Draw_Label(g, "M", x, tile_size, Color.BLACK); }
+            }
+        }
+
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Draw text centred on a tile of the atlas
+     */
+    private static void Draw_Label(Graphics2D g, String label, int x, int tile_size, Color colour){
+        FontMetrics fm = g.getFontMetrics();
+        g.setColor(colour);
+        g.drawString(label, x+(tile_size-fm.stringWidth(label))/2, (tile_size-fm.getHeight())/2+fm.getAscent());
+    }
+
+    /**
+     * Paint the spaces overlapping the area to be repainted
+     * @param g graphics to paint with
+     */
+    @Override
+    protected void paintComponent(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        if(clip==null){ clip = new Rectangle(0, 0, getWidth(), getHeight()); }
+
+        if(hex){
+            //Shifted rows leave a gap at one end
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        }
+
+        int r0 = Math.max(0, clip.y/tile_size);
+        int r1 = Math.min(board.Rows()-1, (clip.y+clip.height-1)/tile_size);
+
+        for(int i=r0; i<=r1; i++){
+            int shift = Shift(i);
+            int c0 = Math.max(0, Math.floorDiv(clip.x-shift, tile_size));
+            int c1 = Math.min(board.Cols()-1, Math.floorDiv(clip.x+clip.width-1-shift, tile_size));
+            for(int j=c0; j<=c1; j++){
+                int sx = Tile(i,j)*tile_size;
+                int x = j*tile_size+shift, y = i*tile_size;
+                g.drawImage(atlas, x, y, x+tile_size, y+tile_size, sx, 0, sx+tile_size, tile_size, null);
+            }
+
+            //Shade uncleared spaces by how likely they are to be a mine
+            if(risk!=null){
+                for(int j=c0; j<=c1; j++){
+                    if(Tile(i,j)!=COVERED){ continue; }
+                    double p = risk.Probability(board.Index(i,j));
+                    if(p<0){ continue; }
+                    int level = p==0 ? 0 : 1+(int)Math.min(RISK_LEVELS-2, p*(RISK_LEVELS-1));
+                    g.setColor(RISK_COLOURS[level]);
+                    g.fillRect(j*tile_size+shift, i*tile_size, tile_size, tile_size);
+                }
+            }
+        }
+
+        //Separate the layers of a layered board
+        int layer_rows = board.Topology().Layer_Rows();
+        g.setColor(Color.BLACK);
+        for(int i=layer_rows*Math.max(1, (r0+layer_rows-1)/layer_rows); i<=r1; i+=layer_rows){
+            g.fillRect(clip.x, i*tile_size-1, clip.width, 2);
+        }
+
+        //Outline the hinted space, green if safe and red if a mine
+        if(hint>=0){
+            g.setColor(hint_mine ? Color.RED : new Color(0,160,0));
+            Rectangle r = Tile_Bounds(board.Row(hint), board.Col(hint));
+            g.drawRect(r.x+1, r.y+1, tile_size-3, tile_size-3);
+            g.drawRect(r.x+2, r.y+2, tile_size-5, tile_size-5);
+        }
+    }
+
+    /**
+     * Highlight a space suggested by a hint, replacing any previous hint
+     * @param k index of the space, or -1 to remove the highlight
+     * @param mine true if the space is a mine, false if safe
+     */
+    public void Show_Hint(int k, boolean mine){
+        if(hint>=0){ Repaint_Space(board.Row(hint), board.Col(hint)); }
+        hint = k;
+        hint_mine = mine;
+        if(hint>=0){ Repaint_Space(board.Row(hint), board.Col(hint)); }
+    }
+
+    /**
+     * Shade uncleared spaces by their chance of being a mine
+     * @param Risk probabilities to show, or null to stop showing them
+     */
+    public void Show_Risk(Probability_Engine Risk){
+        risk = Risk;
+        repaint();
+    }
+
+    /**
+     * @param i row position
+     * @param j column position
+     * @return atlas tile showing the current state of the space
+     */
+    private int Tile(int i, int j){
+        if(board.Is_Cleared(i,j)){ return board.Adj(i,j); }
+        if(board.Index(i,j)==exploded){ return MINE; }
+        if(board.Is_Flagged(i,j)){ return FLAG; }
+        return COVERED;
+    }
+
+    /**
+     * Mark the mine which was cleared to lose the game
+     * @param i row position
+     * @param j column position
+     */
+    public void Explode(int i, int j){
+        exploded = board.Index(i,j);
+        Repaint_Space(i,j);
+    }
+
+    /**
+     * Start again for a new game on the same board, repainting only the spaces
+     * which the last game changed
+     * @param played indices of the spaces cleared or flagged in the last game
+     */
+    public void Reset(Int_List played){
+        Show_Hint(-1, false);
+        Clear_Explosion();
+        Repaint_Changed(played);
+    }
+
+    /**
+     * Stop marking the mine which was cleared, as when the move which cleared
+     * it is undone
+     */
+    public void Clear_Explosion(){
+        if(exploded>=0){
+            Repaint_Space(board.Row(exploded), board.Col(exploded));
+            exploded = -1;
+        }
+    }
+
+    /**
+     * Repaint only the tile of a single space
+     * @param i row position
+     * @param j column position
+     */
+    public void Repaint_Space(int i, int j){
+        repaint(Tile_Bounds(i,j));
+    }
+
+    /**
+     * @param i row position
+     * @param j column position
+     * @return where the tile of the space is drawn, in pixels
+     */
+    public Rectangle Tile_Bounds(int i, int j){
+        return new Rectangle(j*tile_size+Shift(i), i*tile_size, tile_size, tile_size);
+    }
+
+    /**
+     * @param i row position
+     * @return how far the row is shifted right, in pixels
+     */
+    private int Shift(int i){
+        return hex && (i & 1)!=0 ? tile_size/2 : 0;
+    }
+
+    /**
+     * Repaint spaces cleared or flagged by a move, limiting the repaint to the
+     * rectangle which contains them. While risk is shown every chance may have
+     * changed, so all of the minefield in view is repainted.
+     * @param changed indices of the spaces changed
+     */
+    public void Repaint_Changed(Int_List changed){
+        int n = changed.Size();
+        if(n==0){ return; }
+        if(risk!=null){
+            repaint();
+            return;
+        }
+        int r0 = Integer.MAX_VALUE, r1 = -1, c0 = Integer.MAX_VALUE, c1 = -1;
+        for(int k=0; k<n; k++){
+            int pos = changed.Get(k);
+            int r = board.Row(pos), c = board.Col(pos);
+            r0 = Math.min(r0, r); r1 = Math.max(r1, r);
+            c0 = Math.min(c0, c); c1 = Math.max(c1, c);
+        }
+        int extra = hex ? tile_size/2 : 0;
+        repaint(c0*tile_size, r0*tile_size, (c1-c0+1)*tile_size+extra, (r1-r0+1)*tile_size);
+    }
+
+    /**
+     * @param y vertical position in pixels
+     * @return row at that position, or -1 if outside the minefield
+     */
+    public int Row_At(int y){
+        int i = Math.floorDiv(y, tile_size);
+        return i<board.Rows() ? Math.max(i, -1) : -1;
+    }
+
+    /**
+     * @param x horizontal position in pixels
+     * @param y vertical position in pixels, as rows of hex boards are shifted
+     * @return column at that position, or -1 if outside the minefield
+     */
+    public int Col_At(int x, int y){
+        int i = Row_At(y);
+        int j = Math.floorDiv(x-(i<0 ? 0 : Shift(i)), tile_size);
+        return j<board.Cols() ? Math.max(j, -1) : -1;
+    }
+}
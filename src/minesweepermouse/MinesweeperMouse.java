@@ -10,9 +10,27 @@ import java.awt.Point;
 public class MinesweeperMouse {
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments. With --simulate, games are
+     * played without the GUI instead, see Simulation.Main, with --serve
+     * games are served to other programs, see Game_Server.Main, and with
+     * --analyze boards are scored for difficulty, see Analytics.Main.
+     * Timings are recorded either way, see Metrics
      */
     public static void main(String[] args) {
+        Metrics.Start();
+        if(args.length>0 && args[0].equals("--simulate")){
+            Simulation.Main(args);
+            return;
+        }
+        if(args.length>0 && args[0].equals("--serve")){
+            Game_Server.Main(args);
+            return;
+        }
+        if(args.length>0 && args[0].equals("--analyze")){
+            Analytics.Main(args);
+            return;
+        }
+        Metrics.Watch_Events();
         New_Game ng = new New_Game(new Point(0,0));
     }
     
@@ -0,0 +1,199 @@
+
+package minesweepermouse;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Small overview of the whole board, showing which parts have been cleared and
+ * which part is currently in view. Clicking or dragging on it moves the view.
+ *
+ * Each pixel of the overview covers a square block of spaces. The number of
+ * cleared spaces in each block is kept up to date from the spaces reported by
+ * Board.Reveal, so the overview is never rebuilt by scanning the board.
+ *
+ * @author cjcode975
+ */
+class Minimap extends JComponent {
+
+    private static final Color COVERED_COLOUR = new Color(160,160,160);
+    private static final Color CLEARED_COLOUR = new Color(235,235,235);
+
+    private final Board board;
+    private final JViewport viewport;
+    private final Minefield minefield;
+    //Spaces covered by each pixel of the overview, along each side, and the
+    //number of screen pixels each overview pixel is drawn as
+    private final int block, zoom;
+    private final int width, height;
+    //Number of cleared spaces in each block, and the overview image
+    private final int[] cleared;
+    private final BufferedImage overview;
+
+    /**
+     * Create an overview of a board
+     * @param Board_In board to show
+     * @param Minefield_In minefield display being scrolled
+     * @param Viewport viewport the minefield display is scrolled within
+     * @param Max_Size largest width or height of the overview in pixels
+     */
+    public Minimap(Board Board_In, Minefield Minefield_In, JViewport Viewport, int Max_Size){
+        board = Board_In;
+        minefield = Minefield_In;
+        viewport = Viewport;
+
+        block = Math.max(1, (Math.max(board.Rows(), board.Cols())+Max_Size-1)/Max_Size);
+        width = (board.Cols()+block-1)/block;
+        height = (board.Rows()+block-1)/block;
+        zoom = Math.max(1, Max_Size/Math.max(width, height));
+        cleared = new int[width*height];
+
+        overview = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Fill();
+
+        setPreferredSize(new Dimension(zoom*width, zoom*height));
+
+        //Move the view when the overview is clicked or dragged
+        MouseAdapter mover = new MouseAdapter(){
+            @Override
+            public void mousePressed(MouseEvent me){ Centre_View(me.getX(), me.getY()); }
+
+            @Override
+            public void mouseDragged(MouseEvent me){ Centre_View(me.getX(), me.getY()); }
+        };
+        addMouseListener(mover);
+        addMouseMotionListener(mover);
+
+        //Keep the outline of the view in step with scrolling
+        viewport.addChangeListener(new ChangeListener(){
+            @Override
+            public void stateChanged(ChangeEvent ce) {
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Start again for a new game on the same board
+     */
+    public void Reset(){
+        Arrays.fill(cleared, 0);
+        Fill();
+        repaint();
+    }
+
+    /**
+     * Shade the overview from scratch. A resumed game starts with spaces
+     * already cleared, which have to be found once by scanning the board
+     */
+    private void Fill(){
+        Graphics g = overview.getGraphics();
+        g.setColor(COVERED_COLOUR);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+
+        if(board.Num_Cleared()>0){
+            for(int i=0; i<board.Rows(); i++){
+                for(int j=0; j<board.Cols(); j++){
+                    if(board.Is_Cleared(i,j)){ Add_Cleared(i,j,1); }
+                }
+            }
+        }
+    }
+
+    /**
+     * Record spaces cleared by Board.Reveal or Board.Chord, shading each
+     * affected pixel by the fraction of its block which has been cleared
+     * @param opened indices of the spaces cleared
+     */
+    public void Update_Opened(Int_List opened){
+        for(int k=0; k<opened.Size(); k++){
+            int pos = opened.Get(k);
+            Add_Cleared(board.Row(pos), board.Col(pos), 1);
+        }
+        if(!opened.Is_Empty()){ repaint(); }
+    }
+
+    /**
+     * Record spaces covered again by undoing a move
+     * @param closed indices of the spaces covered again
+     */
+    public void Update_Closed(Int_List closed){
+        for(int k=0; k<closed.Size(); k++){
+            int pos = closed.Get(k);
+            Add_Cleared(board.Row(pos), board.Col(pos), -1);
+        }
+        if(!closed.Is_Empty()){ repaint(); }
+    }
+
+    /**
+     * Change the count of cleared spaces in a space's block and reshade the
+     * block
+     * @param i row position
+     * @param j column position
+     * @param change 1 if the space was cleared, -1 if covered again
+     */
+    private void Add_Cleared(int i, int j, int change){
+        int x = j/block, y = i/block;
+        int b = y*width+x;
+        cleared[b] += change;
+
+        //Number of spaces in the block, smaller along the bottom and right
+        int area = (Math.min(board.Cols(), (x+1)*block)-x*block)*(Math.min(board.Rows(), (y+1)*block)-y*block);
+        overview.setRGB(x, y, Blend(cleared[b], area));
+    }
+
+    /**
+     * @param done cleared spaces in a block
+     * @param area total spaces in the block
+     * @return colour between covered and cleared
+     */
+    private static int Blend(int done, int area){
+        int r = COVERED_COLOUR.getRed()+(CLEARED_COLOUR.getRed()-COVERED_COLOUR.getRed())*done/area;
+        int g = COVERED_COLOUR.getGreen()+(CLEARED_COLOUR.getGreen()-COVERED_COLOUR.getGreen())*done/area;
+        int b = COVERED_COLOUR.getBlue()+(CLEARED_COLOUR.getBlue()-COVERED_COLOUR.getBlue())*done/area;
+        return (r<<16)|(g<<8)|b;
+    }
+
+    /**
+     * Scroll the view so that it is centred on a point of the overview
+     * @param x horizontal position on the overview
+     * @param y vertical position on the overview
+     */
+    private void Centre_View(int x, int y){
+        int tile = minefield.Tile_Size();
+        Dimension extent = viewport.getExtentSize();
+        int vx = x*block*tile/zoom-extent.width/2;
+        int vy = y*block*tile/zoom-extent.height/2;
+        vx = Math.max(0, Math.min(vx, minefield.getWidth()-extent.width));
+        vy = Math.max(0, Math.min(vy, minefield.getHeight()-extent.height));
+        viewport.setViewPosition(new Point(vx, vy));
+    }
+
+    /**
+     * Draw the overview with the part of the board in view outlined
+     * @param g graphics to paint with
+     */
+    @Override
+    protected void paintComponent(Graphics g){
+        g.drawImage(overview, 0, 0, zoom*width, zoom*height, null);
+
+        //Pixels of the minefield per pixel of the overview
+        double scale = (double)block*minefield.Tile_Size()/zoom;
+        Rectangle view = viewport.getViewRect();
+        g.setColor(Color.RED);
+        g.drawRect((int)(view.x/scale), (int)(view.y/scale),
+                Math.max(2, (int)(view.width/scale))-1, Math.max(2, (int)(view.height/scale))-1);
+    }
+}
@@ -0,0 +1,232 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+
+/**
+ * Moves made in a game, so they can be undone and redone any number of times,
+ * including the move which lost the game.
+ *
+ * Each move is stored as the spaces it changed: those it flagged or unflagged,
+ * then those it cleared, and the mine it cleared if any. The spaces of every
+ * move are packed together in one list, so memory grows with the spaces moves
+ * change rather than with the size of the board, and undoing or redoing a
+ * move takes time proportional to the spaces it changed.
+ *
+ * Once more than 2*KEEP moves can be undone, the oldest KEEP are merged into
+ * a single checkpoint holding their combined effect: each space cleared, and
+ * each space flagged or unflagged an odd number of times. Checkpoints are
+ * merged into one once together they hold more than twice the spaces of the
+ * board, which a single checkpoint never does. So however long a game goes
+ * on, the history holds at most a few times the board's spaces plus the last
+ * 2*KEEP moves, at the cost of undoing older moves in larger steps.
+ *
+ * @author cjcode975
+ */
+class Move_History {
+
+    //Moves kept individually before being merged into a checkpoint
+    static final int KEEP = 1024;
+
+    private final int ncells;
+    //Spaces changed by every move, packed together. Move m flags or unflags
+    //cells[flag_start[m]] up to cells[clear_start[m]], then clears the spaces
+    //up to the start of the next move, or the end of cells for the last move
+    private final Int_List cells = new Int_List();
+    private final Int_List flag_start = new Int_List();
+    private final Int_List clear_start = new Int_List();
+    //Mine each move cleared, or -1
+    private final Int_List exploded = new Int_List();
+    //Number of moves at the start which are checkpoints, and the number of
+    //moves made. Moves after those made have been undone and can be redone
+    private int ncheckpoints = 0;
+    private int current = 0;
+
+    /**
+     * @param N_Cells number of spaces on the board
+     */
+    public Move_History(int N_Cells){
+        ncells = N_Cells;
+    }
+
+    /**
+     * Forget every move, for a new game
+     */
+    public void Clear(){
+        cells.Clear();
+        flag_start.Clear();
+        clear_start.Clear();
+        exploded.Clear();
+        ncheckpoints = 0;
+        current = 0;
+    }
+
+    /**
+     * Record a move which flagged or unflagged spaces. Any moves undone can no
+     * longer be redone.
+     * @param flagged indices of the spaces flagged or unflagged
+     */
+    public void Record_Flags(Int_List flagged){
+        if(flagged.Is_Empty()){ return; }
+        Start_Move(-1);
+        for(int c=0; c<flagged.Size(); c++){ cells.Add(flagged.Get(c)); }
+        clear_start.Set(current-1, cells.Size());
+        Compact();
+    }
+
+    /**
+     * Record a move which cleared spaces. Any moves undone can no longer be
+     * redone.
+     * @param cleared indices of the spaces cleared
+     * @param mine mine cleared by the move, or -1 if none
+     */
+    public void Record_Clears(Int_List cleared, int mine){
+        if(cleared.Is_Empty() && mine<0){ return; }
+        Start_Move(mine);
+        for(int c=0; c<cleared.Size(); c++){ cells.Add(cleared.Get(c)); }
+        Compact();
+    }
+
+    /**
+     * Drop any moves which have been undone, then start a new move at the end
+     */
+    private void Start_Move(int mine){
+        if(current<flag_start.Size()){
+            cells.Truncate(flag_start.Get(current));
+            flag_start.Truncate(current);
+            clear_start.Truncate(current);
+            exploded.Truncate(current);
+        }
+        flag_start.Add(cells.Size());
+        clear_start.Add(cells.Size());
+        exploded.Add(mine);
+        current++;
+    }
+
+    /**
+     * Undo the last move made, or the last checkpoint once only checkpoints
+     * are left
+     * @param board board the move was made on
+     * @param flagged has the spaces flagged or unflagged again added to it
+     * @param cleared has the spaces covered again added to it
+     * @return false if there was nothing to undo
+     */
+    public boolean Undo(Board board, Int_List flagged, Int_List cleared){
+        if(current==0){ return false; }
+        int m = --current;
+        if(exploded.Get(m)>=0){ board.Set_Exploded(-1); }
+        for(int c=clear_start.Get(m); c<End(m); c++){
+            board.Change_State(cells.Get(c), 0);
+            cleared.Add(cells.Get(c));
+        }
+        Toggle(board, flag_start.Get(m), clear_start.Get(m), flagged);
+        return true;
+    }
+
+    /**
+     * Make the last move undone again
+     * @param board board the move was made on
+     * @param flagged has the spaces flagged or unflagged added to it
+     * @param cleared has the spaces cleared added to it
+     * @return false if there was nothing to redo
+     */
+    public boolean Redo(Board board, Int_List flagged, Int_List cleared){
+        if(current==flag_start.Size()){ return false; }
+        int m = current++;
+        Toggle(board, flag_start.Get(m), clear_start.Get(m), flagged);
+        for(int c=clear_start.Get(m); c<End(m); c++){
+            board.Change_State(cells.Get(c), 1);
+            cleared.Add(cells.Get(c));
+        }
+        if(exploded.Get(m)>=0){ board.Set_Exploded(exploded.Get(m)); }
+        return true;
+    }
+
+    /**
+     * Flag or unflag the spaces cells[from] up to cells[to]
+     */
+    private void Toggle(Board board, int from, int to, Int_List flagged){
+        for(int c=from; c<to; c++){
+            int k = cells.Get(c);
+            board.Change_State(k, board.State(k)==2 ? 0 : 2);
+            flagged.Add(k);
+        }
+    }
+
+    /**
+     * @return position in cells after the last space of move m
+     */
+    private int End(int m){
+        return m+1<flag_start.Size() ? flag_start.Get(m+1) : cells.Size();
+    }
+
+    /**
+     * Merge the oldest moves into a checkpoint once there are too many, and
+     * the checkpoints into one once they hold too much
+     */
+    private void Compact(){
+        if(current-ncheckpoints<2*KEEP){ return; }
+        Merge(ncheckpoints, ncheckpoints+KEEP);
+        ncheckpoints++;
+        if(ncheckpoints>1 && flag_start.Get(ncheckpoints)>2L*ncells){
+            Merge(0, ncheckpoints);
+            ncheckpoints = 1;
+        }
+    }
+
+    /**
+     * Replace moves a up to b with one move with the same effect. A space is
+     * never cleared twice by the moves made, and cleared spaces are never
+     * flagged, so the merged move flags or unflags each space changed an odd
+     * number of times, then clears every space cleared. A space unflagged and
+     * later cleared is both, in that order, so undoing it flags it again.
+     */
+    private void Merge(int a, int b){
+        int from = flag_start.Get(a), to = End(b-1);
+
+        int ntoggles = 0;
+        for(int m=a; m<b; m++){ ntoggles += clear_start.Get(m)-flag_start.Get(m); }
+        int[] toggles = new int[ntoggles];
+        int[] clears = new int[to-from-ntoggles];
+        int nt = 0, nc = 0;
+        for(int m=a; m<b; m++){
+            for(int c=flag_start.Get(m); c<clear_start.Get(m); c++){ toggles[nt++] = cells.Get(c); }
+            for(int c=clear_start.Get(m); c<End(m); c++){ clears[nc++] = cells.Get(c); }
+        }
+
+        //Flags toggled an even number of times cancel out
+        Arrays.sort(toggles);
+        int pos = from;
+        for(int t=0; t<ntoggles; ){
+            int run = t;
+            while(run<ntoggles && toggles[run]==toggles[t]){ run++; }
+            if(((run-t) & 1)!=0){ cells.Set(pos++, toggles[t]); }
+            t = run;
+        }
+        int split = pos;
+        for(int c=0; c<nc; c++){ cells.Set(pos++, clears[c]); }
+        cells.Remove_Range(pos, to);
+
+        //Only the last move made can have cleared a mine, and it is never merged
+        clear_start.Set(a, split);
+        exploded.Set(a, exploded.Get(b-1));
+        flag_start.Remove_Range(a+1, b);
+        clear_start.Remove_Range(a+1, b);
+        exploded.Remove_Range(a+1, b);
+        int shift = to-pos;
+        for(int m=a+1; m<flag_start.Size(); m++){
+            flag_start.Set(m, flag_start.Get(m)-shift);
+            clear_start.Set(m, clear_start.Get(m)-shift);
+        }
+        current -= b-a-1;
+    }
+
+    public boolean Can_Undo(){ return current>0; }
+
+    public boolean Can_Redo(){ return current<flag_start.Size(); }
+
+    /**
+     * @return number of spaces held for all moves, a measure of the memory used
+     */
+    public int Size(){ return cells.Size(); }
+}
@@ -5,8 +5,15 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
@@ -19,18 +26,29 @@ public class New_Game {
     private int button_size = 25;
         
     private final JFrame window = new JFrame("Minesweeper");
+    //Whether to make a board which can be cleared without guessing
+    private final JCheckBox no_guess = new JCheckBox("No Guess");
+    //Shape of board to make, as Topology types. The layered shape stacks
+    //LAYERS boards of the chosen size, each with the chosen number of mines
+    private static final String[] SHAPES = {"Square", "Torus", "Hex", "3 Layers"};
+    private static final int LAYERS = 3;
+    //Boards taking at least this many bytes say so before starting. Smaller
+    //boards fit in any heap the game runs with, so asking about them would
+    //only add a click to every game
+    private static final long LARGE_MEMORY = 64L<<20;
+    private final JComboBox<String> shape = new JComboBox<String>(SHAPES);
     
     public New_Game(Point pos){
                 
         //Setup GUI
-        window.setSize(17*button_size, 12*button_size);
+        window.setSize(17*button_size, 18*button_size);
         window.setLocation(pos);
         window.setLayout(null);
         window.setResizable(false); 
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
         JPanel display = new JPanel();
-        display.setBounds(0, 0, 17*button_size, 12*button_size);
+        display.setBounds(0, 0, 17*button_size, 18*button_size);
         display.setLayout(null);
         window.add(display);
         
@@ -50,6 +68,12 @@ public class New_Game {
             }
         }
         
+        //Option to generate a board that never needs a guess, which starts 
+        //with the centre space cleared
+        no_guess.setFont(new Font("Arial", Font.PLAIN, 12));
+        no_guess.setBounds(button_size, button_size, 4*button_size, button_size);
+        display.add(no_guess);
+        
         //For editable boxes to create custom game, add listeners to remove any 
         //inputted non-int values
         for(int i=0; i<3; i++){
@@ -64,8 +88,7 @@ public class New_Game {
         Easy.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
-                Game new_game = new Game(10,10,10,window.getLocationOnScreen());
-                window.dispose();
+                Start(10,10,10);
             }
             
         });
@@ -79,8 +102,7 @@ public class New_Game {
         Med.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
-                Game new_game = new Game(16,16,40,window.getLocationOnScreen());
-                window.dispose();
+                Start(16,16,40);
             }
             
         });
@@ -94,8 +116,7 @@ public class New_Game {
         Hard.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
-                Game new_game = new Game(16,30,99,window.getLocationOnScreen());
-                window.dispose();
+                Start(16,30,99);
             }
             
         });
@@ -109,17 +130,155 @@ public class New_Game {
         Cust.addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
-                Game new_game = new Game(Integer.parseInt(text[4][0].getText()),Integer.parseInt(text[4][1].getText()),Integer.parseInt(text[4][2].getText()),window.getLocationOnScreen());
-                window.dispose();
+                try{
+                    Start(Integer.parseInt(text[4][0].getText()),Integer.parseInt(text[4][1].getText()),Integer.parseInt(text[4][2].getText()));
+                }
+                catch(NumberFormatException e){
+                    JOptionPane.showMessageDialog(window, "Could not start game: custom sizes must be whole numbers", "Minesweeper", JOptionPane.ERROR_MESSAGE);
+                }
             }
             
         });
         display.add(Cust);
         
+        //Button to start a game on a board saved to a file
+        JButton Load = new JButton("Load Board");
+        Load.setMargin(new Insets(5,5,5,5));
+        Load.setFont(new Font("Arial", Font.PLAIN, 12));
+        Load.setBounds(button_size, 11*button_size, 7*button_size, button_size);
+        Load.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                JFileChooser chooser = new JFileChooser();
+                if(chooser.showOpenDialog(window)!=JFileChooser.APPROVE_OPTION){ return; }
+                try{
+                    Path file = chooser.getSelectedFile().toPath();
+                    Board_File.Header header = Board_File.Read_Header(file);
+                    if(!Confirm_Memory(header.topology, header.mines)){ return; }
+                    Game new_game = new Game(Board_File.Read(file),window.getLocationOnScreen());
+                    window.dispose();
+                }
+                catch(IOException e){
+                    JOptionPane.showMessageDialog(window, "Could not load board: "+e.getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            
+        });
+        display.add(Load);
+        
+        //Button to resume the last game, if it was left unfinished
+        final Save_File save = new Save_File(Save_File.DEFAULT);
+        JButton Resume = new JButton("Resume Game");
+        Resume.setMargin(new Insets(5,5,5,5));
+        Resume.setFont(new Font("Arial", Font.PLAIN, 12));
+        Resume.setBounds(9*button_size, 11*button_size, 7*button_size, button_size);
+        Resume.setEnabled(save.Exists());
+        Resume.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                try{
+                    Board_File.Header header = save.Header();
+                    if(!Confirm_Memory(header.topology, header.mines)){ return; }
+                    Game new_game = new Game(save.Load(),save,window.getLocationOnScreen());
+                    window.dispose();
+                }
+                catch(IOException e){
+                    JOptionPane.showMessageDialog(window, "Could not resume game: "+e.getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            
+        });
+        display.add(Resume);
+        
+        //Shape of board for the difficulties above
+        shape.setFont(new Font("Arial", Font.PLAIN, 12));
+        shape.setBounds(button_size, 13*button_size, 15*button_size, button_size);
+        display.add(shape);
+        
+        //Button to start a game on a board with no edges, with mines as dense
+        //as on hard mode
+        JButton Endless = new JButton("Endless");
+        Endless.setMargin(new Insets(5,5,5,5));
+        Endless.setFont(new Font("Arial", Font.PLAIN, 12));
+        Endless.setBounds(button_size, 15*button_size, 15*button_size, button_size);
+        Endless.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                Infinite_Game new_game = new Infinite_Game(99.0/(16*30),window.getLocationOnScreen());
+                window.dispose();
+            }
+            
+        });
+        display.add(Endless);
+        
         window.setVisible(true);
         
     }
     
+    /**
+     * Start a new game with the given difficulty, in the chosen shape, and
+     * close this window
+     * @param n_rows number of rows in minefield, or in each layer
+     * @param n_cols number of columns in minefield
+     * @param n_mines number of mines in minefield, or in each layer
+     */
+    private void Start(int n_rows, int n_cols, int n_mines){
+        int type = shape.getSelectedIndex();
+        int layers = type==Topology.LAYERED ? LAYERS : 1;
+        Topology topology;
+        try{
+            topology = new Topology(type, n_rows, n_cols, layers);
+            n_mines *= layers;
+            Board.Check_Size(topology, n_mines);
+        }
+        catch(IllegalArgumentException e){
+            JOptionPane.showMessageDialog(window, "Could not start game: "+e.getMessage(), "Minesweeper", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if(!Confirm_Memory(topology, n_mines)){ return; }
+        if(!no_guess.isSelected()){
+            Game new_game = new Game(new Board(topology,n_mines,new SplittableRandom().nextLong()),window.getLocationOnScreen());
+            window.dispose();
+            return;
+        }
+        //Found in the background, which can take a while for large boards
+        Board_Maker.No_Guess(window, topology, n_mines, new Board_Maker.Listener(){
+            @Override
+            public void Done(Board made, boolean cancelled, Throwable error) {
+                if(made==null){
+                    if(!cancelled){ JOptionPane.showMessageDialog(window, Board_Maker.Message("Could not find a board without guessing", error), "Minesweeper", JOptionPane.ERROR_MESSAGE); }
+                    return;
+                }
+                Game new_game = Game.No_Guess(made, window.getLocationOnScreen());
+                window.dispose();
+            }
+        });
+    }
+    
+    /**
+     * Show how much memory a large board takes, and how it is stored, letting
+     * the player back out. Boards which can't fit in the memory left are
+     * refused. Used before starting, loading or resuming any board, but only
+     * asks about boards of at least LARGE_MEMORY.
+     * @param topology topology of the board
+     * @param n_mines number of mines in minefield
+     * @return true to go ahead with the game
+     */
+    private boolean Confirm_Memory(Topology topology, int n_mines){
+        long need = Board.Memory_Estimate(topology, n_mines);
+        if(need<LARGE_MEMORY){ return true; }
+
+        Runtime rt = Runtime.getRuntime();
+        long free = rt.maxMemory()-(rt.totalMemory()-rt.freeMemory());
+        String message = String.format("This board takes about %d MB to start, stored %s, with %d MB free.",
+                need>>20, Board.Is_Sparse(topology, n_mines) ? "sparsely" : "densely", free>>20);
+        if(need>free){
+            JOptionPane.showMessageDialog(window, message+"\nThere is not enough memory for it.", "Minesweeper", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        return JOptionPane.showConfirmDialog(window, message+"\nStart the game?", "Minesweeper", JOptionPane.YES_NO_OPTION)==JOptionPane.YES_OPTION;
+    }
+    
     /**
      * Listener to check if an integer is inputted, otherwise undo the input
      */
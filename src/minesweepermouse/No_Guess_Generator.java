@@ -0,0 +1,162 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates boards which can be cleared without guessing. Boards are
+ * generated from a sequence of seeds and played out by Hint_Engine from a
+ * fixed first click; the first board cleared completely is used.
+ *
+ * Attempts run in parallel, one task per worker of a fork/join pool, each task
+ * taking the next seed in turn. As soon as one task finds a solvable board
+ * the others stop, including part way through playing out a board.
+ *
+ * @author cjcode975
+ */
+class No_Guess_Generator {
+
+    //Attempts to make before giving up, for densities where no-guess boards
+    //are too rare to find
+    static final int MAX_ATTEMPTS = 1000000;
+
+    private final Topology topology;
+    private final int nrows, ncols, nmines;
+    private final ForkJoinPool pool;
+    //Set once a board is found or the generator is cancelled, stopping all
+    //the attempts
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private final AtomicLong next_attempt = new AtomicLong(0);
+    private volatile boolean found = false, cancelled = false;
+    private volatile long found_seed;
+
+    /**
+     * @param Shape topology of the minefield
+     * @param N_Mines number of mines in minefield
+     * @param Pool pool to run attempts on
+     */
+    public No_Guess_Generator(Topology Shape, int N_Mines, ForkJoinPool Pool){
+        topology = Shape;
+        nrows = Shape.Rows();
+        ncols = Shape.Cols();
+        nmines = N_Mines;
+        pool = Pool;
+    }
+
+    public No_Guess_Generator(Topology Shape, int N_Mines){
+        this(Shape, N_Mines, ForkJoinPool.commonPool());
+    }
+
+    public No_Guess_Generator(int N_Rows, int N_Cols, int N_Mines){
+        this(new Topology(N_Rows, N_Cols), N_Mines);
+    }
+
+    /**
+     * Generate a board which can be cleared without guessing, starting from
+     * the centre space. Blocks until a board is found, the generator is
+     * cancelled or MAX_ATTEMPTS boards have been tried. Each generator makes
+     * one board.
+     * @param seed seed the sequence of attempts is derived from
+     * @return board with the mines placed and the starting space already
+     * cleared, or null if cancelled or no board was found
+     */
+    public Board Generate(long seed){
+        int tasks = Math.max(1, pool.getParallelism());
+        Attempts[] workers = new Attempts[tasks];
+        for(int t=0; t<tasks; t++){
+            workers[t] = new Attempts(seed);
+            pool.execute(workers[t]);
+        }
+        for(Attempts w : workers){ w.join(); }
+        if(!found || cancelled){ return null; }
+
+        //Replay the winning seed, which gives the same board
+        Board board = new Board(topology, nmines, found_seed);
+        board.Reveal(nrows/2, ncols/2, new Int_List());
+        return board;
+    }
+
+    /**
+     * Stop generating, making Generate return null
+     */
+    public void Cancel(){
+        cancelled = true;
+        done.set(true);
+    }
+
+    /**
+     * @return number of boards tried so far
+     */
+    public long Num_Attempts(){
+        return Math.min(next_attempt.get(), MAX_ATTEMPTS);
+    }
+
+    /**
+     * @param seed seed for placing the mines
+     * @return true if the board can be cleared from the centre space without
+     * guessing
+     */
+    private boolean Is_Solvable(long seed){
+        return Play_Out(new Board(topology, nmines, seed), done);
+    }
+
+    /**
+     * Play a board out with Hint_Engine from the centre space, making only
+     * moves which are certain
+     * @param board board to play, with nothing cleared yet. The mines are
+     * placed by the first click if they haven't been already
+     * @param stop checked before each move, giving up once it is set
+     * @return true if the board was cleared without guessing
+     */
+    static boolean Play_Out(Board board, AtomicBoolean stop){
+        Hint_Engine hints = new Hint_Engine(board);
+        Int_List opened = new Int_List();
+        board.Reveal(board.Rows()/2, board.Cols()/2, opened);
+        hints.Update_Opened(opened);
+
+        while(!board.Is_Won()){
+            if(stop.get()){ return false; }
+            int k = hints.Find_Hint();
+            if(k<0){ return false; }
+            if(hints.Hint_Is_Mine()){
+                board.Toggle_Flag(board.Row(k), board.Col(k));
+            }
+            else{
+                opened.Clear();
+                board.Reveal(board.Row(k), board.Col(k), opened);
+                hints.Update_Opened(opened);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Task trying one seed after another until a solvable board is found
+     */
+    private class Attempts extends RecursiveAction {
+
+        private final long master_seed;
+
+        Attempts(long Master_Seed){
+            master_seed = Master_Seed;
+        }
+
+        @Override
+        protected void compute(){
+            while(!done.get()){
+                long attempt = next_attempt.getAndIncrement();
+                if(attempt>=MAX_ATTEMPTS){ return; }
+
+                long seed = new SplittableRandom(master_seed+attempt*0x9E3779B97F4A7C15L).nextLong();
+                if(Is_Solvable(seed) && done.compareAndSet(false, true)){
+                    found_seed = seed;
+                    found = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,498 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out the exact chance that each uncleared space is a mine, using only
+ * what a player can see. As with Hint_Engine, flags placed by the player are
+ * not trusted.
+ *
+ * Cleared spaces next to uncleared ones are constraints, and the uncleared
+ * spaces they touch form the frontier. The frontier splits into components
+ * which share no constraints, and each component is enumerated on its own,
+ * counting its solutions by the number of mines they use. Components are
+ * combined by weighting each total number of frontier mines T by the number
+ * of ways of placing the other mines in the spaces away from the frontier,
+ * C(U, mines-T).
+ *
+ * The results for each component are cached against its signature, the
+ * spaces and constraints it is made of, so after a move only the components
+ * the move touched are enumerated again. The list of constraints is kept up
+ * to date as spaces are cleared, and probabilities are only recalculated
+ * when next asked for.
+ *
+ * @author cjcode975
+ */
+class Probability_Engine {
+
+    //Per space flags
+    private static final int CONSTRAINT = 1;
+    private static final int SEEN = 2;
+
+    //Limits on enumerating a component, beyond which probabilities are
+    //reported as unknown rather than taking too long
+    static final int MAX_COMPONENT_VARS = 400;
+    static final long MAX_NODES = 1<<22;
+
+    private final Board board;
+    private final Topology topology;
+    private final byte[] flags;
+    //Cleared spaces which had uncleared neighbours when last checked
+    private final Int_List constraints = new Int_List();
+    //Whether anything has been cleared since the last calculation
+    private boolean dirty = true;
+
+    //Results of enumerating each component, by signature. Only components
+    //in the latest calculation are kept
+    private Map<Signature, Component> cache = new HashMap<>();
+    private int cache_hits = 0;
+
+    //Results of the last calculation
+    private boolean exact = false;
+    //Chance of each frontier space, or -1 for spaces away from the frontier,
+    //and the spaces which have one, put back to -1 before the next
+    //calculation
+    private final double[] frontier;
+    private final Int_List frontier_spaces = new Int_List();
+    private double interior = 0;
+
+    //Scratch space used while enumerating a component
+    private int[][] con_vars, var_cons;
+    private int[] target, mines_in, unassigned;
+    private boolean[] value;
+    private double[] ways, cell_ways;
+    private long nodes;
+
+    /**
+     * Create a probability engine for a board. Any spaces already cleared, as
+     * in a resumed game, are taken into account.
+     * @param Board_In board to work out probabilities for
+     */
+    public Probability_Engine(Board Board_In){
+        board = Board_In;
+        topology = board.Topology();
+        flags = new byte[board.Rows()*board.Cols()];
+        frontier = new double[flags.length];
+        Arrays.fill(frontier, -1);
+
+        if(board.Num_Cleared()>0){
+            for(int k=0; k<flags.length; k++){
+                if(board.Is_Cleared(k)){ Note_Cleared(k); }
+            }
+        }
+    }
+
+    /**
+     * Take account of spaces cleared by Board.Reveal or Board.Chord
+     * @param opened indices of the spaces cleared
+     */
+    public void Update_Opened(Int_List opened){
+        for(int c=0; c<opened.Size(); c++){
+            Note_Cleared(opened.Get(c));
+        }
+        if(!opened.Is_Empty()){ dirty = true; }
+    }
+
+    /**
+     * Take account of spaces covered again by undoing a move: cleared spaces
+     * around them have something uncleared again, so may be constraints once
+     * more. The spaces themselves are dropped as constraints when next
+     * calculated.
+     * @param closed indices of the spaces covered again
+     */
+    public void Update_Closed(Int_List closed){
+        for(int c=0; c<closed.Size(); c++){
+            int k = closed.Get(c);
+            for(int d : topology.Offsets(k)){
+                if(board.Is_Cleared(k+d)){ Note_Cleared(k+d); }
+            }
+        }
+        if(!closed.Is_Empty()){ dirty = true; }
+    }
+
+    /**
+     * A space has been cleared: it becomes a constraint if anything around it
+     * is still uncleared
+     * @param k index of the space
+     */
+    private void Note_Cleared(int k){
+        if((flags[k] & CONSTRAINT)==0 && Has_Uncleared(k)){
+            flags[k] |= CONSTRAINT;
+            constraints.Add(k);
+        }
+    }
+
+    /**
+     * @param k index of a space
+     * @return chance that the space is a mine: 0 if cleared, or -1 if the
+     * position was too complex to work out
+     */
+    public double Probability(int k){
+        int i = board.Row(k), j = board.Col(k);
+        if(board.Is_Cleared(i,j)){ return 0; }
+        Calculate();
+        if(!exact){ return -1; }
+        return frontier[k]>=0 ? frontier[k] : interior;
+    }
+
+    /**
+     * @return number of components whose results came from the cache in the
+     * last calculation
+     */
+    public int Cache_Hits(){ return cache_hits; }
+
+    /**
+     * Recalculate the probabilities if anything has been cleared since they
+     * were last worked out
+     */
+    public void Calculate(){
+        if(!dirty){ return; }
+        dirty = false;
+        for(int n=0; n<frontier_spaces.Size(); n++){ frontier[frontier_spaces.Get(n)] = -1; }
+        frontier_spaces.Clear();
+        cache_hits = 0;
+        exact = true;
+
+        //Drop constraints with nothing left uncleared around them, or which
+        //have been covered again
+        for(int c=constraints.Size()-1; c>=0; c--){
+            int k = constraints.Get(c);
+            if(!Has_Uncleared(k) || !board.Is_Cleared(k)){
+                flags[k] &= ~CONSTRAINT;
+                constraints.Swap_Remove(c);
+            }
+        }
+
+        //Split the frontier into components, enumerating those not cached
+        Map<Signature, Component> used = new HashMap<>();
+        Component[] comps = new Component[16];
+        int[][] comp_vars = new int[16][];
+        int ncomps = 0, nfrontier = 0;
+        Int_List vars = new Int_List();
+        Int_List cons = new Int_List();
+        Int_List stack = new Int_List();
+        for(int c=0; c<constraints.Size(); c++){
+            int start = constraints.Get(c);
+            if((flags[start] & SEEN)!=0){ continue; }
+            Collect(start, vars, cons, stack);
+
+            int[] v = Sorted(vars);
+            int[] s = Sorted(cons);
+            Signature sig = new Signature(v, s);
+            Component comp = cache.get(sig);
+            if(comp!=null){ cache_hits++; }
+            else{ comp = Enumerate(v, s); }
+            used.put(sig, comp);
+
+            if(comp.ways==null){ exact = false; }
+            if(ncomps==comps.length){
+                comps = Arrays.copyOf(comps, 2*ncomps);
+                comp_vars = Arrays.copyOf(comp_vars, 2*ncomps);
+            }
+            comps[ncomps] = comp;
+            comp_vars[ncomps++] = v;
+            nfrontier += v.length;
+        }
+        for(int c=0; c<constraints.Size(); c++){ flags[constraints.Get(c)] &= ~SEEN; }
+        for(int n=0; n<ncomps; n++){
+            for(int k : comp_vars[n]){ flags[k] &= ~SEEN; }
+        }
+        cache = used;
+        if(!exact){ return; }
+
+        //Weight of each total number of frontier mines, from the number of
+        //ways to place the rest of the mines away from the frontier
+        long uncovered = (long)flags.length-board.Num_Cleared();
+        int nother = (int)(uncovered-nfrontier);
+        double[] rest = Rest_Weights(nfrontier, nother, board.Mines());
+
+        if(ncomps>0){ Distribute(comps, comp_vars, 0, ncomps, rest); }
+
+        //Spaces away from the frontier all share the same chance
+        if(nother>0){
+            double[] all = ncomps>0 ? Combined(comps, 0, ncomps) : new double[]{1};
+            double total = 0, mines = 0;
+            for(int t=0; t<all.length; t++){
+                double w = all[t]*rest[t];
+                total += w;
+                mines += w*(board.Mines()-t);
+            }
+            interior = total>0 ? mines/total/nother : 0;
+        }
+        else{
+            interior = 0;
+        }
+    }
+
+    /**
+     * Gather the component containing a constraint, marking its constraints
+     * and uncleared spaces as seen
+     * @param start constraint to start from
+     * @param vars filled with the uncleared spaces of the component
+     * @param cons filled with the constraints of the component
+     * @param stack scratch list
+     */
+    private void Collect(int start, Int_List vars, Int_List cons, Int_List stack){
+        vars.Clear();
+        cons.Clear();
+        stack.Clear();
+        flags[start] |= SEEN;
+        stack.Add(start);
+        while(!stack.Is_Empty()){
+            int c = stack.Remove_Last();
+            cons.Add(c);
+            for(int e : topology.Offsets(c)){
+                int v = c+e;
+                if(board.Is_Cleared(v) || (flags[v] & SEEN)!=0){ continue; }
+                flags[v] |= SEEN;
+                vars.Add(v);
+
+                //Other constraints sharing this space
+                for(int f : topology.Offsets(v)){
+                    int d = v+f;
+                    if((flags[d] & (CONSTRAINT|SEEN))==CONSTRAINT){
+                        flags[d] |= SEEN;
+                        stack.Add(d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the solutions of a component by the number of mines they use,
+     * and how many of them have each space as a mine
+     * @param vars uncleared spaces of the component, sorted
+     * @param cons constraints of the component, sorted
+     * @return the counts, with null counts if the component is too complex
+     */
+    private Component Enumerate(int[] vars, int[] cons){
+        int nv = vars.length;
+        if(nv>MAX_COMPONENT_VARS){ return new Component(null, null); }
+
+        con_vars = new int[cons.length][];
+        target = new int[cons.length];
+        mines_in = new int[cons.length];
+        unassigned = new int[cons.length];
+        int[] nvar_cons = new int[nv];
+        int[] buf = new int[Topology.MAX_DEGREE];
+        for(int c=0; c<cons.length; c++){
+            int n = 0;
+            for(int d : topology.Offsets(cons[c])){
+                if(!board.Is_Cleared(cons[c]+d)){
+                    buf[n] = Arrays.binarySearch(vars, cons[c]+d);
+                    nvar_cons[buf[n++]]++;
+                }
+            }
+            con_vars[c] = Arrays.copyOf(buf, n);
+            target[c] = board.Adj(cons[c]);
+            unassigned[c] = n;
+        }
+        var_cons = new int[nv][];
+        for(int v=0; v<nv; v++){ var_cons[v] = new int[nvar_cons[v]]; nvar_cons[v] = 0; }
+        for(int c=0; c<cons.length; c++){
+            for(int v : con_vars[c]){ var_cons[v][nvar_cons[v]++] = c; }
+        }
+
+        value = new boolean[nv];
+        ways = new double[nv+1];
+        cell_ways = new double[(nv+1)*nv];
+        nodes = 0;
+        boolean done = Assign(0, 0);
+        Component comp = done ? new Component(ways, cell_ways) : new Component(null, null);
+        con_vars = null;
+        var_cons = null;
+        ways = null;
+        cell_ways = null;
+        return comp;
+    }
+
+    /**
+     * Try both values for a space and every space after it, recording each
+     * complete solution
+     * @param v position of the space in the component
+     * @param m mines placed so far
+     * @return false if the enumeration ran out of nodes
+     */
+    private boolean Assign(int v, int m){
+        if(++nodes>MAX_NODES){ return false; }
+        int nv = value.length;
+        if(v==nv){
+            ways[m] += 1;
+            for(int u=0; u<nv; u++){
+                if(value[u]){ cell_ways[m*nv+u] += 1; }
+            }
+            return true;
+        }
+
+        for(int val=0; val<2; val++){
+            value[v] = val==1;
+            boolean ok = true;
+            for(int c : var_cons[v]){
+                mines_in[c] += val;
+                unassigned[c]--;
+                if(mines_in[c]>target[c] || mines_in[c]+unassigned[c]<target[c]){ ok = false; }
+            }
+            boolean finished = !ok || Assign(v+1, m+val);
+            for(int c : var_cons[v]){
+                mines_in[c] -= val;
+                unassigned[c]++;
+            }
+            if(!finished){ return false; }
+        }
+        value[v] = false;
+        return true;
+    }
+
+    /**
+     * Relative number of ways to place the mines not on the frontier
+     * @param nfrontier number of frontier spaces
+     * @param nother number of uncleared spaces away from the frontier
+     * @param nmines number of mines on the board
+     * @return weight for each number of frontier mines 0 to nfrontier, scaled
+     * so that the largest is 1
+     */
+    private static double[] Rest_Weights(int nfrontier, int nother, int nmines){
+        //log C(nother, k) for the k needed, relative to the smallest k
+        int kmin = Math.max(0, nmines-nfrontier), kmax = Math.min(nother, nmines);
+        double[] log_c = new double[Math.max(0, kmax-kmin+1)];
+        for(int k=kmin+1; k<=kmax; k++){
+            log_c[k-kmin] = log_c[k-kmin-1]+Math.log(nother-k+1)-Math.log(k);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for(double l : log_c){ max = Math.max(max, l); }
+
+        double[] rest = new double[nfrontier+1];
+        for(int t=0; t<=nfrontier; t++){
+            int k = nmines-t;
+            if(k>=kmin && k<=kmax){ rest[t] = Math.exp(log_c[k-kmin]-max); }
+        }
+        return rest;
+    }
+
+    /**
+     * Combine the solution counts of a range of components
+     * @return relative weight of each total number of mines in the range,
+     * scaled so that the largest is 1
+     */
+    private static double[] Combined(Component[] comps, int lo, int hi){
+        if(hi-lo==1){ return Scaled(comps[lo].ways.clone()); }
+        int mid = (lo+hi)>>>1;
+        double[] a = Combined(comps, lo, mid), b = Combined(comps, mid, hi);
+        double[] ab = new double[a.length+b.length-1];
+        for(int x=0; x<a.length; x++){
+            if(a[x]==0){ continue; }
+            for(int y=0; y<b.length; y++){ ab[x+y] += a[x]*b[y]; }
+        }
+        return Scaled(ab);
+    }
+
+    /**
+     * Work out the probabilities for the spaces of a range of components,
+     * given the weight of each number of mines they could hold between them
+     * from everything outside the range. The range is split in two, and each
+     * half gets the other half folded into its weights, so the work is
+     * quadratic in the size of the frontier however many components it has.
+     * @param context weight for each number of mines in the range
+     */
+    private void Distribute(Component[] comps, int[][] comp_vars, int lo, int hi, double[] context){
+        if(hi-lo==1){
+            Component comp = comps[lo];
+            int nv = comp_vars[lo].length;
+            double total = 0;
+            for(int m=0; m<=nv; m++){ total += comp.ways[m]*context[m]; }
+            for(int u=0; u<nv; u++){
+                double mines = 0;
+                for(int m=0; m<=nv; m++){ mines += comp.cell_ways[m*nv+u]*context[m]; }
+                frontier[comp_vars[lo][u]] = total>0 ? mines/total : 0;
+                frontier_spaces.Add(comp_vars[lo][u]);
+            }
+            return;
+        }
+
+        int mid = (lo+hi)>>>1;
+        double[] a = Combined(comps, lo, mid), b = Combined(comps, mid, hi);
+        double[] ctx_a = new double[a.length], ctx_b = new double[b.length];
+        for(int x=0; x<a.length; x++){
+            for(int y=0; y<b.length; y++){
+                double w = context[x+y];
+                ctx_a[x] += b[y]*w;
+                ctx_b[y] += a[x]*w;
+            }
+        }
+        Distribute(comps, comp_vars, lo, mid, Scaled(ctx_a));
+        Distribute(comps, comp_vars, mid, hi, Scaled(ctx_b));
+    }
+
+    /**
+     * Scale weights so that the largest is 1, which leaves probabilities
+     * unchanged but keeps products of many weights in range
+     */
+    private static double[] Scaled(double[] w){
+        double max = 0;
+        for(double x : w){ max = Math.max(max, x); }
+        if(max>0){
+            for(int t=0; t<w.length; t++){ w[t] /= max; }
+        }
+        return w;
+    }
+
+    /**
+     * @return true if any neighbour of the space is uncleared
+     */
+    private boolean Has_Uncleared(int k){
+        for(int d : topology.Offsets(k)){
+            if(!board.Is_Cleared(k+d)){ return true; }
+        }
+        return false;
+    }
+
+    private static int[] Sorted(Int_List list){
+        int[] a = new int[list.Size()];
+        for(int n=0; n<a.length; n++){ a[n] = list.Get(n); }
+        Arrays.sort(a);
+        return a;
+    }
+
+    /**
+     * Solution counts of a component: ways[m] solutions use m mines, and
+     * cell_ways[m*nvars+u] of those have space u as a mine. Both are null if
+     * the component was too complex to enumerate.
+     */
+    private static class Component {
+        final double[] ways, cell_ways;
+
+        Component(double[] Ways, double[] Cell_Ways){
+            ways = Ways;
+            cell_ways = Cell_Ways;
+        }
+    }
+
+    /**
+     * The spaces and constraints making up a component, which together fix
+     * its solutions
+     */
+    private static class Signature {
+        private final int[] vars, cons;
+        private final int hash;
+
+        Signature(int[] Vars, int[] Cons){
+            vars = Vars;
+            cons = Cons;
+            hash = 31*Arrays.hashCode(vars)+Arrays.hashCode(cons);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Signature)){ return false; }
+            Signature s = (Signature)o;
+            return hash==s.hash && Arrays.equals(vars, s.vars) && Arrays.equals(cons, s.cons);
+        }
+
+        @Override
+        public int hashCode(){ return hash; }
+    }
+}
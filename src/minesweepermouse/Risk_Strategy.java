@@ -0,0 +1,67 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays every certain move found by Hint_Engine, and when there is no certain
+ * move clears the space least likely to be a mine according to
+ * Probability_Engine, choosing at random between equally likely spaces.
+ *
+ * @author cjcode975
+ */
+class Risk_Strategy implements Strategy {
+
+    private Board board;
+    private Hint_Engine hints;
+    private Probability_Engine risk;
+    private SplittableRandom random;
+    private boolean flag = false;
+
+    @Override
+    public void Start(Board board, SplittableRandom random){
+        this.board = board;
+        this.random = random;
+        hints = new Hint_Engine(board);
+        risk = new Probability_Engine(board);
+    }
+
+    @Override
+    public int Next_Move(){
+        int k = hints.Find_Hint();
+        if(k>=0){
+            flag = hints.Hint_Is_Mine();
+            return k;
+        }
+        flag = false;
+
+        int best = -1, ties = 0;
+        double best_p = 2;
+        int ncells = board.Rows()*board.Cols();
+        for(int c=0; c<ncells; c++){
+            int i = board.Row(c), j = board.Col(c);
+            if(board.Is_Cleared(i,j) || board.Is_Flagged(i,j)){ continue; }
+            double p = risk.Probability(c);
+            //Position too complex to work out
+            if(p<0){ return Hint_Strategy.Random_Uncleared(board, random); }
+            if(p<best_p-1e-12){
+                best = c;
+                best_p = p;
+                ties = 1;
+            }
+            else if(p<=best_p+1e-12 && random.nextInt(++ties)==0){
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean Move_Is_Flag(){ return flag; }
+
+    @Override
+    public void Opened(Int_List opened){
+        hints.Update_Opened(opened);
+        risk.Update_Opened(opened);
+    }
+}
@@ -0,0 +1,243 @@
+
+package minesweepermouse;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Save file for a game in progress, so that it can be resumed after the window
+ * is closed.
+ *
+ * The first checkpoint writes a full snapshot (all values big-endian):
+ *   int  MAGIC ("MSWS")
+ *   int  VERSION
+ *   the board, as written by Board_File
+ *   long elapsed time in milliseconds
+ *   int  flags placed, int spaces cleared
+ *   2 bits per space holding Board.State, space k in bits 2*(k%4) of byte k/4
+ * Each later checkpoint appends a delta record holding only the spaces which
+ * have changed since the last checkpoint:
+ *   int  DELTA
+ *   long elapsed time in milliseconds
+ *   int  flags placed, int spaces cleared
+ *   int  number of spaces n, then n times int index and byte state
+ * so checkpointing after each move costs time proportional to the spaces the
+ * move changed. A record cut short by a crash is ignored when loading. Once
+ * too many spaces have changed for the board to list them (see
+ * Board.Changed_Overflow), a delta would be larger than a snapshot, so a new
+ * snapshot is written instead.
+ *
+ * @author cjcode975
+ */
+class Save_File {
+
+    static final int MAGIC = 0x4D535753;
+    static final int VERSION = 1;
+    static final int DELTA = 0x44454C54;
+
+    //Where the game in progress is saved unless told otherwise
+    static final Path DEFAULT = Paths.get(System.getProperty("user.home"), ".minesweepermouse.sav");
+
+    //Size of the buffer used to write the file
+    private static final int CHUNK = 1<<16;
+
+    private final Path file;
+    //Whether a full snapshot of the current game has been written yet
+    private boolean written = false;
+    //Elapsed time of the last game loaded
+    private long elapsed = 0;
+
+    /**
+     * @param File file to save to and load from
+     */
+    public Save_File(Path File){
+        file = File;
+    }
+
+    /**
+     * Start saving a new game, so the next checkpoint writes a full snapshot
+     */
+    public void Start_New(){
+        written = false;
+        elapsed = 0;
+    }
+
+    /**
+     * Save the changes to a board since its last checkpoint. The first time
+     * this is called a full snapshot is written, replacing any existing file.
+     * The board's list of changed spaces is emptied afterwards.
+     * @param board board to save, which must have had its mines placed
+     * @param elapsed_ms time the game has been played for
+     * @throws IOException if the file can't be written
+     */
+    public void Checkpoint(Board board, long elapsed_ms) throws IOException {
+        if(!board.Is_Generated()){ throw new IllegalStateException("Mines not placed"); }
+
+        if(!written || board.Changed_Overflow()){
+            Write_Snapshot(board, elapsed_ms);
+            board.Clear_Changed();
+            written = true;
+            return;
+        }
+
+        int n = board.Num_Changed();
+        ByteBuffer buf = ByteBuffer.allocate(24+5*Math.min(n, CHUNK));
+        try(FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)){
+            buf.putInt(DELTA);
+            buf.putLong(elapsed_ms);
+            buf.putInt(board.Num_Flagged());
+            buf.putInt(board.Num_Cleared());
+            buf.putInt(n);
+            for(int c=0; c<n; c++){
+                if(buf.remaining()<5){ Board_File.Drain(out, buf); }
+                int k = board.Changed(c);
+                buf.putInt(k);
+                buf.put((byte)board.State(k));
+            }
+            Board_File.Drain(out, buf);
+        }
+        board.Clear_Changed();
+    }
+
+    /**
+     * Write a full snapshot of a board to a temporary file, then move it into
+     * place so that an existing save is never left half written
+     */
+    private void Write_Snapshot(Board board, long elapsed_ms) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName()+".tmp");
+        try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK);
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            Board_File.Write(board, out, buf);
+
+            if(buf.remaining()<16){ Board_File.Drain(out, buf); }
+            buf.putLong(elapsed_ms);
+            buf.putInt(board.Num_Flagged());
+            buf.putInt(board.Num_Cleared());
+
+            int ncells = board.Rows()*board.Cols();
+            for(int k=0; k<ncells; k+=4){
+                int bits = 0;
+                for(int b=0; b<4 && k+b<ncells; b++){
+                    bits |= board.State(k+b) << (2*b);
+                }
+                if(!buf.hasRemaining()){ Board_File.Drain(out, buf); }
+                buf.put((byte)bits);
+            }
+            Board_File.Drain(out, buf);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read the size of the saved board, without loading the game
+     * @return header of the saved board
+     * @throws IOException if the file can't be read or is not a save file
+     */
+    public Board_File.Header Header() throws IOException {
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+            if(in.size()<8+Board_File.HEADER_SIZE){ throw new IOException("Not a save file: "+file); }
+            ByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, 8+Board_File.HEADER_SIZE);
+            if(map.getInt()!=MAGIC){ throw new IOException("Not a save file: "+file); }
+            int version = map.getInt();
+            if(version!=VERSION){ throw new IOException("Unsupported save file version "+version); }
+            return Board_File.Read_Header(map);
+        }
+    }
+
+    /**
+     * Load the saved game, applying the snapshot and then each delta record in
+     * turn. Later checkpoints append to the same file.
+     * @return board with the saved spaces cleared and flagged
+     * @throws IOException if the file can't be read or is not a save file
+     */
+    public Board Load() throws IOException {
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            try{
+                if(map.getInt()!=MAGIC){ throw new IOException("Not a save file: "+file); }
+                int version = map.getInt();
+                if(version!=VERSION){ throw new IOException("Unsupported save file version "+version); }
+
+                Board board = Board_File.Read(map);
+                if(!board.Is_Generated()){ throw new IOException("Corrupt save file: mines not placed"); }
+                elapsed = map.getLong();
+                int nflagged = map.getInt();
+                int num_cleared = map.getInt();
+
+                int ncells = board.Rows()*board.Cols();
+                for(int k=0; k<ncells; k+=4){
+                    int bits = map.get();
+                    for(int b=0; b<4 && k+b<ncells; b++){
+                        board.Set_State(k+b, (bits >> (2*b)) & 3);
+                    }
+                }
+                Check_Counts(board, nflagged, num_cleared);
+
+                //Apply complete delta records, stopping at any partial one
+                while(map.remaining()>=24){
+                    int start = map.position();
+                    if(map.getInt()!=DELTA){ throw new IOException("Corrupt save file: bad record"); }
+                    long record_elapsed = map.getLong();
+                    nflagged = map.getInt();
+                    num_cleared = map.getInt();
+                    int n = map.getInt();
+                    if(n<0 || map.remaining()<5L*n){
+                        map.position(start);
+                        break;
+                    }
+                    for(int c=0; c<n; c++){
+                        int k = map.getInt();
+                        int state = map.get();
+                        if(k<0 || k>=ncells){ throw new IOException("Corrupt save file: bad space "+k); }
+                        board.Set_State(k, state);
+                    }
+                    Check_Counts(board, nflagged, num_cleared);
+                    elapsed = record_elapsed;
+                }
+
+                written = false;
+                return board;
+            }
+            catch(BufferUnderflowException | IllegalArgumentException e){
+                throw new IOException("Corrupt save file: "+file, e);
+            }
+        }
+    }
+
+    /**
+     * Make sure the counts stored in the file agree with the spaces loaded
+     */
+    private static void Check_Counts(Board board, int nflagged, int num_cleared) throws IOException {
+        if(board.Num_Flagged()!=nflagged || board.Num_Cleared()!=num_cleared){
+            throw new IOException("Corrupt save file: counts don't match");
+        }
+    }
+
+    /**
+     * @return time the last game loaded had been played for, in milliseconds
+     */
+    public long Elapsed(){ return elapsed; }
+
+    /**
+     * @return true if there is a saved game to load
+     */
+    public boolean Exists(){ return Files.isRegularFile(file); }
+
+    /**
+     * Remove the saved game, once it is over
+     * @throws IOException if the file can't be removed
+     */
+    public void Delete() throws IOException {
+        Files.deleteIfExists(file);
+        written = false;
+    }
+}
@@ -0,0 +1,257 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Plays many games without the GUI to measure how well a strategy does on a
+ * difficulty, recording for each game whether it was won, the number of moves
+ * made and the time taken.
+ *
+ * Games are shared between threads a block at a time. Each game gets its own
+ * random numbers, derived from the master seed and the game's number, for
+ * both the board and the strategy, so the results of every game are the same
+ * however many threads play them and whichever thread plays each game.
+ *
+ * @author cjcode975
+ */
+class Simulation {
+
+    //Number of games a thread takes at a time
+    private static final int BLOCK = 64;
+
+    private final Topology topology;
+    private final int nrows, ncols, nmines;
+    private final Supplier<Strategy> strategies;
+
+    //Results of the last run, by game number
+    private boolean[] won = new boolean[0];
+    private int[] moves = new int[0];
+    private long[] nanos = new long[0];
+    private long wall_nanos = 0;
+    private int nthreads = 0;
+
+    /**
+     * @param Shape topology of the minefield
+     * @param N_Mines number of mines in minefield
+     * @param Strategies makes a strategy for each thread
+     * @throws IllegalArgumentException if the mines don't fit, see
+     * Board.Check_Size
+     */
+    public Simulation(Topology Shape, int N_Mines, Supplier<Strategy> Strategies){
+        //Fail here rather than on every thread
+        Board.Check_Size(Shape, N_Mines);
+        topology = Shape;
+        nrows = Shape.Rows();
+        ncols = Shape.Cols();
+        nmines = N_Mines;
+        strategies = Strategies;
+    }
+
+    /**
+     * Play a number of games, replacing the results of any previous run
+     * @param N_Games number of games to play
+     * @param Master_Seed seed all the games are derived from
+     * @param N_Threads number of threads to play on
+     */
+    public void Run(int N_Games, long Master_Seed, int N_Threads){
+        won = new boolean[N_Games];
+        moves = new int[N_Games];
+        nanos = new long[N_Games];
+        nthreads = N_Threads;
+
+        //Long, so threads taking blocks past the last game can't wrap round
+        //to the first
+        AtomicLong next = new AtomicLong(0);
+        ForkJoinPool pool = new ForkJoinPool(N_Threads);
+        long start = System.nanoTime();
+        try{
+            Player[] players = new Player[N_Threads];
+            for(int t=0; t<N_Threads; t++){
+                players[t] = new Player(next, Master_Seed);
+                pool.execute(players[t]);
+            }
+            for(Player p : players){ p.join(); }
+        }
+        finally{
+            pool.shutdown();
+        }
+        wall_nanos = System.nanoTime()-start;
+    }
+
+    /**
+     * @param master_seed seed the games are derived from
+     * @param game game number
+     * @return seed for that game's random numbers
+     */
+    static long Game_Seed(long master_seed, int game){
+        return new SplittableRandom(master_seed+game*0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    /**
+     * Play one game to the end
+     * @param strategy strategy to play with
+     * @param seed seed for the game's random numbers
+     * @param game game number, where the results are recorded
+     * @param opened list reused for the spaces cleared by each move
+     */
+    private void Play(Strategy strategy, long seed, int game, Int_List opened){
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        Board board = new Board(topology, nmines, random.nextLong());
+        strategy.Start(board, random.split());
+
+        //Stops a strategy which never finishes, such as one flagging and
+        //unflagging the same space forever
+        int max_moves = 4*nrows*ncols;
+        int n = 0;
+        boolean win = false;
+        while(n<max_moves){
+            int k = strategy.Next_Move();
+            int i = board.Row(k), j = board.Col(k);
+            n++;
+            if(strategy.Move_Is_Flag()){
+                board.Toggle_Flag(i,j);
+                continue;
+            }
+            opened.Clear();
+            board.Reveal(i,j,opened);
+            if(board.Is_Exploded()){ break; }
+            strategy.Opened(opened);
+            if(board.Is_Won()){
+                win = true;
+                break;
+            }
+        }
+
+        won[game] = win;
+        moves[game] = n;
+        nanos[game] = System.nanoTime()-start;
+    }
+
+    /**
+     * Task playing blocks of games until there are none left
+     */
+    private class Player extends RecursiveAction {
+
+        private final AtomicLong next;
+        private final long master_seed;
+
+        Player(AtomicLong Next, long Master_Seed){
+            next = Next;
+            master_seed = Master_Seed;
+        }
+
+        @Override
+        protected void compute(){
+            Strategy strategy = strategies.get();
+            Int_List opened = new Int_List();
+            int ngames = won.length;
+            for(long first=next.getAndAdd(BLOCK); first<ngames; first=next.getAndAdd(BLOCK)){
+                for(int g=(int)first; g<Math.min(ngames, first+BLOCK); g++){
+                    Play(strategy, Game_Seed(master_seed, g), g, opened);
+                }
+            }
+        }
+    }
+
+    public int Games(){ return won.length; }
+
+    public boolean Won(int game){ return won[game]; }
+
+    public int Moves(int game){ return moves[game]; }
+
+    /**
+     * @return time taken to play a game, in nanoseconds
+     */
+    public long Time(int game){ return nanos[game]; }
+
+    public int Wins(){
+        int w = 0;
+        for(boolean b : won){ if(b){ w++; } }
+        return w;
+    }
+
+    /**
+     * @return games played per second of wall clock time in the last run
+     */
+    public double Games_Per_Second(){
+        return wall_nanos>0 ? won.length*1e9/wall_nanos : 0;
+    }
+
+    /**
+     * @return summary of the last run
+     */
+    public String Report(){
+        int ngames = won.length;
+        long total_moves = 0;
+        for(int m : moves){ total_moves += m; }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Board:      %dx%d %s, %d mines%n", nrows, ncols, topology.Name(), nmines));
+        sb.append(String.format("Games:      %d on %d threads%n", ngames, nthreads));
+        if(ngames==0){ return sb.toString(); }
+        sb.append(String.format("Wins:       %d (%.2f%%)%n", Wins(), 100.0*Wins()/ngames));
+        sb.append(String.format("Moves:      %.2f per game, %d in total%n", (double)total_moves/ngames, total_moves));
+        sb.append(String.format("Time:       median %.1f us, 99th percentile %.1f us, max %.1f us%n",
+                sorted[ngames/2]/1e3, sorted[(int)(ngames*0.99)]/1e3, sorted[ngames-1]/1e3));
+        sb.append(String.format("Throughput: %.0f games/s (%.2f s wall)%n", Games_Per_Second(), wall_nanos/1e9));
+        return sb.toString();
+    }
+
+    /**
+     * Run a simulation from the command line:
+     *   --simulate rows cols mines games [seed] [threads] [hint|risk] [shape]
+     * where shape is square (the default), torus, hex or layered:n, and rows
+     * and mines are for each layer of a layered board
+     * @param args the command line arguments, starting with --simulate
+     */
+    static void Main(String[] args){
+        if(args.length<5){
+            System.err.println("Usage: --simulate rows cols mines games [seed] [threads] [hint|risk] [square|torus|hex|layered:n]");
+            System.exit(1);
+        }
+        try{
+            int rows = Integer.parseInt(args[1]);
+            int cols = Integer.parseInt(args[2]);
+            int mines = Integer.parseInt(args[3]);
+            int games = Integer.parseInt(args[4]);
+            long seed = args.length>5 ? Long.parseLong(args[5]) : 1;
+            int threads = args.length>6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+            String name = args.length>7 ? args[7] : "hint";
+            Topology shape = Topology.Parse(args.length>8 ? args[8] : "square", rows, cols);
+
+            Supplier<Strategy> strategies;
+            if(name.equals("hint")){
+                strategies = new Supplier<Strategy>(){
+                    @Override
+                    public Strategy get(){ return new Hint_Strategy(); }
+                };
+            }
+            else if(name.equals("risk")){
+                strategies = new Supplier<Strategy>(){
+                    @Override
+                    public Strategy get(){ return new Risk_Strategy(); }
+                };
+            }
+            else{
+                throw new IllegalArgumentException("Unknown strategy "+name);
+            }
+
+            Simulation sim = new Simulation(shape, mines*shape.Layers(), strategies);
+            sim.Run(games, seed, threads);
+            System.out.print("Strategy:   "+name+", seed "+seed+"\n"+sim.Report());
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
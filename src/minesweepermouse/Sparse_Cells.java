@@ -0,0 +1,195 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+
+/**
+ * Packed spaces of a board stored sparsely, for huge boards with few mines
+ * where a byte per space would be mostly zeros. Gives the same packed byte for
+ * each space as Board's dense array (see Board for the layout).
+ *
+ * Only the spaces which are mines or next to one have anything in the low 5
+ * bits, so those are kept in an open addressing hash table from space index
+ * to mine bit and adjacent count, sized once for the most spaces the mines
+ * can touch. Every other space reads as 0 without being stored. The cleared,
+ * flagged and changed bits are needed for every space, so are kept as
+ * bitsets, interleaved so that the three words covering the same 64 spaces
+ * sit together in memory. A further bit for each 64 spaces notes whether any
+ * of them is in the table, so most spaces are read without looking in it.
+ * In all the board takes a little over 3 bits per space plus a few bytes per
+ * mine, rather than 8 bits per space.
+ *
+ * @author cjcode975
+ */
+class Sparse_Cells {
+
+    private static final int EMPTY = -1;
+    //Bits of a space kept in the bitsets rather than the table
+    private static final int STATE_BITS = Board.CLEARED|Board.FLAGGED|Board.CHANGED;
+
+    private final int ncells;
+    //Hash table of the spaces which are mines or next to one, with their mine
+    //bit and adjacent count. Unused slots hold EMPTY
+    private final int[] keys;
+    private final byte[] values;
+    private final int shift;
+    private int size = 0;
+    //One bit per space for each of the state bits. Spaces 64w to 64w+63 are
+    //cleared in state[3w], flagged in state[3w+1] and changed in state[3w+2]
+    private final long[] state;
+    //One bit per 64 spaces, set if any of them may be in the table
+    private final long[] stored;
+
+    /**
+     * @param N_Cells number of spaces on the board
+     * @param Max_Entries most spaces which can be mines or next to one
+     */
+    public Sparse_Cells(int N_Cells, long Max_Entries){
+        ncells = N_Cells;
+        int capacity = Capacity(Max_Entries);
+        keys = new int[capacity];
+        values = new byte[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = 32-Integer.numberOfTrailingZeros(capacity);
+        int words = (N_Cells+63)>>>6;
+        state = new long[3*words];
+        stored = new long[(words+63)>>>6];
+    }
+
+    /**
+     * @return size of the table for a number of entries, keeping it at most
+     * half full so probes stay short
+     */
+    private static int Capacity(long entries){
+        long capacity = Long.highestOneBit(Math.max(8, 2*entries-1))<<1;
+        if(capacity>1<<30){ throw new IllegalArgumentException("Too many mines for sparse storage"); }
+        return (int)capacity;
+    }
+
+    /**
+     * @param ncells number of spaces on the board
+     * @param max_entries most spaces which can be mines or next to one
+     * @return bytes taken by the storage
+     */
+    static long Bytes(long ncells, long max_entries){
+        long words = (ncells+63)>>>6;
+        return 3*8*words + 8*((words+63)>>>6) + 5L*Capacity(max_entries);
+    }
+
+    /**
+     * @param k index of a space
+     * @return packed byte of the space, as Board keeps it
+     */
+    public int Get(int k){
+        int w = k>>>6;
+        int b = (int)(state[3*w]>>>k & 1)<<5 | (int)(state[3*w+1]>>>k & 1)<<6 | (int)(state[3*w+2]>>>k & 1)<<7;
+        if((stored[w>>>6] & 1L<<w)==0){ return b; }
+        for(int s=Slot(k); keys[s]!=EMPTY; s=(s+1)&(keys.length-1)){
+            if(keys[s]==k){ return b | values[s]; }
+        }
+        return b;
+    }
+
+    /**
+     * Replace the packed byte of a space
+     * @param k index of the space
+     * @param b new packed byte
+     */
+    public void Set(int k, int b){
+        int w = k>>>6;
+        long bit = 1L<<k;
+        state[3*w] = (b & Board.CLEARED)!=0 ? state[3*w] | bit : state[3*w] & ~bit;
+        state[3*w+1] = (b & Board.FLAGGED)!=0 ? state[3*w+1] | bit : state[3*w+1] & ~bit;
+        state[3*w+2] = (b & Board.CHANGED)!=0 ? state[3*w+2] | bit : state[3*w+2] & ~bit;
+        if((b & ~STATE_BITS)==0 && (stored[w>>>6] & 1L<<w)==0){ return; }
+
+        int s = Slot(k);
+        while(keys[s]!=EMPTY && keys[s]!=k){ s = (s+1)&(keys.length-1); }
+        if(keys[s]==EMPTY){
+            //Spaces with nothing in the low bits needn't be stored
+            if((b & ~STATE_BITS)==0){ return; }
+            if(2*(size+1)>keys.length){ throw new IllegalStateException("Sparse storage full"); }
+            keys[s] = k;
+            stored[w>>>6] |= 1L<<w;
+            size++;
+        }
+        values[s] = (byte)(b & ~STATE_BITS);
+    }
+
+    /**
+     * Set some of the cleared, flagged and changed bits of a space
+     * @param k index of the space
+     * @param bits bits to set, only from CLEARED, FLAGGED and CHANGED
+     */
+    public void Set_State(int k, int bits){
+        int w = 3*(k>>>6);
+        long bit = 1L<<k;
+        if((bits & Board.CLEARED)!=0){ state[w] |= bit; }
+        if((bits & Board.FLAGGED)!=0){ state[w+1] |= bit; }
+        if((bits & Board.CHANGED)!=0){ state[w+2] |= bit; }
+    }
+
+    /**
+     * @return first slot of the table to look for a space in
+     */
+    private int Slot(int k){
+        return (k*0x9E3779B9)>>>shift;
+    }
+
+    /**
+     * Count the adjacent mines of every space next to a mine, once the mines
+     * are all set. Spaces are only ever added to the table, so those added
+     * here can't move a mine which is still to be visited.
+     * @param topology topology of the board
+     */
+    public void Count_Adjacent(Topology topology){
+        for(int s=0; s<keys.length; s++){
+            if(keys[s]==EMPTY || (values[s] & Board.MINE)==0){ continue; }
+            int k = keys[s];
+            for(int d : topology.Offsets(k)){
+                int nb = k+d;
+                int b = Get(nb);
+                //Mines keep a count of 0
+                if((b & Board.MINE)==0){ Set(nb, b+1); }
+            }
+        }
+    }
+
+    /**
+     * Remove every mine and adjacent count, keeping the state of each space
+     */
+    public void Clear_Mines(){
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, (byte)0);
+        Arrays.fill(stored, 0);
+        size = 0;
+    }
+
+    /**
+     * Unmark every space as changed
+     */
+    public void Clear_Changed(){
+        for(int w=2; w<state.length; w+=3){ state[w] = 0; }
+    }
+
+    /**
+     * Empty the storage, as for a new game
+     */
+    public void Clear(){
+        Clear_Mines();
+        Arrays.fill(state, 0);
+    }
+
+    /**
+     * Make this a copy of another of the same size
+     * @param other storage to copy
+     */
+    public void Copy_From(Sparse_Cells other){
+        if(other.ncells!=ncells || other.keys.length!=keys.length){ throw new IllegalArgumentException("Sizes differ"); }
+        System.arraycopy(other.keys, 0, keys, 0, keys.length);
+        System.arraycopy(other.values, 0, values, 0, values.length);
+        System.arraycopy(other.state, 0, state, 0, state.length);
+        System.arraycopy(other.stored, 0, stored, 0, stored.length);
+        size = other.size;
+    }
+}
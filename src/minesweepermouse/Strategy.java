@@ -0,0 +1,44 @@
+
+package minesweepermouse;
+
+import java.util.SplittableRandom;
+
+/**
+ * A way of playing minesweeper, used by Simulation to play games without the
+ * GUI. A strategy is given a new board at the start of each game and asked
+ * for one move at a time, in the same way as Hint_Engine is asked for hints.
+ *
+ * A strategy only needs to work on one game at a time. Simulation makes one
+ * strategy for each thread it plays games on.
+ *
+ * @author cjcode975
+ */
+interface Strategy {
+
+    /**
+     * Start a new game
+     * @param board board to play, with nothing cleared. Its mines are placed by
+     * the first space opened
+     * @param random random numbers to use for the game, so that games can be
+     * repeated
+     */
+    void Start(Board board, SplittableRandom random);
+
+    /**
+     * @return index of the space to make the next move on. Whether to flag it
+     * or clear it is given by Move_Is_Flag
+     */
+    int Next_Move();
+
+    /**
+     * @return true if the last move from Next_Move is to flag or unflag the
+     * space, false to clear it
+     */
+    boolean Move_Is_Flag();
+
+    /**
+     * Take account of the spaces cleared by a move
+     * @param opened indices of the spaces cleared, as from Board.Reveal
+     */
+    void Opened(Int_List opened);
+}
@@ -0,0 +1,276 @@
+
+package minesweepermouse;
+
+import java.util.Arrays;
+
+/**
+ * Shape of a board: how many rows and columns it has and which spaces are
+ * neighbours. Every part of the game that looks at the spaces around another
+ * (placing mines, counting adjacent mines, clearing islands, chording, hints
+ * and probabilities) asks the board's topology, so a new shape works
+ * everywhere at once.
+ *
+ * Spaces are still numbered row*ncols+col, and the shapes are:
+ *   SQUARE  the usual board, each space having up to 8 neighbours
+ *   TORUS   the same, with the edges wrapping round to the opposite side
+ *   HEX     hexagonal spaces, odd rows shifted half a space to the right,
+ *           each space having up to 6 neighbours
+ *   LAYERED several square boards stacked into layers, drawn one below the
+ *           other. Each space also neighbours the space directly above and
+ *           below it in the next and previous layers, for up to 10
+ *           neighbours. Only those two are added, rather than all 18 spaces
+ *           of the layers either side, so that the number of adjacent mines
+ *           still fits in the 4 bits Board keeps for it.
+ *
+ * Which neighbours a space has depends only on which edges its row and
+ * column are on, along with whether the row is odd on hex boards and which
+ * layer edges it is on for layered boards. Each row and column is given a
+ * kind from these, and the neighbours of a space are kept as offsets from its
+ * index, one array for each kind of row and column. Looking at the
+ * neighbours of a space is then a loop over k+offset with no bounds checks,
+ * while the tables take memory proportional to the rows plus the columns
+ * rather than the number of spaces.
+ *
+ * @author cjcode975
+ */
+final class Topology {
+
+    static final int SQUARE = 0;
+    static final int TORUS = 1;
+    static final int HEX = 2;
+    static final int LAYERED = 3;
+    private static final String[] NAMES = {"square", "torus", "hex", "layered"};
+
+    //Most neighbours a space can have, which must fit in Board.ADJ_MASK
+    static final int MAX_DEGREE = 10;
+
+    //Kinds of column: whether it is the first and whether it is the last
+    private static final int FIRST = 1;
+    private static final int LAST = 2;
+    private static final int NCOL_KINDS = 4;
+
+    private final int type;
+    //Rows and columns of the whole board, and of each layer
+    private final int nrows, ncols;
+    private final int nlayers, layer_rows;
+    //Kind of every row and column
+    private final byte[] row_kind;
+    private final byte[] col_kind;
+    //Offsets from a space to its neighbours, by row kind*NCOL_KINDS+column
+    //kind. Kinds which no space has are left null
+    private final int[][] offsets;
+    private final int max_degree;
+
+    /**
+     * A square board of a size
+     * @param N_Rows number of rows
+     * @param N_Cols number of columns
+     */
+    public Topology(int N_Rows, int N_Cols){
+        this(SQUARE, N_Rows, N_Cols, 1);
+    }
+
+    /**
+     * @param Type SQUARE, TORUS, HEX or LAYERED
+     * @param Layer_Rows number of rows in each layer, which is every row
+     * unless the board is layered
+     * @param N_Cols number of columns
+     * @param N_Layers number of layers, which must be 1 unless the board is
+     * layered
+     */
+    public Topology(int Type, int Layer_Rows, int N_Cols, int N_Layers){
+        if(Type<SQUARE || Type>LAYERED){ throw new IllegalArgumentException("Unknown topology "+Type); }
+        if(N_Layers<1 || (Type!=LAYERED && N_Layers!=1)){ throw new IllegalArgumentException("Invalid number of layers "+N_Layers); }
+        if(Layer_Rows<1 || N_Cols<1 || (long)Layer_Rows*N_Layers*N_Cols>Integer.MAX_VALUE-8){
+            throw new IllegalArgumentException("Invalid board size "+Layer_Rows+"x"+N_Cols+(N_Layers>1 ? "x"+N_Layers : ""));
+        }
+        type = Type;
+        layer_rows = Layer_Rows;
+        nlayers = N_Layers;
+        nrows = Layer_Rows*N_Layers;
+        ncols = N_Cols;
+
+        //Classify the rows and columns, keeping one of each kind to work out
+        //the offsets from
+        row_kind = new byte[nrows];
+        col_kind = new byte[ncols];
+        int nrow_kinds = 16;
+        int[] row_of = new int[nrow_kinds];
+        int[] col_of = new int[NCOL_KINDS];
+        Arrays.fill(row_of, -1);
+        Arrays.fill(col_of, -1);
+        for(int i=0; i<nrows; i++){
+            row_kind[i] = (byte)Row_Kind(i);
+            if(row_of[row_kind[i]]<0){ row_of[row_kind[i]] = i; }
+        }
+        for(int j=0; j<ncols; j++){
+            col_kind[j] = (byte)((j==0 ? FIRST : 0) | (j==ncols-1 ? LAST : 0));
+            if(col_of[col_kind[j]]<0){ col_of[col_kind[j]] = j; }
+        }
+
+        offsets = new int[nrow_kinds*NCOL_KINDS][];
+        int[] buf = new int[MAX_DEGREE];
+        int most = 0;
+        for(int r=0; r<nrow_kinds; r++){
+            for(int c=0; c<NCOL_KINDS; c++){
+                if(row_of[r]<0 || col_of[c]<0){ continue; }
+                int i = row_of[r], j = col_of[c];
+                int n = Neighbours(i, j, buf);
+                int[] off = new int[n];
+                for(int d=0; d<n; d++){ off[d] = buf[d]-(i*ncols+j); }
+                offsets[r*NCOL_KINDS+c] = off;
+                most = Math.max(most, n);
+            }
+        }
+        max_degree = most;
+    }
+
+    /**
+     * @param i row position
+     * @return kind of the row: which edges of the board or its layer it is
+     * on, whether it is odd on a hex board, and which edge layers it is in on
+     * a layered board
+     */
+    private int Row_Kind(int i){
+        int r = i%layer_rows, layer = i/layer_rows;
+        int kind = (r==0 ? FIRST : 0) | (r==layer_rows-1 ? LAST : 0);
+        if(type==HEX){ kind |= (i & 1) << 2; }
+        if(type==LAYERED){ kind |= (layer==0 ? 4 : 0) | (layer==nlayers-1 ? 8 : 0); }
+        return kind;
+    }
+
+    /**
+     * Work out the neighbours of a space from scratch, checking every bound.
+     * Only used to fill in the offsets of each kind of space.
+     * @param i row position
+     * @param j column position
+     * @param out filled with the indices of the neighbours, in increasing
+     * order of row then column, each once and never the space itself
+     * @return number of neighbours
+     */
+    private int Neighbours(int i, int j, int[] out){
+        int n = 0;
+        if(type==LAYERED && i>=layer_rows){ n = Add(out, n, i-layer_rows, j, i, j); }
+        for(int m=-1; m<=1; m++){
+            for(int q=-1; q<=1; q++){
+                int r = i+m, c = j+q;
+                if(type==HEX){
+                    //Odd rows are shifted right, so the rows either side
+                    //touch columns j-1 and j of even rows, j and j+1 of odd
+                    if(m==0 && q==0){ continue; }
+                    if(m!=0 && q==((i & 1)==0 ? 1 : -1)){ continue; }
+                }
+                if(type==TORUS){
+                    r = (r+nrows)%nrows;
+                    c = (c+ncols)%ncols;
+                }
+                else if(r<0 || r>=nrows || c<0 || c>=ncols){
+                    continue;
+                }
+                if(type==LAYERED && r/layer_rows!=i/layer_rows){ continue; }
+                n = Add(out, n, r, c, i, j);
+            }
+        }
+        if(type==LAYERED && i+layer_rows<nrows){ n = Add(out, n, i+layer_rows, j, i, j); }
+
+        //Wrapping round a narrow torus can reach the same space twice and in
+        //any order
+        Arrays.sort(out, 0, n);
+        return n;
+    }
+
+    /**
+     * Add a neighbour to a list unless it is the space itself or already
+     * there
+     * @return new length of the list
+     */
+    private int Add(int[] out, int n, int r, int c, int i, int j){
+        int nb = r*ncols+c;
+        if(r==i && c==j){ return n; }
+        for(int d=0; d<n; d++){
+            if(out[d]==nb){ return n; }
+        }
+        out[n] = nb;
+        return n+1;
+    }
+
+    /**
+     * Neighbours of a space, as offsets from its index: the neighbours of k
+     * are k+Offsets(k)[d]. The array is shared and must not be changed.
+     * @param k index of the space
+     * @return offsets of its neighbours
+     */
+    public int[] Offsets(int k){
+        int i = k/ncols;
+        return offsets[row_kind[i]*NCOL_KINDS+col_kind[k-i*ncols]];
+    }
+
+    /**
+     * @param i row position
+     * @param j column position
+     * @return offsets of the neighbours of the space, as for Offsets(k)
+     */
+    public int[] Offsets(int i, int j){
+        return offsets[row_kind[i]*NCOL_KINDS+col_kind[j]];
+    }
+
+    /**
+     * @return most neighbours any space of this board has
+     */
+    public int Max_Degree(){ return max_degree; }
+
+    public int Type(){ return type; }
+
+    public int Rows(){ return nrows; }
+
+    public int Cols(){ return ncols; }
+
+    public int Layers(){ return nlayers; }
+
+    /**
+     * @return number of rows in each layer, which is every row unless the
+     * board is layered
+     */
+    public int Layer_Rows(){ return layer_rows; }
+
+    /**
+     * @return name of the shape, as accepted by Parse
+     */
+    public String Name(){
+        return type==LAYERED ? NAMES[type]+":"+nlayers : NAMES[type];
+    }
+
+    /**
+     * Make a topology from its name, as given on the command line
+     * @param name square, torus, hex, or layered:n for n layers
+     * @param layer_rows number of rows in each layer, which is every row
+     * unless the board is layered
+     * @param ncols number of columns
+     * @return the topology
+     */
+    static Topology Parse(String name, int layer_rows, int ncols){
+        String[] parts = name.split(":");
+        for(int t=0; t<NAMES.length; t++){
+            if(!NAMES[t].equals(parts[0])){ continue; }
+            int layers = 1;
+            if(parts.length>1){
+                try{ layers = Integer.parseInt(parts[1]); }
+                catch(NumberFormatException e){ throw new IllegalArgumentException("Invalid number of layers "+parts[1]); }
+            }
+            return new Topology(t, layer_rows, ncols, layers);
+        }
+        throw new IllegalArgumentException("Unknown topology "+name);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof Topology)){ return false; }
+        Topology other = (Topology)o;
+        return type==other.type && layer_rows==other.layer_rows && ncols==other.ncols && nlayers==other.nlayers;
+    }
+
+    @Override
+    public int hashCode(){
+        return ((type*31+layer_rows)*31+ncols)*31+nlayers;
+    }
+}